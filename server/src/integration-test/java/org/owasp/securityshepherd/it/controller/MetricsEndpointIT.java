@@ -0,0 +1,148 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.it.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.JsonPath;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.owasp.securityshepherd.test.util.TestUtils;
+import org.owasp.securityshepherd.user.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.web.server.LocalManagementPort;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Hooks;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = WebEnvironment.RANDOM_PORT,
+    properties = {"application.runner.enabled=false"})
+@AutoConfigureWebTestClient
+@Execution(ExecutionMode.SAME_THREAD)
+@DisplayName("Metrics endpoint integration test")
+class MetricsEndpointIT {
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  @Autowired UserService userService;
+
+  @Autowired private WebTestClient webTestClient;
+
+  @LocalManagementPort private int managementPort;
+
+  private WebTestClient managementClient;
+
+  @Autowired TestUtils testService;
+
+  private static final String LOGIN_NAME = "test";
+
+  // The password is "test"
+  private static final String HASHED_PASSWORD =
+      "$2y$12$53B6QcsGwF3Os1GVFUFSQOhIPXnWFfuEkRJdbknFWnkXfUBMUKhaW";
+
+  @BeforeEach
+  private void clear() {
+    testService.deleteAll().block();
+    managementClient =
+        WebTestClient.bindToServer().baseUrl("http://localhost:" + managementPort).build();
+  }
+
+  private String login() {
+    return JsonPath.parse(
+            new String(
+                webTestClient
+                    .post()
+                    .uri("/api/v1/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(
+                        BodyInserters.fromValue(
+                            "{\"userName\": \"" + LOGIN_NAME + "\", \"password\": \"test\"}"))
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .returnResult()
+                    .getResponseBody()))
+        .read("$.token");
+  }
+
+  @Test
+  void prometheus_ManagementPort_ReturnsRepositoryHistogram() {
+    userService.createPasswordUser("Test User", LOGIN_NAME, HASHED_PASSWORD).block();
+    login();
+
+    // The scrape is larger than the default buffer limit, so it is read line by line
+    final String scrape =
+        managementClient
+            .get()
+            .uri("/actuator/prometheus")
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(String.class)
+            .getResponseBody()
+            .collect(Collectors.joining("\n"))
+            .block();
+
+    assertThat(scrape)
+        .contains(
+            "shepherd_repository_seconds_bucket{application=\"security-shepherd\","
+                + "exception=\"none\",method=\"findByLoginName\",outcome=\"success\","
+                + "repository=\"passwordAuthRepository\",le=")
+        .contains("shepherd_authentication_seconds_count")
+        .contains("r2dbc_pool_acquired_connections");
+  }
+
+  @Test
+  void health_ManagementPort_ReturnsOk() {
+    managementClient.get().uri("/actuator/health").exchange().expectStatus().isOk();
+  }
+
+  @Test
+  void metrics_NotAuthenticated_ReturnsUnauthorized() {
+    managementClient.get().uri("/actuator/metrics").exchange().expectStatus().isUnauthorized();
+  }
+
+  @Test
+  void prometheus_ApplicationPort_ReturnsNotFound() {
+    userService.createPasswordUser("Test User", LOGIN_NAME, HASHED_PASSWORD).block();
+    final String token = login();
+
+    webTestClient
+        .get()
+        .uri("/actuator/prometheus")
+        .header("Authorization", "Bearer " + token)
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+  }
+}
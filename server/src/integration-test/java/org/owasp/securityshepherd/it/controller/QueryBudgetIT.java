@@ -0,0 +1,322 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.it.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
+import org.owasp.securityshepherd.database.QueryDiagnosticsWebFilter;
+import org.owasp.securityshepherd.module.FlagHandler;
+import org.owasp.securityshepherd.module.ModuleService;
+import org.owasp.securityshepherd.module.csrf.CsrfTutorial;
+import org.owasp.securityshepherd.module.flag.FlagTutorial;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorial;
+import org.owasp.securityshepherd.module.xss.XssTutorial;
+import org.owasp.securityshepherd.test.util.TestUtils;
+import org.owasp.securityshepherd.user.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.reactive.server.WebTestClient.ResponseSpec;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Hooks;
+
+// Every API endpoint has a maximum number of database queries it may make, cold caches included.
+// The budgets are the query counts of the current code. When a change breaks a budget, either
+// remove the extra query or raise the budget on purpose
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = WebEnvironment.RANDOM_PORT,
+    properties = {
+      "application.runner.enabled=false",
+      "application.database.query-diagnostics=true"
+    })
+@AutoConfigureWebTestClient
+@Execution(ExecutionMode.SAME_THREAD)
+@DisplayName("Query budget integration test")
+class QueryBudgetIT {
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private static final String LOGIN_NAME = "test";
+
+  // The password is "test"
+  private static final String HASHED_PASSWORD =
+      "$2y$12$53B6QcsGwF3Os1GVFUFSQOhIPXnWFfuEkRJdbknFWnkXfUBMUKhaW";
+
+  private static final String MODULE_NAME = "test-module";
+
+  private static final String STATIC_FLAG = "thisisaflag";
+
+  @Autowired WebTestClient webTestClient;
+
+  @Autowired TestUtils testService;
+
+  @Autowired UserService userService;
+
+  @Autowired ModuleService moduleService;
+
+  @Autowired FlagHandler flagHandler;
+
+  @Autowired FlagTutorial flagTutorial;
+
+  @Autowired XssTutorial xssTutorial;
+
+  @Autowired SqlInjectionTutorial sqlInjectionTutorial;
+
+  @Autowired CsrfTutorial csrfTutorial;
+
+  private long userId;
+
+  @BeforeEach
+  private void setUp() {
+    testService.deleteAll().block();
+    userId = userService.createPasswordUser("Test User", LOGIN_NAME, HASHED_PASSWORD).block();
+  }
+
+  private String login() {
+    return JsonPath.parse(
+            new String(
+                webTestClient
+                    .post()
+                    .uri("/api/v1/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(
+                        BodyInserters.fromValue(
+                            "{\"userName\": \"" + LOGIN_NAME + "\", \"password\": \"test\"}"))
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .returnResult()
+                    .getResponseBody()))
+        .read("$.token");
+  }
+
+  private String loginAsAdmin() {
+    userService.promote(userId).block();
+    return login();
+  }
+
+  private ResponseSpec get(final String token, final String uri) {
+    return webTestClient
+        .get()
+        .uri(uri)
+        .header("Authorization", "Bearer " + token)
+        .accept(MediaType.APPLICATION_JSON)
+        .exchange()
+        .expectStatus()
+        .isOk();
+  }
+
+  private ResponseSpec post(final String token, final String uri, final Object body) {
+    return webTestClient
+        .post()
+        .uri(uri)
+        .header("Authorization", "Bearer " + token)
+        .accept(MediaType.APPLICATION_JSON)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(BodyInserters.fromValue(body))
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful();
+  }
+
+  private void assertQueryBudget(final ResponseSpec response, final int budget) {
+    response
+        .expectHeader()
+        .exists(QueryDiagnosticsWebFilter.SERVER_TIMING_HEADER)
+        .expectHeader()
+        .value(
+            QueryDiagnosticsWebFilter.QUERY_COUNT_HEADER,
+            queryCount ->
+                assertThat(Integer.parseInt(queryCount))
+                    .as("Number of database queries")
+                    .isLessThanOrEqualTo(budget));
+  }
+
+  @Test
+  void register_NewUser_WithinQueryBudget() {
+    assertQueryBudget(
+        webTestClient
+            .post()
+            .uri("/api/v1/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(
+                BodyInserters.fromValue(
+                    new PasswordRegistrationDto("Another User", "another", "paLswOrdha17£@£sh")))
+            .exchange()
+            .expectStatus()
+            .isCreated(),
+        5);
+  }
+
+  @Test
+  void login_ValidCredentials_WithinQueryBudget() {
+    assertQueryBudget(
+        webTestClient
+            .post()
+            .uri("/api/v1/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(
+                BodyInserters.fromValue(
+                    "{\"userName\": \"" + LOGIN_NAME + "\", \"password\": \"test\"}"))
+            .exchange()
+            .expectStatus()
+            .isOk(),
+        2);
+  }
+
+  @Test
+  void submitFlag_StaticFlag_WithinQueryBudget() {
+    moduleService.create(MODULE_NAME).block();
+    moduleService.setStaticFlag(MODULE_NAME, STATIC_FLAG).block();
+    final String token = login();
+
+    assertQueryBudget(post(token, "/api/v1/flag/submit/" + MODULE_NAME, STATIC_FLAG), 4);
+  }
+
+  @Test
+  void submitFlag_DynamicFlag_WithinQueryBudget() {
+    moduleService.create(MODULE_NAME).block();
+    final String flag = flagHandler.getDynamicFlag(userId, MODULE_NAME).block();
+    final String token = login();
+
+    assertQueryBudget(post(token, "/api/v1/flag/submit/" + MODULE_NAME, flag), 4);
+  }
+
+  @Test
+  void findAllModules_OpenModules_WithinQueryBudget() {
+    moduleService.create(MODULE_NAME).block();
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/modules"), 2);
+  }
+
+  @Test
+  void findModuleByName_OpenModule_WithinQueryBudget() {
+    moduleService.create(MODULE_NAME).block();
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/module/" + MODULE_NAME), 2);
+  }
+
+  @Test
+  void scoreboard_ScoreboardNotLoaded_WithinQueryBudget() {
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/scoreboard"), 5);
+  }
+
+  @Test
+  void rankedSubmissions_UserExists_WithinQueryBudget() {
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/scoreboard/" + userId), 2);
+  }
+
+  @Test
+  void findUserById_UserExists_WithinQueryBudget() {
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/user/" + userId), 2);
+  }
+
+  @Test
+  void findAllUsers_Admin_WithinQueryBudget() {
+    final String token = loginAsAdmin();
+
+    assertQueryBudget(get(token, "/api/v1/users"), 2);
+  }
+
+  @Test
+  void deleteUser_Admin_WithinQueryBudget() {
+    final long deletedUserId = userService.create("Deleted User").block();
+    final String token = loginAsAdmin();
+
+    assertQueryBudget(post(token, "/api/v1/user/delete/" + deletedUserId, ""), 4);
+  }
+
+  @Test
+  void importUsers_TwoUsers_WithinQueryBudget() {
+    final String token = loginAsAdmin();
+
+    assertQueryBudget(
+        post(
+            token,
+            "/api/v1/users/import",
+            new PasswordRegistrationDto[] {
+              new PasswordRegistrationDto("Imported User 1", "imported1", "paLswOrdha17£@£sh"),
+              new PasswordRegistrationDto("Imported User 2", "imported2", "paLswOrdha17£@£sh")
+            }),
+        7);
+  }
+
+  @Test
+  void flagTutorial_ModuleInitialized_WithinQueryBudget() {
+    flagTutorial.getInit().block();
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/module/flag-tutorial/"), 5);
+  }
+
+  @Test
+  void xssTutorialSearch_ModuleInitialized_WithinQueryBudget() {
+    xssTutorial.getInit().block();
+    final String token = login();
+
+    assertQueryBudget(post(token, "/api/v1/module/xss-tutorial/search", "test"), 1);
+  }
+
+  @Test
+  void sqlInjectionTutorialSearch_ModuleInitialized_WithinQueryBudget() {
+    sqlInjectionTutorial.getInit().block();
+    final String token = login();
+
+    assertQueryBudget(post(token, "/api/v1/module/sql-injection-tutorial/search", "test"), 5);
+  }
+
+  @Test
+  void csrfTutorial_ModuleInitialized_WithinQueryBudget() {
+    csrfTutorial.getInit().block();
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/module/csrf-tutorial/"), 7);
+  }
+
+  @Test
+  void csrfTutorialActivate_ModuleInitialized_WithinQueryBudget() {
+    csrfTutorial.getInit().block();
+    final String token = login();
+
+    assertQueryBudget(get(token, "/api/v1/module/csrf-tutorial/activate/pseudonym"), 2);
+  }
+}
@@ -18,7 +18,9 @@ package org.owasp.securityshepherd.it.controller;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.jayway.jsonpath.JsonPath;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -26,6 +28,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.owasp.securityshepherd.authentication.PasswordLoginDto;
 import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
 import org.owasp.securityshepherd.test.util.TestUtils;
 import org.owasp.securityshepherd.user.User;
@@ -334,6 +337,87 @@ class UserControllerIT {
         .verify();
   }
 
+  @Test
+  void importUsers_AdminImportsRoster_CreatesUsers() {
+    final String loginName = "admin";
+    final String hashedPassword = "$2y$12$53B6QcsGwF3Os1GVFUFSQOhIPXnWFfuEkRJdbknFWnkXfUBMUKhaW";
+    final String password = "paLswOrdha17£@£sh";
+
+    final long adminId = userService.createPasswordUser("Admin", loginName, hashedPassword).block();
+    userService.promote(adminId).block();
+
+    final String token =
+        JsonPath.parse(
+                new String(
+                    webTestClient
+                        .post()
+                        .uri("/api/v1/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(
+                            BodyInserters.fromPublisher(
+                                Mono.just(
+                                    "{\"userName\": \""
+                                        + loginName
+                                        + "\", \"password\": \"test\"}"),
+                                String.class))
+                        .exchange()
+                        .expectStatus()
+                        .isOk()
+                        .expectBody()
+                        .returnResult()
+                        .getResponseBody()))
+            .read("$.token");
+
+    final List<PasswordRegistrationDto> roster = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      roster.add(new PasswordRegistrationDto("Student " + i, "student" + i, password));
+    }
+    // Display name taken earlier in the same import
+    roster.add(new PasswordRegistrationDto("Student 0", "student5", password));
+    // Login name taken by an existing user
+    roster.add(new PasswordRegistrationDto("Student 6", loginName, password));
+    // Password is too short
+    roster.add(new PasswordRegistrationDto("Student 7", "student7", "short"));
+
+    final String results =
+        new String(
+            webTestClient
+                .post()
+                .uri("/api/v1/users/import")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(roster))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseBody());
+
+    final List<Integer> userIds = JsonPath.parse(results).read("$[*].userId");
+    final List<String> errors = JsonPath.parse(results).read("$[*].error");
+
+    assertThat(userIds).hasSize(8);
+    assertThat(userIds.subList(0, 5)).doesNotContainNull().doesNotHaveDuplicates();
+    assertThat(userIds.subList(5, 8)).containsOnlyNulls();
+    assertThat(errors.subList(0, 5)).containsOnlyNulls();
+    assertThat(errors.get(5)).isEqualTo("Display name is used by another row");
+    assertThat(errors.get(6)).isEqualTo("Login name already exists");
+    assertThat(errors.get(7)).startsWith("password: ");
+
+    // Imported users can log in
+    webTestClient
+        .post()
+        .uri("/api/v1/login")
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(BodyInserters.fromValue(new PasswordLoginDto("student3", password)))
+        .exchange()
+        .expectStatus()
+        .isOk();
+
+    StepVerifier.create(userService.findAll().count()).expectNext(6L).expectComplete().verify();
+  }
+
   @BeforeEach
   private void setUp() {
     testService.deleteAll().block();
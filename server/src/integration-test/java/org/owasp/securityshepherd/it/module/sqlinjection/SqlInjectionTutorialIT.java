@@ -22,10 +22,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
-import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.ModuleService;
-import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionDatabaseClientFactory;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionDatabasePool;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionQueryExecutor;
 import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorial;
 import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorialRow;
 import org.owasp.securityshepherd.scoring.ScoreService;
@@ -58,11 +59,13 @@ class SqlInjectionTutorialIT {
 
   @Autowired ScoreService scoreService;
 
-  @Autowired SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory;
+  @Autowired SqlInjectionDatabasePool sqlInjectionDatabasePool;
+
+  @Autowired SqlInjectionQueryExecutor sqlInjectionQueryExecutor;
 
   @Autowired FlagHandler flagHandler;
 
-  @Autowired KeyService keyService;
+  @Autowired MetricsService metricsService;
 
   @BeforeAll
   private static void reactorVerbose() {
@@ -164,7 +167,11 @@ class SqlInjectionTutorialIT {
     testUtils.deleteAll().block();
     sqlInjectionTutorial =
         new SqlInjectionTutorial(
-            moduleService, flagHandler, sqlInjectionDatabaseClientFactory, keyService);
+            moduleService,
+            flagHandler,
+            sqlInjectionDatabasePool,
+            sqlInjectionQueryExecutor,
+            metricsService);
     sqlInjectionTutorial.getInit().block();
   }
 }
@@ -27,6 +27,7 @@ import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.ModuleService;
+import org.owasp.securityshepherd.module.xss.XssPayloadScanner;
 import org.owasp.securityshepherd.module.xss.XssService;
 import org.owasp.securityshepherd.module.xss.XssTutorial;
 import org.owasp.securityshepherd.module.xss.XssTutorialResponse;
@@ -67,12 +68,14 @@ class XssTutorialIT {
 
   @Autowired XssService xssService;
 
+  @Autowired XssPayloadScanner xssPayloadScanner;
+
   @Autowired FlagHandler flagHandler;
 
   @BeforeEach
   private void setUp() {
     testUtils.deleteAll().block();
-    xssTutorial = new XssTutorial(xssService, moduleService, flagHandler);
+    xssTutorial = new XssTutorial(xssService, xssPayloadScanner, moduleService, flagHandler);
     xssTutorial.getInit().block();
   }
 
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.it.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.owasp.securityshepherd.database.ReplicaRouter;
+import org.owasp.securityshepherd.module.ModuleService;
+import org.owasp.securityshepherd.scoring.RankedSubmission;
+import org.owasp.securityshepherd.scoring.ScoreService;
+import org.owasp.securityshepherd.scoring.SubmissionService;
+import org.owasp.securityshepherd.test.util.TestUtils;
+import org.owasp.securityshepherd.user.User;
+import org.owasp.securityshepherd.user.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+
+// The local database doubles as its own replica, since a server that does not replicate from
+// anywhere is never behind
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    properties = {
+      "application.runner.enabled=false",
+      "application.database.replica.hosts=localhost"
+    })
+@Execution(ExecutionMode.SAME_THREAD)
+@DisplayName("Replica routing integration test")
+class ReplicaRoutingIT {
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  @Autowired ReplicaRouter replicaRouter;
+
+  @Autowired UserService userService;
+
+  @Autowired ModuleService moduleService;
+
+  @Autowired SubmissionService submissionService;
+
+  @Autowired ScoreService scoreService;
+
+  @Autowired TestUtils testService;
+
+  @BeforeEach
+  private void clear() {
+    testService.deleteAll().block();
+    replicaRouter.checkReplicas().block();
+  }
+
+  @Test
+  void findAllUsers_ReplicaWithinLag_ReadsFromReplica() {
+    final long replicaReadCount = replicaRouter.getReplicaReadCount();
+
+    userService.create("TestUser").block();
+
+    StepVerifier.create(userService.findAll().map(User::getDisplayName))
+        .expectNext("TestUser")
+        .expectComplete()
+        .verify();
+
+    assertThat(replicaRouter.getReplicaReadCount()).isGreaterThan(replicaReadCount);
+  }
+
+  @Test
+  void findAllRankedByUserId_UserJustSubmitted_ReadsFromPrimary() {
+    final long userId = userService.create("TestUser").block();
+    moduleService.create("test-module").block();
+    moduleService.setStaticFlag("test-module", "thisisaflag").block();
+    scoreService.setModuleScore("test-module", 0, 100).block();
+    submissionService.submit(userId, "test-module", "thisisaflag").block();
+
+    final long replicaReadCount = replicaRouter.getReplicaReadCount();
+
+    StepVerifier.create(
+            submissionService.findAllRankedByUserId(userId).map(RankedSubmission::getModuleName))
+        .expectNext("test-module")
+        .expectComplete()
+        .verify();
+
+    assertThat(replicaRouter.getReplicaReadCount()).isEqualTo(replicaReadCount);
+  }
+}
@@ -15,6 +15,8 @@
  */
 package org.owasp.securityshepherd.it.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
@@ -39,6 +41,7 @@ import org.owasp.securityshepherd.module.ModuleRepository;
 import org.owasp.securityshepherd.module.ModuleService;
 import org.owasp.securityshepherd.scoring.CorrectionRepository;
 import org.owasp.securityshepherd.scoring.CorrectionService;
+import org.owasp.securityshepherd.scoring.RankedSubmission;
 import org.owasp.securityshepherd.scoring.ScoreService;
 import org.owasp.securityshepherd.scoring.ScoreboardEntry;
 import org.owasp.securityshepherd.scoring.SubmissionRepository;
@@ -260,6 +263,37 @@ class ScoringServiceIT {
         .verify();
   }
 
+  @Test
+  void setModuleScore_ModuleSolvedBeforeScoring_RanksAndRescoresSolves() {
+    final String flag = "itsaflag";
+    final Long userId = userService.create("TestUser").block();
+    moduleService.create("id1").block();
+    moduleService.setStaticFlag("id1", flag).block();
+
+    // Solve the module before it has any points
+    submissionService.submit(userId, "id1", flag).block();
+    StepVerifier.create(submissionService.findAllRankedByUserId(userId)).expectComplete().verify();
+
+    scoringService.setModuleScore("id1", 0, 100).block();
+    StepVerifier.create(
+            submissionService.findAllRankedByUserId(userId).map(RankedSubmission::getScore))
+        .expectNext(100L)
+        .expectComplete()
+        .verify();
+
+    // A bonus for the first solve is added to the existing solve
+    scoringService.setModuleScore("id1", 1, 50).block();
+    StepVerifier.create(submissionService.findAllRankedByUserId(userId))
+        .assertNext(
+            rankedSubmission -> {
+              assertThat(rankedSubmission.getRank()).isEqualTo(1L);
+              assertThat(rankedSubmission.getBonusScore()).isEqualTo(50L);
+              assertThat(rankedSubmission.getScore()).isEqualTo(150L);
+            })
+        .expectComplete()
+        .verify();
+  }
+
   @BeforeEach
   private void clear() {
     testService.deleteAll().block();
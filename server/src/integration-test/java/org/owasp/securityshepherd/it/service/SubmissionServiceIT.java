@@ -15,7 +15,17 @@
  */
 package org.owasp.securityshepherd.it.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -28,6 +38,9 @@ import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.ModuleRepository;
 import org.owasp.securityshepherd.module.ModuleService;
 import org.owasp.securityshepherd.scoring.CorrectionRepository;
+import org.owasp.securityshepherd.scoring.RankedSubmission;
+import org.owasp.securityshepherd.scoring.RankedSubmissionRepository;
+import org.owasp.securityshepherd.scoring.ScoreService;
 import org.owasp.securityshepherd.scoring.Submission;
 import org.owasp.securityshepherd.scoring.SubmissionRepository;
 import org.owasp.securityshepherd.scoring.SubmissionService;
@@ -37,6 +50,7 @@ import org.owasp.securityshepherd.user.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -64,6 +78,10 @@ class SubmissionServiceIT {
 
   @Autowired SubmissionRepository submissionRepository;
 
+  @Autowired RankedSubmissionRepository rankedSubmissionRepository;
+
+  @Autowired ScoreService scoreService;
+
   @Autowired CorrectionRepository correctionRepository;
 
   @Autowired UserRepository userRepository;
@@ -118,4 +136,75 @@ class SubmissionServiceIT {
         .expectComplete()
         .verify();
   }
+
+  @Test
+  void submitFlag_ConcurrentSolves_RanksEverySolveOnce() {
+    final String flag = "thisisaflag";
+    final String moduleName = "test-module";
+    final int solves = 8;
+
+    moduleService.create(moduleName).block();
+    moduleService.setStaticFlag(moduleName, flag).block();
+    scoreService.setModuleScore(moduleName, 0, 100).block();
+
+    final List<Long> userIds =
+        Flux.range(0, solves)
+            .concatMap(user -> userService.create("TestUser" + user))
+            .collectList()
+            .block();
+
+    // Every solve gets its own second, so no two solves share a rank
+    final AtomicLong seconds = new AtomicLong();
+    submissionService.setClock(
+        new Clock() {
+          @Override
+          public ZoneId getZone() {
+            return ZoneId.of("Z");
+          }
+
+          @Override
+          public Clock withZone(final ZoneId zone) {
+            return this;
+          }
+
+          @Override
+          public Instant instant() {
+            return Instant.parse("2000-01-01T10:00:00.00Z").plusSeconds(seconds.incrementAndGet());
+          }
+        });
+    try {
+      Flux.fromIterable(userIds)
+          .flatMap(userId -> submissionService.submit(userId, moduleName, flag))
+          .blockLast();
+    } finally {
+      submissionService.resetClock();
+    }
+
+    final Map<Long, LocalDateTime> solveTimes =
+        submissionRepository
+            .findAllByModuleName(moduleName)
+            .collectMap(Submission::getId, Submission::getTime)
+            .block();
+
+    StepVerifier.create(
+            rankedSubmissionRepository
+                .findAllByModuleName(moduleName)
+                .sort(Comparator.comparing(RankedSubmission::getRank)))
+        .recordWith(ArrayList::new)
+        .expectNextCount(solves)
+        .consumeRecordedWith(
+            rankedSubmissions -> {
+              long expectedRank = 1;
+              LocalDateTime previousTime = LocalDateTime.MIN;
+              for (final RankedSubmission rankedSubmission : rankedSubmissions) {
+                assertThat(rankedSubmission.getRank()).isEqualTo(expectedRank++);
+                assertThat(rankedSubmission.getTime())
+                    .isEqualTo(solveTimes.get(rankedSubmission.getSubmissionId()))
+                    .isAfter(previousTime);
+                previousTime = rankedSubmission.getTime();
+              }
+            })
+        .expectComplete()
+        .verify();
+  }
 }
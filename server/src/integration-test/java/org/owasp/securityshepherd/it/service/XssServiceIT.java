@@ -97,12 +97,33 @@ class XssServiceIT {
         .isEqualTo("input-onclick");
   }
 
+  @Test
+  void localStorage_SetByPreviousPayloads_IsEmpty() throws Exception {
+    // Enough evaluations to leave a value behind in every pooled client
+    for (int i = 0; i < 8; i++) {
+      executeQuery("<script>localStorage.setItem('secret', 'leaked')</script>");
+    }
+    assertThat(executeQuery("<script>alert(String(localStorage.getItem('secret')))</script>"))
+        .isEqualTo("null");
+  }
+
+  @Test
+  void sessionStorage_SetByPreviousPayloads_IsEmpty() throws Exception {
+    for (int i = 0; i < 8; i++) {
+      executeQuery("<script>sessionStorage.setItem('secret', 'leaked')</script>");
+    }
+    assertThat(executeQuery("<script>alert(String(sessionStorage.getItem('secret')))</script>"))
+        .isEqualTo("null");
+  }
+
   private String executeQuery(final String query) throws IOException {
     final List<String> alerts =
-        xssService.doXss(
-            "<html><head><title>Alert</title></head><body><p>Result: "
-                + query
-                + "</p></body></html>");
+        xssService
+            .doXss(
+                "<html><head><title>Alert</title></head><body><p>Result: "
+                    + query
+                    + "</p></body></html>")
+            .block();
     if (!alerts.isEmpty()) {
       return alerts.get(0);
     } else {
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.owasp.securityshepherd.crypto.CryptoFactory;
+import org.owasp.securityshepherd.crypto.CryptoService;
+import org.owasp.securityshepherd.metrics.MetricsService;
+
+// Compares the per-thread Mac in CryptoService with looking up and initializing a new Mac on every
+// call. Run with ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HmacBenchmark {
+
+  private static final String ALGORITHM = "HmacSHA256";
+
+  // A flag computation hashes the user key, module key and prefix with the server key
+  private final byte[] serverKey = {
+    -108, 101, -7, -36, 17, -26, -24, 0, -32, -117, 75, -127, 22, 62, 9, 19
+  };
+
+  private final byte[] message = new byte[36];
+
+  private final CryptoService cryptoService =
+      new CryptoService(new CryptoFactory(), new MetricsService(new SimpleMeterRegistry()));
+
+  private byte[] newMacPerCall() throws Exception {
+    final Mac mac = Mac.getInstance(ALGORITHM);
+    mac.init(new SecretKeySpec(serverKey, ALGORITHM));
+    return mac.doFinal(message);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public byte[] newMacPerCall_1Thread() throws Exception {
+    return newMacPerCall();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public byte[] newMacPerCall_4Threads() throws Exception {
+    return newMacPerCall();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public byte[] newMacPerCall_16Threads() throws Exception {
+    return newMacPerCall();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public byte[] perThreadMac_1Thread() {
+    return cryptoService.hmac(serverKey, message);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public byte[] perThreadMac_4Threads() {
+    return cryptoService.hmac(serverKey, message);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public byte[] perThreadMac_16Threads() {
+    return cryptoService.hmac(serverKey, message);
+  }
+}
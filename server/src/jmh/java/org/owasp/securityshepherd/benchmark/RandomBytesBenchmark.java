@@ -0,0 +1,77 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.benchmark;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.owasp.securityshepherd.crypto.CryptoFactory;
+import org.owasp.securityshepherd.crypto.KeyService;
+
+// Compares the shared, prefetching DRBG in KeyService with getting a strong instance on every
+// call. Run with ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomBytesBenchmark {
+
+  // User, module and server keys are all 16 bytes long
+  private static final int KEY_LENGTH = 16;
+
+  private final KeyService keyService = new KeyService(new CryptoFactory());
+
+  private byte[] strongInstancePerCall() throws Exception {
+    final byte[] randomBytes = new byte[KEY_LENGTH];
+    SecureRandom.getInstanceStrong().nextBytes(randomBytes);
+    return randomBytes;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public byte[] strongInstancePerCall_1Thread() throws Exception {
+    return strongInstancePerCall();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public byte[] strongInstancePerCall_4Threads() throws Exception {
+    return strongInstancePerCall();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public byte[] sharedDrbg_1Thread() {
+    return keyService.generateRandomBytes(KEY_LENGTH);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public byte[] sharedDrbg_4Threads() {
+    return keyService.generateRandomBytes(KEY_LENGTH);
+  }
+}
@@ -20,12 +20,15 @@ import lombok.Generated;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import reactor.core.scheduler.Schedulers;
 
 @SpringBootApplication(scanBasePackages = {"org.owasp.securityshepherd"})
 @Generated
 public class SecurityShepherdApplication {
 
   public static void main(String[] args) throws Throwable {
+    // Schedulers are only instrumented if they are created after this
+    Schedulers.enableMetrics();
     SpringApplication.run(SecurityShepherdApplication.class, args);
   }
 
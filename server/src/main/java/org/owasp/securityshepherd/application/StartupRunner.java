@@ -21,6 +21,7 @@ import org.owasp.securityshepherd.module.csrf.CsrfTutorial;
 import org.owasp.securityshepherd.module.flag.FlagTutorial;
 import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorial;
 import org.owasp.securityshepherd.module.xss.XssTutorial;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
 import org.owasp.securityshepherd.user.UserService;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
@@ -48,6 +49,8 @@ public class StartupRunner implements ApplicationRunner {
 
   private final FlagTutorial flagTutorial;
 
+  private final ScoreboardEngine scoreboardEngine;
+
   @Override
   public void run(ApplicationArguments args) {
     log.info("Running StartupRunner");
@@ -63,5 +66,8 @@ public class StartupRunner implements ApplicationRunner {
             xssTutorial.getInit(),
             sqlInjectionTutorial.getInit())
         .block();
+
+    // Load the scoreboard into memory
+    scoreboardEngine.load().block();
   }
 }
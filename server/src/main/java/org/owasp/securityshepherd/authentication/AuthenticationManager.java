@@ -32,19 +32,19 @@ public class AuthenticationManager implements ReactiveAuthenticationManager {
 
   @Override
   public Mono<Authentication> authenticate(Authentication authentication) {
-    String authToken = authentication.getCredentials().toString();
+    final String authToken = authentication.getCredentials().toString();
 
-    if (webTokenService.validateToken(authToken)) {
-      final long userId = webTokenService.getUserIdFromToken(authToken);
-
-      return userService
-          .getAuthoritiesByUserId(userId)
-          .collectList()
-          .map(
-              authorities ->
-                  new UsernamePasswordAuthenticationToken(userId, authToken, authorities));
-    } else {
-      return Mono.empty();
-    }
+    return webTokenService
+        // Parse and verify the token once, invalid tokens give an empty result
+        .findUserIdFromToken(authToken)
+        .flatMap(
+            userId ->
+                userService
+                    .getAuthoritiesByUserId(userId)
+                    .collectList()
+                    .map(
+                        authorities ->
+                            new UsernamePasswordAuthenticationToken(
+                                userId, authToken, authorities)));
   }
 }
@@ -0,0 +1,59 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.authentication;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+// Keeps the granted authorities of recently authenticated users, so that authenticating an API
+// request doesn't need a query. UserService fills the cache on reads and evicts a user whenever
+// their role changes. The short expiry bounds how long a concurrent read can keep a stale role
+@Component
+public final class AuthorityCache {
+
+  private static final long MAXIMUM_USERS = 100_000;
+
+  private final Cache<Long, List<SimpleGrantedAuthority>> authorities;
+
+  public AuthorityCache(@Value("${application.authority-cache.ttl-seconds:60}") final long ttl) {
+    this.authorities =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_USERS)
+            .expireAfterWrite(ttl, TimeUnit.SECONDS)
+            .build();
+  }
+
+  public List<SimpleGrantedAuthority> get(final long userId) {
+    return authorities.getIfPresent(userId);
+  }
+
+  public void put(final long userId, final List<SimpleGrantedAuthority> userAuthorities) {
+    authorities.put(userId, userAuthorities);
+  }
+
+  public void evict(final long userId) {
+    authorities.invalidate(userId);
+  }
+
+  public void clear() {
+    authorities.invalidateAll();
+  }
+}
@@ -20,7 +20,6 @@ import lombok.RequiredArgsConstructor;
 import org.owasp.securityshepherd.user.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -36,7 +35,7 @@ public class LoginController {
 
   private final WebTokenService webTokenService;
 
-  private final PasswordEncoder passwordEncoder;
+  private final PasswordHasher passwordHasher;
 
   @PostMapping(value = "/login")
   public Mono<ResponseEntity<AuthResponse>> login(@RequestBody @Valid PasswordLoginDto loginDto) {
@@ -53,9 +52,11 @@ public class LoginController {
   @PostMapping(path = "/register")
   @ResponseStatus(HttpStatus.CREATED)
   public Mono<Long> register(@Valid @RequestBody final PasswordRegistrationDto registerDto) {
-    return userService.createPasswordUser(
-        registerDto.getDisplayName(),
-        registerDto.getUserName(),
-        passwordEncoder.encode(registerDto.getPassword()));
+    return passwordHasher
+        .encode(registerDto.getPassword())
+        .flatMap(
+            hashedPassword ->
+                userService.createPasswordUser(
+                    registerDto.getDisplayName(), registerDto.getUserName(), hashedPassword));
   }
 }
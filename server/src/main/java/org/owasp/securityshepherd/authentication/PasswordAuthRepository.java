@@ -15,11 +15,14 @@
  */
 package org.owasp.securityshepherd.authentication;
 
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
@@ -27,10 +30,19 @@ public interface PasswordAuthRepository extends ReactiveCrudRepository<PasswordA
   @Query("SELECT * from password_auth WHERE login_name = :login_name")
   public Mono<PasswordAuth> findByLoginName(@Param("login_name") final String loginName);
 
+  @Query("SELECT * from password_auth WHERE login_name IN (:login_names)")
+  public Flux<PasswordAuth> findAllByLoginNameIn(
+      @Param("login_names") final Collection<String> loginNames);
+
   @Query("SELECT * from password_auth WHERE user_id = :user_id")
   public Mono<PasswordAuth> findByUserId(@Param("user_id") final long userId);
 
   @Modifying
   @Query("delete from password_auth WHERE user_id = :user_id")
-  public Mono<UserAuth> deleteByUserId(@Param("user_id") final long userId);
+  public Mono<Integer> deleteByUserId(@Param("user_id") final long userId);
+
+  // Each row holds a user id, a login name and a password hash
+  @Modifying
+  @Query("INSERT INTO password_auth (user_id, login_name, hashed_password) VALUES :rows")
+  public Mono<Integer> insertAll(@Param("rows") final List<Object[]> rows);
 }
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.authentication;
+
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.PreDestroy;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Hashes and checks passwords on a scheduler of their own. A bcrypt hash deliberately takes a lot
+// of CPU, so running it on the event loop would stall every other request during a burst of
+// logins. Work that doesn't fit in the queue is rejected right away with a 503
+@Component
+public class PasswordHasher {
+  private final PasswordEncoder passwordEncoder;
+
+  private final Scheduler scheduler;
+
+  public PasswordHasher(
+      final PasswordEncoder passwordEncoder,
+      @Value("${application.password.hashing-threads:4}") final int poolSize,
+      @Value("${application.password.queue-size:64}") final int queueSize) {
+    this.passwordEncoder = passwordEncoder;
+    // The scheduler limits the number of queued tasks per thread
+    this.scheduler =
+        Schedulers.newBoundedElastic(
+            poolSize, Math.max(1, queueSize / poolSize), "password-hashing");
+  }
+
+  @PreDestroy
+  public void dispose() {
+    scheduler.dispose();
+  }
+
+  public Mono<String> encode(final String password) {
+    return hash(Mono.fromCallable(() -> passwordEncoder.encode(password)));
+  }
+
+  public Mono<Boolean> matches(final String password, final String hashedPassword) {
+    return hash(Mono.fromCallable(() -> passwordEncoder.matches(password, hashedPassword)));
+  }
+
+  // True if the hash was made with a lower cost than the one currently configured
+  public boolean needsUpgrade(final String hashedPassword) {
+    return passwordEncoder.upgradeEncoding(hashedPassword);
+  }
+
+  private <T> Mono<T> hash(final Mono<T> hashing) {
+    return hashing
+        .subscribeOn(scheduler)
+        .onErrorMap(
+            RejectedExecutionException.class,
+            e -> new PasswordHashingRejectedException("Too many password checks in progress", e));
+  }
+}
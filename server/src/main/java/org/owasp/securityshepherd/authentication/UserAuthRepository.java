@@ -15,6 +15,7 @@
  */
 package org.owasp.securityshepherd.authentication;
 
+import java.util.List;
 import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -29,5 +30,10 @@ public interface UserAuthRepository extends ReactiveCrudRepository<UserAuth, Lon
 
   @Modifying
   @Query("delete from user_auth WHERE user_id = :user_id")
-  public Mono<UserAuth> deleteByUserId(@Param("user_id") final long userId);
+  public Mono<Integer> deleteByUserId(@Param("user_id") final long userId);
+
+  // Each row holds a user id
+  @Modifying
+  @Query("INSERT INTO user_auth (user_id) VALUES :rows")
+  public Mono<Integer> insertAll(@Param("rows") final List<Object[]> rows);
 }
@@ -15,19 +15,22 @@
  */
 package org.owasp.securityshepherd.authentication;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
-import io.jsonwebtoken.security.SignatureException;
 import java.security.Key;
 import java.time.Clock;
 import java.util.Date;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
-@RequiredArgsConstructor
 @Service
 public class WebTokenService {
 
@@ -37,25 +40,55 @@ public class WebTokenService {
 
   private final Clock clock;
 
-  public Claims getAllClaimsFromToken(String token) {
-    return Jwts.parserBuilder().setSigningKey(JWT_KEY).build().parseClaimsJws(token).getBody();
-  }
+  // Parsers are immutable and thread-safe, so we only build one
+  private final JwtParser jwtParser;
+
+  // A client sends the same token with every request until it expires. Verified claims are kept
+  // so that the signature of a token is only checked once. No entry can outlive its token
+  private final Cache<String, Claims> verifiedClaims;
 
-  public long getUserIdFromToken(final String token) {
-    return Long.parseLong(getAllClaimsFromToken(token).getSubject());
+  public WebTokenService(
+      final Clock clock,
+      @Value("${application.jwt.claims-cache-size:10000}") final long claimsCacheSize) {
+    this.clock = clock;
+    this.jwtParser =
+        Jwts.parserBuilder()
+            .setSigningKey(JWT_KEY)
+            .setClock(() -> new Date(clock.millis()))
+            .build();
+    this.verifiedClaims =
+        CacheBuilder.newBuilder()
+            .maximumSize(claimsCacheSize)
+            .expireAfterWrite(EXPIRATION_TIME, TimeUnit.SECONDS)
+            .build();
   }
 
-  public Date getExpirationDateFromToken(final String token) {
-    return getAllClaimsFromToken(token).getExpiration();
+  public Claims getAllClaimsFromToken(final String token) {
+    return jwtParser.parseClaimsJws(token).getBody();
   }
 
-  private boolean isTokenExpired(final String token) {
-    try {
-      final Date expiration = getExpirationDateFromToken(token);
-      return expiration.before(new Date());
-    } catch (ExpiredJwtException e) {
-      return true;
+  // Returns null if the token is invalid or has expired
+  private Claims getVerifiedClaims(final String token) {
+    Claims claims = verifiedClaims.getIfPresent(token);
+    if (claims == null) {
+      try {
+        claims = getAllClaimsFromToken(token);
+      } catch (JwtException | IllegalArgumentException e) {
+        return null;
+      }
+      verifiedClaims.put(token, claims);
+    }
+    // A token may expire while its claims are cached
+    if (!claims.getExpiration().after(new Date(clock.millis()))) {
+      verifiedClaims.invalidate(token);
+      return null;
     }
+    return claims;
+  }
+
+  public Mono<Long> findUserIdFromToken(final String token) {
+    return Mono.justOrEmpty(getVerifiedClaims(token))
+        .map(claims -> Long.parseLong(claims.getSubject()));
   }
 
   public String generateToken(final long userId) {
@@ -70,11 +103,7 @@ public class WebTokenService {
         .compact();
   }
 
-  public boolean validateToken(String token) {
-    try {
-      return !isTokenExpired(token);
-    } catch (SignatureException e) {
-      return false;
-    }
+  public boolean validateToken(final String token) {
+    return getVerifiedClaims(token) != null;
   }
 }
@@ -18,6 +18,7 @@ package org.owasp.securityshepherd.configuration;
 import lombok.Generated;
 import org.owasp.securityshepherd.authentication.AuthenticationManager;
 import org.owasp.securityshepherd.authentication.SecurityContextRepository;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -75,6 +76,9 @@ public class FilterChainConfiguration {
         .permitAll()
         .pathMatchers("/api/v1/login")
         .permitAll()
+        // Actuator is only served on the internal management port, see application.properties
+        .matchers(EndpointRequest.toAnyEndpoint())
+        .permitAll()
         .anyExchange()
         .authenticated()
         .and()
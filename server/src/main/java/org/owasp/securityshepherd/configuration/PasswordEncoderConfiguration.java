@@ -16,6 +16,7 @@
 package org.owasp.securityshepherd.configuration;
 
 import lombok.Generated;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -25,7 +26,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class PasswordEncoderConfiguration {
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public PasswordEncoder passwordEncoder(
+      @Value("${application.password.bcrypt-cost:10}") final int bcryptCost) {
+    return new BCryptPasswordEncoder(bcryptCost);
   }
 }
@@ -17,8 +17,18 @@ package org.owasp.securityshepherd.configuration;
 
 import dev.miku.r2dbc.mysql.MySqlConnectionConfiguration;
 import dev.miku.r2dbc.mysql.MySqlConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import lombok.Generated;
+import org.owasp.securityshepherd.database.QueryCountingConnectionFactory;
+import org.owasp.securityshepherd.database.ReplicaRouter;
+import org.owasp.securityshepherd.database.ReplicaRoutingConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -30,23 +40,107 @@ import org.springframework.data.r2dbc.connectionfactory.init.ResourceDatabasePop
 @Generated
 @Configuration
 public class R2dbcMysqlConfiguration {
+  private static final int DEFAULT_PORT = 3306;
+
+  private final String username;
+
+  private final String password;
+
+  private final String database;
+
+  private final int initialSize;
+
+  private final int maxSize;
+
+  private final Duration maxAcquireTime;
+
+  private final Duration maxIdleTime;
+
+  private final String validationQuery;
+
+  public R2dbcMysqlConfiguration(
+      @Value("${application.database.username:root}") final String username,
+      @Value("${application.database.password:}") final String password,
+      @Value("${application.database.name:core}") final String database,
+      @Value("${application.database.pool.initial-size:4}") final int initialSize,
+      @Value("${application.database.pool.max-size:20}") final int maxSize,
+      @Value("${application.database.pool.max-acquire-time:5s}") final Duration maxAcquireTime,
+      @Value("${application.database.pool.max-idle-time:30m}") final Duration maxIdleTime,
+      @Value("${application.database.pool.validation-query:SELECT 1}")
+          final String validationQuery) {
+    this.username = username;
+    this.password = password;
+    this.database = database;
+    this.initialSize = initialSize;
+    this.maxSize = maxSize;
+    this.maxAcquireTime = maxAcquireTime;
+    this.maxIdleTime = maxIdleTime;
+    this.validationQuery = validationQuery;
+  }
+
+  @Bean(destroyMethod = "dispose")
+  public ConnectionPool mySqlConnectionFactory(
+      @Value("${application.database.host:localhost}") final String host,
+      @Value("${application.database.port:3306}") final int port) {
+    return createPool("core", host, port);
+  }
+
+  @Bean
+  public ReplicaRouter replicaRouter(
+      // Comma separated list of host or host:port entries, empty to read from the primary only
+      @Value("${application.database.replica.hosts:}") final List<String> hosts,
+      @Value("${application.database.replica.max-lag-seconds:10}") final long maxLagSeconds,
+      @Value("${application.database.replica.read-your-writes-window:30s}")
+          final Duration readYourWritesWindow,
+      @Value("${application.database.replica.check-interval:5s}") final Duration checkInterval,
+      @Value("${application.database.replica.lag-query:SHOW SLAVE STATUS}") final String lagQuery) {
+    final List<String> replicaHosts =
+        hosts.stream()
+            .map(String::trim)
+            .filter(host -> !host.isEmpty())
+            .collect(Collectors.toList());
+
+    final List<ConnectionFactory> replicas =
+        IntStream.range(0, replicaHosts.size())
+            .mapToObj(
+                replica -> {
+                  final String[] hostAndPort = replicaHosts.get(replica).split(":", 2);
+                  return createPool(
+                      "replica-" + replica,
+                      hostAndPort[0],
+                      hostAndPort.length > 1 ? Integer.parseInt(hostAndPort[1]) : DEFAULT_PORT);
+                })
+            .collect(Collectors.toList());
+
+    return new ReplicaRouter(
+        replicas, maxLagSeconds, readYourWritesWindow, checkInterval, lagQuery);
+  }
+
   @Bean
   @Primary
-  public MySqlConnectionFactory mySqlConnectionFactory() {
-    return MySqlConnectionFactory.from(
-        MySqlConnectionConfiguration.builder()
-            .host("localhost")
-            .username("root")
-            .password("")
-            .database("core")
-            .build());
+  public ConnectionFactory connectionFactory(
+      final ConnectionPool mySqlConnectionFactory,
+      final ReplicaRouter replicaRouter,
+      // Counts the queries of every HTTP exchange, at the cost of proxying every statement
+      @Value("${application.database.query-diagnostics:false}") final boolean queryDiagnostics) {
+    final ReplicaRoutingConnectionFactory connectionFactory =
+        new ReplicaRoutingConnectionFactory(mySqlConnectionFactory, replicaRouter);
+
+    if (queryDiagnostics) {
+      // Spring only initializes the routing factory when it is the bean itself
+      connectionFactory.afterPropertiesSet();
+      return new QueryCountingConnectionFactory(connectionFactory);
+    }
+    return connectionFactory;
   }
 
   @Bean
   @Primary
-  public ConnectionFactoryInitializer mySqlInitializer(ConnectionFactory connectionFactory) {
+  public ConnectionFactoryInitializer mySqlInitializer(
+      final ConnectionPool mySqlConnectionFactory) {
     ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
-    initializer.setConnectionFactory(connectionFactory);
+    // The schema is always created on the primary
+    initializer.setConnectionFactory(mySqlConnectionFactory);
 
     CompositeDatabasePopulator populator = new CompositeDatabasePopulator();
     populator.addPopulators(
@@ -55,4 +149,27 @@ public class R2dbcMysqlConfiguration {
 
     return initializer;
   }
+
+  private ConnectionPool createPool(final String name, final String host, final int port) {
+    // Statements are prepared on the client, since r2dbc-mysql 0.8 has no prepared statement
+    // cache. Server side preparing is deferred until the driver can reuse prepared statements
+    final MySqlConnectionConfiguration mySqlConfiguration =
+        MySqlConnectionConfiguration.builder()
+            .host(host)
+            .port(port)
+            .username(username)
+            .password(password)
+            .database(database)
+            .build();
+
+    return new ConnectionPool(
+        ConnectionPoolConfiguration.builder(MySqlConnectionFactory.from(mySqlConfiguration))
+            .name(name)
+            .initialSize(initialSize)
+            .maxSize(maxSize)
+            .maxAcquireTime(maxAcquireTime)
+            .maxIdleTime(maxIdleTime)
+            .validationQuery(validationQuery)
+            .build());
+  }
 }
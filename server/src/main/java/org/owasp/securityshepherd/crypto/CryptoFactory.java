@@ -15,6 +15,8 @@
  */
 package org.owasp.securityshepherd.crypto;
 
+import java.security.DrbgParameters;
+import java.security.DrbgParameters.Capability;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import javax.crypto.Mac;
@@ -27,8 +29,15 @@ import org.springframework.stereotype.Service;
 public final class CryptoFactory {
   private static final String ALGORITHM = "HmacSHA256";
 
+  private static final String PRNG_ALGORITHM = "DRBG";
+
+  private static final int PRNG_STRENGTH = 256;
+
   public SecureRandom getPrng() throws NoSuchAlgorithmException {
-    return SecureRandom.getInstanceStrong();
+    // The strong instance on Linux reads /dev/random and can block when entropy is low. A DRBG
+    // only needs entropy when seeded and reseeded
+    return SecureRandom.getInstance(
+        PRNG_ALGORITHM, DrbgParameters.instantiation(PRNG_STRENGTH, Capability.RESEED_ONLY, null));
   }
 
   public Mac getHmac() throws NoSuchAlgorithmException {
@@ -15,19 +15,44 @@
  */
 package org.owasp.securityshepherd.crypto;
 
+import io.micrometer.core.instrument.Timer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import lombok.RequiredArgsConstructor;
 import org.owasp.securityshepherd.exception.CryptographicException;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.springframework.stereotype.Service;
 
-@RequiredArgsConstructor
 @Service
 public final class CryptoService {
   private final CryptoFactory cryptoFactory;
 
+  // Registered once, since hmac is called for every flag and a timer lookup would cost more than
+  // the timing itself
+  private final Timer hmacTimer;
+
+  // Looking up the MAC provider and initializing the key is costly, so every thread keeps one Mac
+  // around, initialized with the key it was last used with. That is nearly always the server key
+  private final ThreadLocal<KeyedMac> keyedMac = new ThreadLocal<>();
+
+  private static final class KeyedMac {
+    private final Mac mac;
+
+    private byte[] key;
+
+    private KeyedMac(final Mac mac) {
+      this.mac = mac;
+    }
+  }
+
+  public CryptoService(final CryptoFactory cryptoFactory, final MetricsService metricsService) {
+    this.cryptoFactory = cryptoFactory;
+    this.hmacTimer = metricsService.timer("shepherd.crypto.hmac");
+  }
+
   public byte[] hmac(final byte[] key, final byte[] message) {
     if (key == null) {
       throw new NullPointerException("Key cannot be null");
@@ -36,22 +61,42 @@ public final class CryptoService {
       throw new NullPointerException("Message cannot be null");
     }
 
-    final Mac hmac;
-
+    final long start = System.nanoTime();
     try {
-      hmac = cryptoFactory.getHmac();
-    } catch (NoSuchAlgorithmException e) {
-      throw new CryptographicException("Could not initialize MAC algorithm", e);
+      return computeHmac(key, message);
+    } finally {
+      hmacTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
+  }
 
-    SecretKeySpec secretKeySpec = cryptoFactory.getSecretKeySpec(key);
+  private byte[] computeHmac(final byte[] key, final byte[] message) {
+    KeyedMac hmac = keyedMac.get();
 
-    try {
-      hmac.init(secretKeySpec);
-    } catch (InvalidKeyException e) {
-      throw new CryptographicException("Invalid key supplied to MAC", e);
+    if (hmac == null) {
+      try {
+        hmac = new KeyedMac(cryptoFactory.getHmac());
+      } catch (NoSuchAlgorithmException e) {
+        throw new CryptographicException("Could not initialize MAC algorithm", e);
+      }
+      keyedMac.set(hmac);
+    }
+
+    if (!Arrays.equals(hmac.key, key)) {
+      // Forget the old key in case the new one is rejected
+      hmac.key = null;
+
+      SecretKeySpec secretKeySpec = cryptoFactory.getSecretKeySpec(key);
+
+      try {
+        hmac.mac.init(secretKeySpec);
+      } catch (InvalidKeyException e) {
+        throw new CryptographicException("Invalid key supplied to MAC", e);
+      }
+
+      hmac.key = key.clone();
     }
 
-    return hmac.doFinal(message);
+    // doFinal resets the Mac, leaving it ready for the next message with the same key
+    return hmac.mac.doFinal(message);
   }
 }
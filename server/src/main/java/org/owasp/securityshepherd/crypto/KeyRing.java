@@ -0,0 +1,59 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.crypto;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.stereotype.Component;
+
+// Keeps the user and server keys needed for flag computation in memory. The services that own the
+// keys fill the ring on reads and keep it up to date on writes. Module keys live in the
+// ModuleRegistry
+@Component
+public final class KeyRing {
+
+  private static final long MAXIMUM_USER_KEYS = 100_000;
+
+  private final Cache<Long, byte[]> userKeys =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_USER_KEYS).build();
+
+  private volatile byte[] serverKey;
+
+  public byte[] getUserKey(final long userId) {
+    return userKeys.getIfPresent(userId);
+  }
+
+  public void putUserKey(final long userId, final byte[] key) {
+    userKeys.put(userId, key);
+  }
+
+  public void evictUserKey(final long userId) {
+    userKeys.invalidate(userId);
+  }
+
+  public byte[] getServerKey() {
+    return serverKey;
+  }
+
+  public void setServerKey(final byte[] serverKey) {
+    this.serverKey = serverKey;
+  }
+
+  public void clear() {
+    userKeys.invalidateAll();
+    serverKey = null;
+  }
+}
@@ -18,23 +18,58 @@ package org.owasp.securityshepherd.crypto;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.owasp.securityshepherd.exception.RngException;
 import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
 
 @RequiredArgsConstructor
 @Service
 public final class KeyService {
   private final CryptoFactory cryptoFactory;
 
+  private static final int PREFETCH_SIZE = 4096;
+
+  private static final long RESEED_INTERVAL = Duration.ofMinutes(10).toNanos();
+
+  // One PRNG is shared by all callers. Random bytes are generated ahead of time in bulk, so that
+  // most calls only copy from the buffer
+  private SecureRandom prng;
+
+  private final byte[] prefetchBuffer = new byte[PREFETCH_SIZE];
+
+  private int prefetchPosition = PREFETCH_SIZE;
+
+  private long lastReseed;
+
   private byte[] byteGenerator(final SecureRandom strongPRNG, final int numberOfBytes) {
     byte[] randomBytes = new byte[numberOfBytes];
     strongPRNG.nextBytes(randomBytes);
     return randomBytes;
   }
 
+  private SecureRandom getPrng() throws NoSuchAlgorithmException {
+    if (prng == null) {
+      prng = cryptoFactory.getPrng();
+      lastReseed = System.nanoTime();
+    }
+    return prng;
+  }
+
+  private void refill(final SecureRandom strongPRNG) {
+    if (System.nanoTime() - lastReseed > RESEED_INTERVAL) {
+      lastReseed = System.nanoTime();
+      // Gathering entropy may block, so keep it off the calling thread
+      Schedulers.boundedElastic().schedule(strongPRNG::reseed);
+    }
+    strongPRNG.nextBytes(prefetchBuffer);
+    prefetchPosition = 0;
+  }
+
   public String convertByteKeyToString(final byte[] keyBytes) {
     return new String(keyBytes, StandardCharsets.US_ASCII);
   }
@@ -47,13 +82,28 @@ public final class KeyService {
     return Hex.decodeHex(stringFlag);
   }
 
-  public byte[] generateRandomBytes(final int numberOfBytes) {
+  public synchronized byte[] generateRandomBytes(final int numberOfBytes) {
+    final SecureRandom strongPRNG;
     try {
-      final SecureRandom prng = cryptoFactory.getPrng();
-      return byteGenerator(prng, numberOfBytes);
+      strongPRNG = getPrng();
     } catch (NoSuchAlgorithmException e) {
       throw new RngException("Could not initialize PRNG", e);
     }
+
+    if (numberOfBytes > PREFETCH_SIZE) {
+      return byteGenerator(strongPRNG, numberOfBytes);
+    }
+
+    if (numberOfBytes > PREFETCH_SIZE - prefetchPosition) {
+      refill(strongPRNG);
+    }
+
+    final byte[] randomBytes =
+        Arrays.copyOfRange(prefetchBuffer, prefetchPosition, prefetchPosition + numberOfBytes);
+    // Do not keep handed out bytes around in memory
+    Arrays.fill(prefetchBuffer, prefetchPosition, prefetchPosition + numberOfBytes, (byte) 0);
+    prefetchPosition += numberOfBytes;
+    return randomBytes;
   }
 
   public String generateRandomString(final int numberOfBytes) {
@@ -0,0 +1,58 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.database;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+// Counts the database queries of a single HTTP exchange and the time spent executing them. The
+// counter travels through the subscriber context, so that only queries made on behalf of the
+// exchange are counted
+public final class QueryCounter {
+  private static final String COUNTER = QueryCounter.class.getName() + ".COUNTER";
+
+  private final AtomicInteger queryCount = new AtomicInteger();
+
+  private final AtomicLong queryNanos = new AtomicLong();
+
+  static Optional<QueryCounter> fromContext(final Context context) {
+    return context.getOrEmpty(COUNTER);
+  }
+
+  public <T> Mono<T> countQueries(final Mono<T> exchange) {
+    return exchange.subscriberContext(Context.of(COUNTER, this));
+  }
+
+  public void countQuery() {
+    queryCount.incrementAndGet();
+  }
+
+  public void addQueryTime(final Duration executeDuration) {
+    queryNanos.addAndGet(executeDuration.toNanos());
+  }
+
+  public int getQueryCount() {
+    return queryCount.get();
+  }
+
+  public Duration getQueryTime() {
+    return Duration.ofNanos(queryNanos.get());
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.database;
+
+import com.google.common.collect.MapMaker;
+import io.r2dbc.proxy.ProxyConnectionFactory;
+import io.r2dbc.proxy.callback.ProxyUtils;
+import io.r2dbc.proxy.core.QueryExecutionInfo;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import java.util.Map;
+import java.util.Optional;
+import reactor.core.publisher.Mono;
+
+// Reports every query to the query counter of the exchange that acquired the connection. The
+// proxy listener has no access to the subscriber context, so the counter is looked up from the
+// connection, which is tagged with the counter when it is handed out
+public class QueryCountingConnectionFactory
+    implements ConnectionFactory, Wrapped<ConnectionFactory> {
+  private final ConnectionFactory connectionFactory;
+
+  private final ConnectionFactory proxyConnectionFactory;
+
+  // Weak keys are compared by identity and let go of connections that are closed by the pool
+  private final Map<Connection, QueryCounter> counters = new MapMaker().weakKeys().makeMap();
+
+  public QueryCountingConnectionFactory(final ConnectionFactory connectionFactory) {
+    this.connectionFactory = connectionFactory;
+    this.proxyConnectionFactory =
+        ProxyConnectionFactory.builder(connectionFactory)
+            // A query is counted when it starts. Its result may complete only after the
+            // response has been committed, when the first row is all the handler needed
+            .onBeforeQuery(info -> findCounter(info).ifPresent(QueryCounter::countQuery))
+            .onAfterQuery(
+                info ->
+                    findCounter(info)
+                        .ifPresent(counter -> counter.addQueryTime(info.getExecuteDuration())))
+            .build();
+  }
+
+  @Override
+  public Mono<Connection> create() {
+    return Mono.subscriberContext()
+        .flatMap(
+            context ->
+                Mono.from(proxyConnectionFactory.create())
+                    .doOnNext(
+                        connection -> {
+                          final Connection originalConnection =
+                              ProxyUtils.unwrapConnection(connection).orElse(connection);
+                          // Pooled connections are reused, so the previous tag must not linger
+                          // when the connection is acquired outside of an exchange
+                          QueryCounter.fromContext(context)
+                              .ifPresentOrElse(
+                                  counter -> counters.put(originalConnection, counter),
+                                  () -> counters.remove(originalConnection));
+                        }));
+  }
+
+  @Override
+  public ConnectionFactoryMetadata getMetadata() {
+    return connectionFactory.getMetadata();
+  }
+
+  @Override
+  public ConnectionFactory unwrap() {
+    return connectionFactory;
+  }
+
+  private Optional<QueryCounter> findCounter(final QueryExecutionInfo queryExecutionInfo) {
+    return Optional.ofNullable(
+        counters.get(queryExecutionInfo.getConnectionInfo().getOriginalConnection()));
+  }
+}
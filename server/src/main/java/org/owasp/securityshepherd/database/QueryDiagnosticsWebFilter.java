@@ -0,0 +1,72 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.database;
+
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+// In diagnostic mode, every response tells how many database queries the exchange made and how
+// long they took. Queries that run after the response is committed are not included
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryDiagnosticsWebFilter implements WebFilter {
+  public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+
+  public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+  private final boolean enabled;
+
+  public QueryDiagnosticsWebFilter(
+      @Value("${application.database.query-diagnostics:false}") final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+    if (!enabled) {
+      return chain.filter(exchange);
+    }
+
+    final QueryCounter counter = new QueryCounter();
+
+    exchange
+        .getResponse()
+        .beforeCommit(
+            () ->
+                Mono.fromRunnable(
+                    () -> {
+                      final HttpHeaders headers = exchange.getResponse().getHeaders();
+                      headers.set(QUERY_COUNT_HEADER, Integer.toString(counter.getQueryCount()));
+                      // Browser developer tools show the database time next to the request
+                      headers.add(
+                          SERVER_TIMING_HEADER,
+                          String.format(
+                              Locale.ROOT,
+                              "db;dur=%.3f",
+                              counter.getQueryTime().toNanos() / 1_000_000.0));
+                    }));
+
+    return counter.countQueries(chain.filter(exchange));
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.database;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+// Decides which queries may run on a read replica. Queries are marked read-only through the
+// subscriber context, and are spread over the replicas that are currently within the allowed
+// replication lag. Everything else, including reads by users that just wrote something, goes to
+// the primary
+@Slf4j
+public class ReplicaRouter {
+  private static final String READ_ONLY = ReplicaRouter.class.getName() + ".READ_ONLY";
+
+  private static final String LAG_COLUMN = "Seconds_Behind_Master";
+
+  private final List<ConnectionFactory> replicas;
+
+  private final List<AtomicBoolean> healthyReplicas = new ArrayList<>();
+
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  private final AtomicLong replicaReadCount = new AtomicLong();
+
+  private final Cache<Long, Boolean> recentWriters;
+
+  private final long maxLagSeconds;
+
+  private final Duration checkInterval;
+
+  private final String lagQuery;
+
+  private Disposable lagCheckTask;
+
+  public ReplicaRouter(
+      final List<ConnectionFactory> replicas,
+      final long maxLagSeconds,
+      final Duration readYourWritesWindow,
+      final Duration checkInterval,
+      final String lagQuery) {
+    this.replicas = replicas;
+    this.maxLagSeconds = maxLagSeconds;
+    this.checkInterval = checkInterval;
+    this.lagQuery = lagQuery;
+
+    // Replicas only take reads once they have passed a lag check
+    replicas.forEach(replica -> healthyReplicas.add(new AtomicBoolean()));
+
+    recentWriters =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(readYourWritesWindow.toMillis(), TimeUnit.MILLISECONDS)
+            .maximumSize(100000)
+            .build();
+  }
+
+  public <T> Flux<T> readOnly(final Flux<T> query) {
+    return query.subscriberContext(Context.of(READ_ONLY, true));
+  }
+
+  public <T> Flux<T> readOnlyForUser(final long userId, final Flux<T> query) {
+    // A user that wrote recently must see their own writes, which a replica might not have yet
+    return Flux.defer(() -> recentWriters.getIfPresent(userId) == null ? readOnly(query) : query);
+  }
+
+  public void recordWrite(final long userId) {
+    recentWriters.put(userId, true);
+  }
+
+  public List<ConnectionFactory> getReplicas() {
+    return replicas;
+  }
+
+  public long getReplicaReadCount() {
+    return replicaReadCount.get();
+  }
+
+  public Mono<Object> selectReplica() {
+    return Mono.subscriberContext()
+        .filter(context -> context.getOrDefault(READ_ONLY, false))
+        .flatMap(context -> Mono.justOrEmpty(nextHealthyReplica()))
+        .doOnNext(replica -> replicaReadCount.incrementAndGet())
+        .cast(Object.class);
+  }
+
+  private Optional<Integer> nextHealthyReplica() {
+    final int start = nextReplica.getAndIncrement();
+    for (int i = 0; i < replicas.size(); i++) {
+      final int replica = Math.floorMod(start + i, replicas.size());
+      if (healthyReplicas.get(replica).get()) {
+        return Optional.of(replica);
+      }
+    }
+    // Fall back to the primary when every replica lags behind
+    return Optional.empty();
+  }
+
+  public Mono<Void> checkReplicas() {
+    return Flux.range(0, replicas.size())
+        .flatMap(
+            replica ->
+                findLag(replicas.get(replica))
+                    .map(lag -> lag <= maxLagSeconds)
+                    // Replication has stopped
+                    .defaultIfEmpty(false)
+                    .timeout(checkInterval)
+                    .onErrorReturn(false)
+                    .doOnNext(isHealthy -> setHealthy(replica, isHealthy)))
+        .then();
+  }
+
+  private Mono<Long> findLag(final ConnectionFactory replica) {
+    return Mono.usingWhen(
+            replica.create(),
+            connection ->
+                Flux.from(connection.createStatement(lagQuery).execute())
+                    .flatMap(
+                        result ->
+                            result.map(
+                                (row, metadata) ->
+                                    Optional.ofNullable(row.get(LAG_COLUMN, Long.class))))
+                    .next()
+                    // A server that does not replicate from anywhere is never behind
+                    .defaultIfEmpty(Optional.of(0L)),
+            Connection::close)
+        .flatMap(Mono::justOrEmpty);
+  }
+
+  private void setHealthy(final int replica, final boolean isHealthy) {
+    if (healthyReplicas.get(replica).getAndSet(isHealthy) != isHealthy) {
+      if (isHealthy) {
+        log.info("Replica " + replica + " caught up, routing reads to it");
+      } else {
+        log.warn("Replica " + replica + " is lagging or unreachable, reading from the primary");
+      }
+    }
+  }
+
+  @PostConstruct
+  public void startLagChecks() {
+    if (replicas.isEmpty()) {
+      return;
+    }
+    lagCheckTask =
+        Flux.interval(Duration.ZERO, checkInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> checkReplicas())
+            .subscribe();
+  }
+
+  @PreDestroy
+  public void dispose() {
+    if (lagCheckTask != null) {
+      lagCheckTask.dispose();
+    }
+    replicas.stream()
+        .filter(Disposable.class::isInstance)
+        .map(Disposable.class::cast)
+        .forEach(Disposable::dispose);
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.database;
+
+import io.r2dbc.spi.ConnectionFactory;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.data.r2dbc.connectionfactory.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.publisher.Mono;
+
+// Hands out replica connections to queries that the replica router allows on a replica, and
+// primary connections to everything else
+public class ReplicaRoutingConnectionFactory extends AbstractRoutingConnectionFactory {
+  private final ReplicaRouter replicaRouter;
+
+  public ReplicaRoutingConnectionFactory(
+      final ConnectionFactory primary, final ReplicaRouter replicaRouter) {
+    this.replicaRouter = replicaRouter;
+
+    final Map<Integer, ConnectionFactory> replicas = new HashMap<>();
+    for (int i = 0; i < replicaRouter.getReplicas().size(); i++) {
+      replicas.put(i, replicaRouter.getReplicas().get(i));
+    }
+    setTargetConnectionFactories(replicas);
+    setDefaultTargetConnectionFactory(primary);
+  }
+
+  @Override
+  protected Mono<Object> determineCurrentLookupKey() {
+    return replicaRouter.selectReplica();
+  }
+}
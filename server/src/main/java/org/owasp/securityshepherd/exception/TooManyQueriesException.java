@@ -0,0 +1,39 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.exception;
+
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@NoArgsConstructor
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyQueriesException extends RuntimeException {
+
+  private static final long serialVersionUID = 4387014295106953284L;
+
+  public TooManyQueriesException(final String message) {
+    super(message);
+  }
+
+  public TooManyQueriesException(final String message, final Exception e) {
+    super(message, e);
+  }
+
+  public TooManyQueriesException(final Exception e) {
+    super(e);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.function.ToDoubleFunction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Times publishers from subscription until they terminate. Every timer is tagged with the outcome
+// and the exception, if any, so that failures don't skew the latency of successful calls.
+// Percentile histograms are switched on for all shepherd.* timers in application.properties
+@RequiredArgsConstructor
+@Service
+public final class MetricsService {
+  private static final String NO_EXCEPTION = "none";
+
+  private final MeterRegistry meterRegistry;
+
+  public <T> Mono<T> time(final String name, final Mono<T> mono, final String... tags) {
+    return Mono.defer(
+        () -> {
+          final Timer.Sample sample = Timer.start(meterRegistry);
+          final String[] exception = {NO_EXCEPTION};
+          return mono.doOnError(e -> exception[0] = e.getClass().getSimpleName())
+              .doFinally(signal -> stop(sample, name, signal, exception[0], tags));
+        });
+  }
+
+  public <T> Flux<T> time(final String name, final Flux<T> flux, final String... tags) {
+    return Flux.defer(
+        () -> {
+          final Timer.Sample sample = Timer.start(meterRegistry);
+          final String[] exception = {NO_EXCEPTION};
+          return flux.doOnError(e -> exception[0] = e.getClass().getSimpleName())
+              .doFinally(signal -> stop(sample, name, signal, exception[0], tags));
+        });
+  }
+
+  public void increment(final String name, final String... tags) {
+    meterRegistry.counter(name, tags).increment();
+  }
+
+  // Gauges and function counters read the object when the registry is scraped, so the object only
+  // keeps its own numbers. The registry holds the object weakly, which suits singleton beans
+  public <T> void gauge(
+      final String name, final T object, final ToDoubleFunction<T> value, final String... tags) {
+    Gauge.builder(name, object, value).tags(tags).register(meterRegistry);
+  }
+
+  public <T> void count(
+      final String name, final T object, final ToDoubleFunction<T> count, final String... tags) {
+    FunctionCounter.builder(name, object, count).tags(tags).register(meterRegistry);
+  }
+
+  // For hot synchronous paths that record their own durations. The timer is looked up once, so a
+  // call doesn't allocate tags or a sample
+  public Timer timer(final String name, final String... tags) {
+    return meterRegistry.timer(name, tags);
+  }
+
+  private void stop(
+      final Timer.Sample sample,
+      final String name,
+      final SignalType signal,
+      final String exception,
+      final String... tags) {
+    sample.stop(
+        meterRegistry.timer(
+            name, Tags.of(tags).and("outcome", outcome(signal)).and("exception", exception)));
+  }
+
+  private static String outcome(final SignalType signal) {
+    switch (signal) {
+      case ON_ERROR:
+        return "error";
+      case CANCEL:
+        return "cancelled";
+      default:
+        return "success";
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Times every query method of the Spring Data repositories as shepherd.repository, tagged with
+// the repository bean and the method
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+  private static final String REPOSITORY_TIMER = "shepherd.repository";
+
+  // Looked up lazily, since post processors are created before the beans they could depend on
+  private final ObjectProvider<MetricsService> metricsService;
+
+  public RepositoryMetricsPostProcessor(final ObjectProvider<MetricsService> metricsService) {
+    this.metricsService = metricsService;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+    if (bean instanceof Repository && bean instanceof Advised) {
+      ((Advised) bean).addAdvice(timingInterceptor(beanName));
+    }
+    return bean;
+  }
+
+  private MethodInterceptor timingInterceptor(final String repository) {
+    return invocation -> {
+      final Object result = invocation.proceed();
+      final String[] tags = {"repository", repository, "method", invocation.getMethod().getName()};
+      if (result instanceof Mono) {
+        return metricsService.getObject().time(REPOSITORY_TIMER, (Mono<?>) result, tags);
+      }
+      if (result instanceof Flux) {
+        return metricsService.getObject().time(REPOSITORY_TIMER, (Flux<?>) result, tags);
+      }
+      return result;
+    };
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+// Records the outcome of every flag verification. Recording only puts the event on a bounded
+// queue, so that the submission path never waits for the log. Events are written in batches by a
+// background task, and are dropped and counted if the queue is full
+@Slf4j
+@Component
+public final class FlagAuditLog {
+  private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+  private final BlockingQueue<FlagAuditEvent> events;
+
+  private final int batchSize;
+
+  private final AtomicLong writtenCount = new AtomicLong();
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  private Clock clock;
+
+  private Disposable flushTask;
+
+  public FlagAuditLog(
+      final MetricsService metricsService,
+      @Value("${application.audit.queue-size:10000}") final int queueSize,
+      @Value("${application.audit.batch-size:500}") final int batchSize) {
+    this.events = new ArrayBlockingQueue<>(queueSize);
+    this.batchSize = batchSize;
+    resetClock();
+
+    metricsService.gauge("shepherd.audit.pending", this, FlagAuditLog::getPendingCount);
+    metricsService.count("shepherd.audit.written", this, FlagAuditLog::getWrittenCount);
+    metricsService.count("shepherd.audit.dropped", this, FlagAuditLog::getDroppedCount);
+  }
+
+  public void record(final long userId, final String moduleName, final boolean isValid) {
+    final FlagAuditEvent event =
+        FlagAuditEvent.builder()
+            .userId(userId)
+            .moduleName(moduleName)
+            .isValid(isValid)
+            .time(LocalDateTime.now(clock))
+            .build();
+    if (!events.offer(event)) {
+      droppedCount.incrementAndGet();
+    }
+  }
+
+  public long flush() {
+    long flushed = 0;
+    final List<FlagAuditEvent> batch = new ArrayList<>(batchSize);
+    while (events.drainTo(batch, batchSize) > 0) {
+      write(batch);
+      // Counted per batch, so that the batches written before a failure are still counted
+      writtenCount.addAndGet(batch.size());
+      flushed += batch.size();
+      batch.clear();
+    }
+    return flushed;
+  }
+
+  // The whole batch goes to the log in one call, so that the appender is locked once per batch
+  private void write(final List<FlagAuditEvent> batch) {
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    final StringBuilder lines = new StringBuilder();
+    for (final FlagAuditEvent event : batch) {
+      lines
+          .append(System.lineSeparator())
+          .append("userId=")
+          .append(event.getUserId())
+          .append(" module=")
+          .append(event.getModuleName())
+          .append(" valid=")
+          .append(event.isValid())
+          .append(" time=")
+          .append(event.getTime());
+    }
+    log.info("{} flag verifications:{}", batch.size(), lines);
+  }
+
+  public long getPendingCount() {
+    return events.size();
+  }
+
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  public void resetClock() {
+    this.clock = Clock.systemDefaultZone();
+  }
+
+  public void setClock(final Clock clock) {
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  public void startFlushing() {
+    // A slow flush skips ticks instead of failing the interval, and a failed flush is logged
+    // instead of cancelling it. Either would stop the audit log for good
+    flushTask = Flux.interval(FLUSH_INTERVAL).onBackpressureDrop().subscribe(tick -> flushSafely());
+  }
+
+  private void flushSafely() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      log.error("Could not write flag audit events", e);
+    }
+  }
+
+  @PreDestroy
+  public void stopFlushing() {
+    if (flushTask != null) {
+      flushTask.dispose();
+    }
+    // Don't lose the events of the last interval on shutdown
+    flush();
+  }
+}
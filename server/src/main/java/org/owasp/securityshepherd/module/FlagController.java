@@ -33,8 +33,6 @@ import reactor.core.publisher.Mono;
 public class FlagController {
   private final ControllerAuthentication controllerAuthentication;
 
-  private final ModuleService moduleService;
-
   private final SubmissionService submissionService;
 
   @PostMapping(path = "flag/submit/{moduleName}")
@@ -43,7 +41,6 @@ public class FlagController {
       @PathVariable("moduleName") final String moduleName, @RequestBody final String flag) {
     return controllerAuthentication
         .getUserId()
-        .zipWith(moduleService.findByName(moduleName).map(Module::getName))
-        .flatMap(tuple -> submissionService.submit(tuple.getT1(), tuple.getT2(), flag));
+        .flatMap(userId -> submissionService.submit(userId, moduleName, flag));
   }
 }
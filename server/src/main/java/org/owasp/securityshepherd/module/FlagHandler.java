@@ -23,6 +23,7 @@ import org.owasp.securityshepherd.crypto.CryptoService;
 import org.owasp.securityshepherd.exception.InvalidFlagStateException;
 import org.owasp.securityshepherd.exception.InvalidUserIdException;
 import org.owasp.securityshepherd.exception.ModuleNameNotFoundException;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.service.ConfigurationService;
 import org.owasp.securityshepherd.user.UserService;
 import org.springframework.stereotype.Service;
@@ -41,6 +42,10 @@ public final class FlagHandler {
 
   private final CryptoService cryptoService;
 
+  private final FlagAuditLog flagAuditLog;
+
+  private final MetricsService metricsService;
+
   private static final String FLAG_PREFIX = "flag";
 
   public Mono<String> getSaltedHmac(
@@ -91,47 +96,41 @@ public final class FlagHandler {
             + " to moduleName "
             + moduleName);
 
-    // Get the module from the repository
-    final Mono<Module> currentModule = moduleService.findByName(moduleName);
-
-    final Mono<Boolean> isValid =
-        currentModule
-            // If the module wasn't found, return exception
-            .switchIfEmpty(
-                Mono.error(
-                    new ModuleNameNotFoundException("Module id " + moduleName + " was not found")))
-            // Check if the flag is valid
-            .flatMap(
-                module -> {
-                  if (module.isFlagStatic()) {
-                    // Verifying an exact flag
-                    return Mono.just(module.getStaticFlag().equalsIgnoreCase(submittedFlag));
-                  } else {
-                    // Verifying a dynamic flag
-                    return getDynamicFlag(userId, moduleName).map(submittedFlag::equalsIgnoreCase);
-                  }
-                });
-
-    // Do some logging. First, check if error occurred and then print logs
-    final Mono<String> validText =
-        isValid
-            .onErrorReturn(false)
-            .map(validFlag -> Boolean.TRUE.equals(validFlag) ? "valid" : "invalid");
-
-    Mono.zip(userService.findDisplayNameById(userId), validText, currentModule.map(Module::getId))
-        .map(
-            tuple ->
-                "User "
-                    + tuple.getT1()
-                    + " submitted "
-                    + tuple.getT2()
-                    + " flag "
-                    + submittedFlag
-                    + " to module "
-                    + tuple.getT3())
-        .subscribe(log::debug);
-
-    return isValid;
+    return Mono.defer(
+            () -> {
+              final FlagVerificationEvent event = new FlagVerificationEvent();
+              event.begin();
+              event.userId = userId;
+              event.moduleName = moduleName;
+
+              return moduleService
+                  // Get the module from the repository
+                  .findByName(moduleName)
+                  // If the module wasn't found, return exception
+                  .switchIfEmpty(
+                      Mono.error(
+                          new ModuleNameNotFoundException(
+                              "Module id " + moduleName + " was not found")))
+                  // Check if the flag is valid
+                  .flatMap(
+                      module -> {
+                        event.flagStatic = module.isFlagStatic();
+                        if (event.flagStatic) {
+                          // Verifying an exact flag
+                          return Mono.just(module.getStaticFlag().equalsIgnoreCase(submittedFlag));
+                        } else {
+                          // Verifying a dynamic flag
+                          return getDynamicFlag(userId, moduleName)
+                              .map(submittedFlag::equalsIgnoreCase);
+                        }
+                      })
+                  .doOnNext(isValid -> event.valid = isValid)
+                  // The event is only written if it is enabled and slower than its threshold
+                  .doFinally(signal -> event.commit());
+            })
+        // Queue an audit event, it is written in the background
+        .doOnNext(isValid -> flagAuditLog.record(userId, moduleName, isValid))
+        .transform(verification -> metricsService.time("shepherd.flag.verification", verification));
   }
 
   public Mono<String> getDynamicFlag(final long userId, final String moduleName) {
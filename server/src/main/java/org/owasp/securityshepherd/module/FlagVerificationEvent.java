@@ -0,0 +1,45 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight recorder event for a flag verification, from the module lookup until the flag has been
+// compared. Thresholds and enablement can be changed in jfr/security-shepherd.jfc
+@Name("org.owasp.securityshepherd.FlagVerification")
+@Label("Flag Verification")
+@Description("A submitted flag was checked against the flag of a module")
+@Category({"Security Shepherd", "Modules"})
+@StackTrace(false)
+@Threshold("1 ms")
+class FlagVerificationEvent extends jdk.jfr.Event {
+  @Label("User Id")
+  long userId;
+
+  @Label("Module Name")
+  String moduleName;
+
+  @Label("Static Flag")
+  boolean flagStatic;
+
+  @Label("Valid")
+  boolean valid;
+}
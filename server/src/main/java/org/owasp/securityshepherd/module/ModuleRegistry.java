@@ -0,0 +1,70 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+// Holds every module in memory. The registry is filled from the database on first use, after
+// which ModuleService, the only writer of modules, keeps it up to date
+@Component
+public final class ModuleRegistry {
+
+  private final Map<String, Module> modules = new ConcurrentHashMap<>();
+
+  private volatile boolean isLoaded;
+
+  public boolean isLoaded() {
+    return isLoaded;
+  }
+
+  public void load(final Iterable<Module> loadedModules) {
+    // A module written while we were loading is newer than the one we read
+    loadedModules.forEach(module -> modules.putIfAbsent(module.getName(), module));
+    isLoaded = true;
+  }
+
+  public Module findByName(final String moduleName) {
+    if (moduleName == null) {
+      return null;
+    }
+    return modules.get(moduleName);
+  }
+
+  public List<Module> findAll() {
+    final List<Module> allModules = new ArrayList<>(modules.values());
+    allModules.sort(
+        Comparator.comparing(Module::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+    return allModules;
+  }
+
+  public long count() {
+    return modules.size();
+  }
+
+  public void put(final Module module) {
+    modules.put(module.getName(), module);
+  }
+
+  public void clear() {
+    isLoaded = false;
+    modules.clear();
+  }
+}
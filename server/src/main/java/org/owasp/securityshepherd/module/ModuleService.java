@@ -34,8 +34,10 @@ public final class ModuleService {
 
   private final KeyService keyService;
 
+  private final ModuleRegistry moduleRegistry;
+
   public Mono<Long> count() {
-    return moduleRepository.count();
+    return loadRegistry().then(Mono.fromSupplier(moduleRegistry::count));
   }
 
   public Mono<Module> create(final String moduleName) {
@@ -63,20 +65,33 @@ public final class ModuleService {
                     .key(keyService.generateRandomBytes(16))
                     .build())
         .flatMap(moduleRepository::save)
+        .doOnNext(moduleRegistry::put)
         .doOnSuccess(created -> log.trace("Created module with id " + moduleName));
   }
 
   public Flux<Module> findAll() {
-    return moduleRepository.findAll();
+    return loadRegistry().thenMany(Flux.defer(() -> Flux.fromIterable(moduleRegistry.findAll())));
   }
 
   public Flux<Module> findAllOpen() {
-    return moduleRepository.findAllOpen();
+    return findAll().filter(Module::isOpen);
   }
 
   public Mono<Module> findByName(final String moduleName) {
     log.trace("Find module with name " + moduleName);
-    return moduleRepository.findByName(moduleName);
+    return loadRegistry().then(Mono.fromSupplier(() -> moduleRegistry.findByName(moduleName)));
+  }
+
+  private Mono<Void> loadRegistry() {
+    // Modules only change through this service, so after the first load no lookup needs the
+    // database
+    return Mono.defer(
+        () -> {
+          if (moduleRegistry.isLoaded()) {
+            return Mono.empty();
+          }
+          return moduleRepository.findAll().collectList().doOnNext(moduleRegistry::load).then();
+        });
   }
 
   private Mono<Boolean> doesNotExistByName(final String moduleName) {
@@ -88,7 +103,8 @@ public final class ModuleService {
     return findByName(moduleName)
         .switchIfEmpty(Mono.error(new ModuleNameNotFoundException()))
         .map(module -> module.withFlagStatic(false))
-        .flatMap(moduleRepository::save);
+        .flatMap(moduleRepository::save)
+        .doOnNext(moduleRegistry::put);
   }
 
   public Mono<Module> setStaticFlag(final String moduleName, final String staticFlag) {
@@ -102,6 +118,7 @@ public final class ModuleService {
     return findByName(moduleName)
         .switchIfEmpty(Mono.error(new ModuleNameNotFoundException()))
         .map(module -> module.withFlagStatic(true).withStaticFlag(staticFlag))
-        .flatMap(moduleRepository::save);
+        .flatMap(moduleRepository::save)
+        .doOnNext(moduleRegistry::put);
   }
 }
@@ -39,8 +39,8 @@ public final class ModuleSolutions {
 
     final ModuleListItemBuilder moduleListItemBuilder = ModuleListItem.builder();
     return submissionService
-        // Find all valid submissions by this user
-        .findAllValidModuleNamesByUserId(userId)
+        // Find the modules this user has solved
+        .findSolvedModulesByUserId(userId)
         .flatMapMany(
             finishedModules ->
                 // Get all modules
@@ -99,7 +99,7 @@ public final class ModuleSolutions {
     final ModuleListItemBuilder moduleListItemBuilder = ModuleListItem.builder();
     return moduleMono
         // Find all valid submissions by this user
-        .zipWith(submissionService.findAllValidModuleNamesByUserId(userId))
+        .zipWith(submissionService.findSolvedModulesByUserId(userId))
         .map(
             tuple -> {
               moduleListItemBuilder.name(tuple.getT1().getName());
@@ -110,8 +110,7 @@ public final class ModuleSolutions {
 
   private Mono<Boolean> userHasSolvedThisModule(final long userId, final String moduleName) {
     return submissionService
-        .findAllValidByUserIdAndModuleName(userId, moduleName)
-        .map(u -> true)
-        .defaultIfEmpty(false);
+        .findSolvedModulesByUserId(userId)
+        .map(solvedModules -> solvedModules.contains(moduleName));
   }
 }
@@ -17,6 +17,7 @@ package org.owasp.securityshepherd.module.csrf;
 
 import java.time.Clock;
 import java.time.LocalDateTime;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
@@ -27,12 +28,17 @@ public class CsrfService {
 
   private final FlagHandler flagHandler;
 
+  private final MetricsService metricsService;
+
   private Clock clock;
 
   public CsrfService(
-      final CsrfAttackRepository csrfAttackRepository, final FlagHandler flagHandler) {
+      final CsrfAttackRepository csrfAttackRepository,
+      final FlagHandler flagHandler,
+      final MetricsService metricsService) {
     this.csrfAttackRepository = csrfAttackRepository;
     this.flagHandler = flagHandler;
+    this.metricsService = metricsService;
     resetClock();
   }
 
@@ -74,6 +80,7 @@ public class CsrfService {
                         .started(LocalDateTime.now(clock))
                         .moduleName(moduleName)
                         .build())
-                .then(Mono.just(false)));
+                .then(Mono.just(false)))
+        .transform(validation -> metricsService.time("shepherd.csrf.validation", validation));
   }
 }
@@ -0,0 +1,272 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module.sqlinjection;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Keeps one initialized in-memory database per user, so that a query only costs a single SELECT.
+// A database is rebuilt when the flag of its user changes. The least recently used databases are
+// shut down when they no longer fit in the heap budget or have been idle for too long, and are
+// transparently recreated on the next query
+@Slf4j
+@Component
+public class SqlInjectionDatabasePool {
+  private static final String SCHEMA_SCRIPT =
+      "RUNSCRIPT FROM 'classpath:module/sql-injection-tutorial.sql'";
+
+  // Queries run as a user that may only read, so that injected statements can't damage the
+  // database for the next query
+  private static final String QUERY_USER = "student";
+
+  private static final String QUERY_PASSWORD = "student";
+
+  private static final Duration CLEAN_UP_INTERVAL = Duration.ofMinutes(1);
+
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory;
+
+  private final KeyService keyService;
+
+  private final AtomicLong createdCount = new AtomicLong();
+
+  private final AtomicLong evictedCount = new AtomicLong();
+
+  private final long databaseSizeEstimate;
+
+  private final long queryTimeoutMillis;
+
+  private final Cache<Long, SqlInjectionDatabase> databases;
+
+  private Disposable cleanUpTask;
+
+  public SqlInjectionDatabasePool(
+      final SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory,
+      final KeyService keyService,
+      final MetricsService metricsService,
+      // A tutorial database takes about half a megabyte of heap
+      @Value("${application.sql-injection.database-size-estimate:524288}")
+          final long databaseSizeEstimate,
+      @Value("${application.sql-injection.heap-budget:268435456}") final long heapBudget,
+      @Value("${application.sql-injection.idle-minutes:30}") final long idleMinutes,
+      @Value("${application.sql-injection.query-timeout-millis:2000}")
+          final long queryTimeoutMillis) {
+    this.sqlInjectionDatabaseClientFactory = sqlInjectionDatabaseClientFactory;
+    this.keyService = keyService;
+    this.databaseSizeEstimate = databaseSizeEstimate;
+    this.queryTimeoutMillis = queryTimeoutMillis;
+    this.databases =
+        CacheBuilder.newBuilder()
+            // A single segment keeps the eviction order a global LRU. Writes only happen when a
+            // database is created, so there is little contention
+            .concurrencyLevel(1)
+            .maximumWeight(heapBudget)
+            .weigher((Long userId, SqlInjectionDatabase database) -> database.sizeEstimate)
+            .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+            .removalListener(
+                (RemovalNotification<Long, SqlInjectionDatabase> notification) -> {
+                  if (notification.wasEvicted()) {
+                    evictedCount.incrementAndGet();
+                  }
+                  // Replaced databases are shut down by their replacement
+                  if (notification.getCause() != RemovalCause.REPLACED) {
+                    notification.getValue().shutdown.subscribe();
+                  }
+                })
+            .build();
+
+    metricsService.gauge("shepherd.sqlinjection.databases", this, SqlInjectionDatabasePool::size);
+    metricsService.gauge(
+        "shepherd.sqlinjection.databases.bytes", this, SqlInjectionDatabasePool::getEstimatedBytes);
+    metricsService.count(
+        "shepherd.sqlinjection.databases.created", this, SqlInjectionDatabasePool::getCreatedCount);
+    metricsService.count(
+        "shepherd.sqlinjection.databases.evicted", this, SqlInjectionDatabasePool::getEvictedCount);
+  }
+
+  @PostConstruct
+  public void startCleanUp() {
+    // The cache only expires entries when it is used, so idle databases would otherwise stay on
+    // the heap during a quiet period
+    cleanUpTask = Flux.interval(CLEAN_UP_INTERVAL).subscribe(tick -> databases.cleanUp());
+  }
+
+  public Mono<DatabaseClient> getDatabaseClient(final long userId, final String flag) {
+    return Mono.defer(
+        () -> {
+          final SqlInjectionDatabase database =
+              databases
+                  .asMap()
+                  .compute(
+                      userId,
+                      (id, current) -> {
+                        if (current != null && current.flag.equals(flag)) {
+                          return current;
+                        }
+                        // The new database is only set up once the old one is shut down
+                        return create(id, flag, current == null ? Mono.empty() : current.shutdown);
+                      });
+          // A database that failed to initialize is thrown away and built again on the next call
+          return database.queryClient.doOnError(e -> databases.asMap().remove(userId, database));
+        });
+  }
+
+  public boolean hasDatabase(final long userId, final String flag) {
+    final SqlInjectionDatabase database = databases.getIfPresent(userId);
+    return database != null && database.flag.equals(flag);
+  }
+
+  public void evict(final long userId) {
+    databases.invalidate(userId);
+  }
+
+  public long size() {
+    return databases.size();
+  }
+
+  public long getEstimatedBytes() {
+    return databases.size() * databaseSizeEstimate;
+  }
+
+  public long getCreatedCount() {
+    return createdCount.get();
+  }
+
+  public long getEvictedCount() {
+    return evictedCount.get();
+  }
+
+  public void cleanUp() {
+    databases.cleanUp();
+  }
+
+  @PreDestroy
+  public void clear() {
+    if (cleanUpTask != null) {
+      cleanUpTask.dispose();
+    }
+    // Wait for the shutdowns, so that no database outlives the pool
+    Flux.fromIterable(new ArrayList<>(databases.asMap().values()))
+        .flatMap(database -> database.shutdown)
+        .then()
+        .block(SHUTDOWN_TIMEOUT);
+    databases.invalidateAll();
+  }
+
+  private SqlInjectionDatabase create(
+      final long userId, final String flag, final Mono<Void> previousShutdown) {
+    createdCount.incrementAndGet();
+    // In-memory databases are shared by the whole JVM, so the name must be unique across pools
+    final String databaseName =
+        String.format("sql-injection-tutorial-for-uid%d-%s", userId, UUID.randomUUID());
+
+    // The database lives until we shut it down, not until its last connection is closed
+    final DatabaseClient adminClient =
+        sqlInjectionDatabaseClientFactory.create(
+            String.format("r2dbc:h2:mem:///%s;DB_CLOSE_DELAY=-1", databaseName));
+
+    // Never create a new database through this client, only use the existing one. H2 cancels
+    // student queries that run for too long
+    final DatabaseClient queryClient =
+        sqlInjectionDatabaseClientFactory.create(
+            String.format(
+                "r2dbc:h2:mem://%s:%s@/%s;IFEXISTS=TRUE;QUERY_TIMEOUT=%d",
+                QUERY_USER, QUERY_PASSWORD, databaseName, queryTimeoutMillis));
+
+    // The flag row gets a random name so that it can only be found through injection
+    final String randomUserName =
+        Base64.getEncoder().encodeToString(keyService.generateRandomBytes(16));
+
+    final Mono<DatabaseClient> initializedQueryClient =
+        previousShutdown
+            .then(adminClient.execute(SCHEMA_SCRIPT).then())
+            .then(
+                adminClient
+                    .execute("INSERT INTO sqlinjection.users values ($1, $2)")
+                    .bind(0, randomUserName)
+                    .bind(1, String.format("Well done, flag is %s", flag))
+                    .then())
+            .then(
+                adminClient
+                    .execute(
+                        String.format("CREATE USER %s PASSWORD '%s'", QUERY_USER, QUERY_PASSWORD))
+                    .then())
+            .then(
+                adminClient
+                    .execute(String.format("GRANT SELECT ON sqlinjection.users TO %s", QUERY_USER))
+                    .then())
+            .thenReturn(queryClient)
+            .cache();
+
+    return new SqlInjectionDatabase(
+        flag, adminClient, initializedQueryClient, databaseSizeEstimate);
+  }
+
+  private static final class SqlInjectionDatabase {
+    private final String flag;
+
+    private final DatabaseClient adminClient;
+
+    private final Mono<DatabaseClient> queryClient;
+
+    private final int sizeEstimate;
+
+    // Shuts the database down once, however often it is subscribed to
+    private final Mono<Void> shutdown;
+
+    private SqlInjectionDatabase(
+        final String flag,
+        final DatabaseClient adminClient,
+        final Mono<DatabaseClient> queryClient,
+        final long sizeEstimate) {
+      this.flag = flag;
+      this.adminClient = adminClient;
+      this.queryClient = queryClient;
+      // Guava weighs entries with ints
+      this.sizeEstimate = (int) Math.min(sizeEstimate, Integer.MAX_VALUE);
+      this.shutdown =
+          adminClient
+              .execute("SHUTDOWN")
+              .then()
+              .onErrorResume(
+                  e -> {
+                    log.warn("Could not shut down SQL injection database", e);
+                    return Mono.empty();
+                  })
+              .cache();
+    }
+  }
+}
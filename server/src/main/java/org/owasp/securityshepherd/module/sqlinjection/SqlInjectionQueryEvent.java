@@ -0,0 +1,42 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module.sqlinjection;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight recorder event for a SQL injection tutorial query, including building the database of
+// the user when it wasn't pooled
+@Name("org.owasp.securityshepherd.SqlInjectionQuery")
+@Label("SQL Injection Query")
+@Description("A query was run against the SQL injection tutorial database of a user")
+@Category({"Security Shepherd", "Modules"})
+@StackTrace(false)
+@Threshold("0 ms")
+class SqlInjectionQueryEvent extends jdk.jfr.Event {
+  @Label("User Id")
+  long userId;
+
+  @Label("Database Created")
+  boolean databaseCreated;
+
+  @Label("Rows")
+  int rows;
+}
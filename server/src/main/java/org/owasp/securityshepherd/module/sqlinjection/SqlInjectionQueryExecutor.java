@@ -0,0 +1,95 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module.sqlinjection;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.PreDestroy;
+import org.owasp.securityshepherd.exception.TooManyQueriesException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Runs student queries against the tutorial databases. H2 executes queries on the subscribing
+// thread, so they run on their own scheduler instead of the event loop, and every user may only
+// have a few queries running at a time
+@Component
+public class SqlInjectionQueryExecutor {
+  private final int maxRows;
+
+  private final int maxQueriesPerUser;
+
+  private final ConcurrentMap<Long, Integer> runningQueries = new ConcurrentHashMap<>();
+
+  private final Scheduler scheduler;
+
+  public SqlInjectionQueryExecutor(
+      @Value("${application.sql-injection.max-rows:100}") final int maxRows,
+      @Value("${application.sql-injection.max-queries-per-user:2}") final int maxQueriesPerUser,
+      @Value("${application.sql-injection.pool-size:4}") final int poolSize,
+      @Value("${application.sql-injection.queue-size:64}") final int queueSize) {
+    this.maxRows = maxRows;
+    this.maxQueriesPerUser = maxQueriesPerUser;
+    // The scheduler limits the number of queued tasks per thread
+    this.scheduler =
+        Schedulers.newBoundedElastic(
+            poolSize, Math.max(1, queueSize / poolSize), "sql-injection-query");
+  }
+
+  @PreDestroy
+  public void dispose() {
+    scheduler.dispose();
+  }
+
+  public Flux<SqlInjectionTutorialRow> execute(
+      final long userId, final DatabaseClient databaseClient, final String query) {
+    return Flux.defer(
+            () -> {
+              if (!tryAcquire(userId)) {
+                return Flux.error(
+                    new TooManyQueriesException("Too many queries in progress for this user"));
+              }
+              return databaseClient
+                  .execute(query)
+                  .as(SqlInjectionTutorialRow.class)
+                  .fetch()
+                  .all()
+                  // Cancels the query once enough rows have been read
+                  .take(maxRows)
+                  .subscribeOn(scheduler)
+                  .doFinally(signal -> release(userId));
+            })
+        .onErrorMap(
+            RejectedExecutionException.class,
+            e -> new TooManyQueriesException("Too many queries in progress", e));
+  }
+
+  private boolean tryAcquire(final long userId) {
+    if (runningQueries.merge(userId, 1, Integer::sum) > maxQueriesPerUser) {
+      release(userId);
+      return false;
+    }
+    return true;
+  }
+
+  private void release(final long userId) {
+    runningQueries.computeIfPresent(userId, (id, count) -> count == 1 ? null : count - 1);
+  }
+}
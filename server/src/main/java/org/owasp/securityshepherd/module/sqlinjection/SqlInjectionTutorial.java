@@ -15,12 +15,12 @@
  */
 package org.owasp.securityshepherd.module.sqlinjection;
 
-import java.util.Base64;
 import lombok.EqualsAndHashCode;
-import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.BaseModule;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.ModuleService;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.r2dbc.BadSqlGrammarException;
 import org.springframework.data.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
@@ -33,53 +33,48 @@ public class SqlInjectionTutorial extends BaseModule {
 
   private static final String MODULE_NAME = "sql-injection-tutorial";
 
-  private final SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory;
+  private final SqlInjectionDatabasePool sqlInjectionDatabasePool;
 
-  private final KeyService keyService;
+  private final SqlInjectionQueryExecutor sqlInjectionQueryExecutor;
+
+  private final MetricsService metricsService;
 
   public SqlInjectionTutorial(
       final ModuleService moduleService,
       final FlagHandler flagHandler,
-      final SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory,
-      final KeyService keyService) {
+      final SqlInjectionDatabasePool sqlInjectionDatabasePool,
+      final SqlInjectionQueryExecutor sqlInjectionQueryExecutor,
+      final MetricsService metricsService) {
     super(MODULE_NAME, moduleService, flagHandler, null);
-    this.sqlInjectionDatabaseClientFactory = sqlInjectionDatabaseClientFactory;
-    this.keyService = keyService;
+    this.sqlInjectionDatabasePool = sqlInjectionDatabasePool;
+    this.sqlInjectionQueryExecutor = sqlInjectionQueryExecutor;
+    this.metricsService = metricsService;
   }
 
   public Flux<SqlInjectionTutorialRow> submitQuery(final long userId, final String usernameQuery) {
-    final String randomUserName =
-        Base64.getEncoder().encodeToString(keyService.generateRandomBytes(16));
-    // Generate a dynamic flag and add it as a row to the database creation script.
-    // The flag is
-    // different for every user to prevent copying flags
-    final Mono<String> insertionQuery =
-        getFlag(userId)
-            // Curly braces need to be URL encoded
-            .map(flag -> flag.replace("{", "%7B"))
-            .map(flag -> flag.replace("}", "%7D"))
-            .map(
-                flag ->
-                    String.format(
-                        "INSERT INTO sqlinjection.users values ('%s', 'Well done, flag is %s')",
-                        randomUserName, flag));
+    return Flux.defer(
+            () -> {
+              final SqlInjectionQueryEvent event = new SqlInjectionQueryEvent();
+              event.begin();
+              event.userId = userId;
 
-    // Create a connection URL to a H2SQL in-memory database. Each submission call
-    // creates a completely new instance of this database.
-    final Mono<String> connectionUrl =
-        insertionQuery.map(
-            query ->
-                String.format(
-                    "r2dbc:h2:mem:///sql-injection-tutorial-for-uid%d;"
-                        // Load the initial sql file
-                        + "INIT=RUNSCRIPT FROM 'classpath:module/sql-injection-tutorial.sql'"
-                        + "%s%s",
-                    // %5C%3B is a backslash and semicolon URL-encoded
-                    userId, "%5C%3B", query));
+              return query(userId, usernameQuery, event)
+                  .doOnNext(row -> event.rows++)
+                  // The event is only written if it is enabled and slower than its threshold
+                  .doFinally(signal -> event.commit());
+            })
+        .transform(rows -> metricsService.time("shepherd.sqlinjection.query", rows));
+  }
 
-    // Create a DatabaseClient that allows us to manually interact with the database
+  private Flux<SqlInjectionTutorialRow> query(
+      final long userId, final String usernameQuery, final SqlInjectionQueryEvent event) {
+    // Every user has an own database containing a row with their dynamic flag. The flag is
+    // different for every user to prevent copying flags
     final Mono<DatabaseClient> databaseClientMono =
-        connectionUrl.map(sqlInjectionDatabaseClientFactory::create);
+        getFlag(userId)
+            .doOnNext(
+                flag -> event.databaseCreated = !sqlInjectionDatabasePool.hasDatabase(userId, flag))
+            .flatMap(flag -> sqlInjectionDatabasePool.getDatabaseClient(userId, flag));
 
     // Create the database query. Yes, this is vulnerable to SQL injection. That's
     // the whole point.
@@ -90,16 +85,13 @@ public class SqlInjectionTutorial extends BaseModule {
         // Execute database query
         .flatMapMany(
             databaseClient ->
-                databaseClient
-                    .execute(injectionQuery)
-                    .as(SqlInjectionTutorialRow.class)
-                    .fetch()
-                    .all())
+                sqlInjectionQueryExecutor.execute(userId, databaseClient, injectionQuery))
         // Handle errors
         .onErrorResume(
             exception -> {
-              // We want to forward database syntax errors to the user
-              if (exception instanceof BadSqlGrammarException) {
+              // We want to forward database syntax errors and timeouts to the user
+              if (exception instanceof BadSqlGrammarException
+                  || exception instanceof QueryTimeoutException) {
                 return Flux.just(
                     SqlInjectionTutorialRow.builder()
                         .error(exception.getCause().toString())
@@ -0,0 +1,42 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module.xss;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight recorder event for rendering a page in a pooled web client and collecting its alerts.
+// Time spent waiting for a free client is not included
+@Name("org.owasp.securityshepherd.XssEvaluation")
+@Label("XSS Evaluation")
+@Description("An HTML page was rendered to check it for cross site scripting")
+@Category({"Security Shepherd", "Modules"})
+@StackTrace(false)
+@Threshold("0 ms")
+class XssEvaluationEvent extends jdk.jfr.Event {
+  @Label("Payload Length")
+  int payloadLength;
+
+  @Label("Alerts")
+  int alerts;
+
+  @Label("DOM Elements")
+  int domElements;
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.module.xss;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.springframework.stereotype.Component;
+
+@Component
+public class XssPayloadScanner {
+  // A payload that contains none of these can't open a tag, sneak in markup through a character
+  // reference, or point a URL at a script
+  private static final char[] SUSPICIOUS_CHARACTERS = {'<', '&', '\0'};
+
+  private static final String SCRIPT_SCHEME = "script:";
+
+  private final AtomicLong inertCount = new AtomicLong();
+
+  private final AtomicLong suspiciousCount = new AtomicLong();
+
+  public XssPayloadScanner(final MetricsService metricsService) {
+    // Inert payloads take the fast path, suspicious ones are evaluated in the emulated browser
+    metricsService.count(
+        "shepherd.xss.payloads", this, XssPayloadScanner::getInertCount, "path", "fast");
+    metricsService.count(
+        "shepherd.xss.payloads", this, XssPayloadScanner::getSuspiciousCount, "path", "browser");
+  }
+
+  public boolean isInert(final String payload) {
+    final boolean isInert = canNotExecuteScript(payload);
+    if (isInert) {
+      inertCount.incrementAndGet();
+    } else {
+      suspiciousCount.incrementAndGet();
+    }
+    return isInert;
+  }
+
+  public long getInertCount() {
+    return inertCount.get();
+  }
+
+  public long getSuspiciousCount() {
+    return suspiciousCount.get();
+  }
+
+  private static boolean canNotExecuteScript(final String payload) {
+    for (final char suspiciousCharacter : SUSPICIOUS_CHARACTERS) {
+      if (payload.indexOf(suspiciousCharacter) != -1) {
+        return false;
+      }
+    }
+    // Catches javascript:, vbscript: and friends
+    return !payload.toLowerCase(Locale.ROOT).contains(SCRIPT_SCHEME);
+  }
+}
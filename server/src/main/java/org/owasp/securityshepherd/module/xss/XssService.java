@@ -16,32 +16,177 @@
 package org.owasp.securityshepherd.module.xss;
 
 import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
+import com.gargoylesoftware.htmlunit.DialogWindow;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
 import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.NicelyResynchronizingAjaxController;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.StorageHolder;
+import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.WebWindowEvent;
+import com.gargoylesoftware.htmlunit.WebWindowListener;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import lombok.RequiredArgsConstructor;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.owasp.securityshepherd.exception.XssEvaluationException;
+import org.owasp.securityshepherd.exception.XssEvaluationRejectedException;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class XssService {
+  private static final String WARM_UP_PAGE =
+      "<html><body><script>alert('warm-up')</script></body></html>";
+
   private final XssWebClientFactory xssWebClientFactory;
 
-  public List<String> doXss(final String htmlPage) {
+  private final MetricsService metricsService;
+
+  // How often we check for alerts while JavaScript jobs are still pending
+  private static final long POLL_INTERVAL_MILLIS = 20;
+
+  private final int poolSize;
+
+  private final long maxWaitMillis;
+
+  // Booting the JavaScript engine of a new WebClient takes most of the time of an evaluation, so
+  // idle clients are kept here and reused
+  private final BlockingQueue<WebClient> webClientPool;
+
+  // At most one evaluation per pooled client runs at a time, and evaluations never run on the
+  // event loop. When too many are waiting, new ones are rejected
+  private final Scheduler scheduler;
+
+  public XssService(
+      final XssWebClientFactory xssWebClientFactory,
+      final MetricsService metricsService,
+      @Value("${application.xss.pool-size:4}") final int poolSize,
+      @Value("${application.xss.queue-size:64}") final int queueSize,
+      @Value("${application.xss.max-wait:1000}") final long maxWaitMillis) {
+    this.xssWebClientFactory = xssWebClientFactory;
+    this.metricsService = metricsService;
+    this.poolSize = poolSize;
+    this.maxWaitMillis = maxWaitMillis;
+    this.webClientPool = new ArrayBlockingQueue<>(poolSize);
+    // The scheduler limits the number of queued tasks per thread
+    this.scheduler =
+        Schedulers.newBoundedElastic(poolSize, Math.max(1, queueSize / poolSize), "xss-evaluation");
+  }
+
+  @PostConstruct
+  public void warmUp() {
+    // Fill the pool in the background, so that the first students don't wait for new clients. The
+    // warm-up doesn't evaluate a student's page, so it is kept out of the evaluation metrics
+    Flux.range(0, poolSize)
+        .flatMap(i -> Mono.fromRunnable(this::warmUpWebClient).subscribeOn(scheduler))
+        .subscribe(done -> {}, e -> log.warn("Could not warm up XSS web clients", e));
+  }
+
+  @PreDestroy
+  public void dispose() {
+    scheduler.dispose();
+    WebClient webClient;
+    while ((webClient = webClientPool.poll()) != null) {
+      webClient.close();
+    }
+  }
+
+  public Mono<List<String>> doXss(final String htmlPage) {
+    return Mono.fromCallable(() -> evaluate(htmlPage))
+        .subscribeOn(scheduler)
+        .onErrorMap(
+            RejectedExecutionException.class,
+            e -> new XssEvaluationRejectedException("Too many XSS evaluations in progress", e))
+        .transform(evaluation -> metricsService.time("shepherd.xss.evaluation", evaluation));
+  }
+
+  private List<String> evaluate(final String htmlPage) {
+    final XssEvaluationEvent event = new XssEvaluationEvent();
+    event.begin();
+    event.payloadLength = htmlPage.length();
+
+    WebClient webClient = webClientPool.poll();
+    if (webClient == null) {
+      webClient = xssWebClientFactory.createWebClient();
+    }
+
+    try {
+      return evaluateAndRelease(webClient, htmlPage, event);
+    } finally {
+      event.commit();
+    }
+  }
+
+  private void warmUpWebClient() {
+    // The event is never committed, so the flight recorder doesn't see the warm-up either
+    evaluateAndRelease(
+        xssWebClientFactory.createWebClient(), WARM_UP_PAGE, new XssEvaluationEvent());
+  }
+
+  private List<String> evaluateAndRelease(
+      final WebClient webClient, final String htmlPage, final XssEvaluationEvent event) {
+    final LoadedPages loadedPages = new LoadedPages();
+    webClient.addWebWindowListener(loadedPages);
+
+    final List<String> alerts;
+    try {
+      alerts = evaluate(webClient, htmlPage, event);
+    } catch (RuntimeException e) {
+      // Don't reuse a client that is in an unknown state
+      webClient.close();
+      throw e;
+    }
+    release(webClient, loadedPages);
+    return alerts;
+  }
+
+  // Storage is kept per origin, and a payload can navigate its windows and frames to any origin,
+  // so every page that was loaded during an evaluation is remembered until the client is released
+  private static final class LoadedPages implements WebWindowListener {
+    private final Set<Page> pages = new HashSet<>();
+
+    @Override
+    public void webWindowOpened(final WebWindowEvent event) {}
+
+    @Override
+    public void webWindowContentChanged(final WebWindowEvent event) {
+      if (event.getNewPage() != null) {
+        pages.add(event.getNewPage());
+      }
+    }
+
+    @Override
+    public void webWindowClosed(final WebWindowEvent event) {}
+  }
+
+  private List<String> evaluate(
+      final WebClient webClient, final String htmlPage, final XssEvaluationEvent event) {
     MockWebConnection mockWebConnection = new MockWebConnection();
 
     mockWebConnection.setDefaultResponse(htmlPage);
-    final WebClient webClient = xssWebClientFactory.createWebClient();
     webClient.setWebConnection(mockWebConnection);
 
     final CollectingAlertHandler alertHandler = xssWebClientFactory.createAlertHandler();
+    final List<String> alerts = alertHandler.getCollectedAlerts();
 
     webClient.setAlertHandler(alertHandler);
 
@@ -53,27 +198,73 @@ public class XssService {
     } catch (FailingHttpStatusCodeException | IOException e) {
       throw new XssEvaluationException(e);
     } finally {
-      webClient.close();
       mockWebConnection.close();
     }
 
     try {
       page.initialize();
-      interactWithPage(page);
+      event.domElements = interactWithPage(page);
     } catch (FailingHttpStatusCodeException | IOException e) {
       throw new XssEvaluationException(e);
     }
 
-    webClient.waitForBackgroundJavaScript(1000);
+    waitForCompletion(webClient, alerts);
+    event.alerts = alerts.size();
 
-    return alertHandler.getCollectedAlerts();
+    return alerts;
+  }
+
+  private void waitForCompletion(final WebClient webClient, final List<String> alerts) {
+    // One alert is enough to prove the XSS, and without pending jobs no more alerts can come
+    final long deadline = System.currentTimeMillis() + maxWaitMillis;
+    long remaining = maxWaitMillis;
+    while (alerts.isEmpty() && remaining > 0) {
+      if (webClient.waitForBackgroundJavaScript(Math.min(POLL_INTERVAL_MILLIS, remaining)) == 0) {
+        return;
+      }
+      remaining = deadline - System.currentTimeMillis();
+    }
+  }
+
+  private void release(final WebClient webClient, final LoadedPages loadedPages) {
+    webClient.removeWebWindowListener(loadedPages);
+
+    // The next student must not find the local or session storage of this payload
+    for (final WebWindow window : webClient.getWebWindows()) {
+      if (window.getEnclosedPage() != null) {
+        loadedPages.pages.add(window.getEnclosedPage());
+      }
+    }
+    for (final Page page : loadedPages.pages) {
+      for (final StorageHolder.Type type : StorageHolder.Type.values()) {
+        webClient.getStorageHolder().getStore(type, page).clear();
+      }
+    }
+
+    // Closing all windows stops their JavaScript jobs, and the client opens a new empty window.
+    // Dialogs are not top level windows, so they are closed separately
+    for (final WebWindow window : new ArrayList<>(webClient.getWebWindows())) {
+      if (window instanceof DialogWindow) {
+        ((DialogWindow) window).close();
+      }
+    }
+    for (final TopLevelWindow window : new ArrayList<>(webClient.getTopLevelWindows())) {
+      window.close();
+    }
+    webClient.getCookieManager().clearCookies();
+
+    if (!webClientPool.offer(webClient)) {
+      webClient.close();
+    }
   }
 
-  private void interactWithPage(final HtmlPage page) throws IOException {
+  private int interactWithPage(final HtmlPage page) throws IOException {
     Iterator<DomElement> domElementIterator = page.getDomElementDescendants().iterator();
 
+    int domElementCount = 0;
     while (domElementIterator.hasNext()) {
       final DomElement domElement = domElementIterator.next();
+      domElementCount++;
       if (domElement.isDisplayed()) {
         domElement.click();
         domElement.dblClick();
@@ -86,5 +277,6 @@ public class XssService {
         domElement.rightClick();
       }
     }
+    return domElementCount;
   }
 }
@@ -15,6 +15,7 @@
  */
 package org.owasp.securityshepherd.module.xss;
 
+import java.util.Collections;
 import java.util.List;
 import lombok.EqualsAndHashCode;
 import org.owasp.securityshepherd.module.BaseModule;
@@ -31,22 +32,33 @@ public class XssTutorial extends BaseModule {
 
   private final XssService xssService;
 
+  private final XssPayloadScanner xssPayloadScanner;
+
   public XssTutorial(
       final XssService xssService,
+      final XssPayloadScanner xssPayloadScanner,
       final ModuleService moduleService,
       final FlagHandler flagHandler) {
     super(MODULE_NAME, moduleService, flagHandler, null);
     this.xssService = xssService;
+    this.xssPayloadScanner = xssPayloadScanner;
   }
 
   public Mono<XssTutorialResponse> submitQuery(final long userId, final String query) {
+    if (xssPayloadScanner.isInert(query)) {
+      // Plain search strings can't trigger an alert, so we skip the browser emulation
+      return createResponse(userId, query, Collections.emptyList());
+    }
 
     final String htmlTarget =
         String.format(
             "<html><head><title>Alert</title></head><body><p>Result: %s</p></body></html>", query);
 
-    final List<String> alerts = xssService.doXss(htmlTarget);
+    return xssService.doXss(htmlTarget).flatMap(alerts -> createResponse(userId, query, alerts));
+  }
 
+  private Mono<XssTutorialResponse> createResponse(
+      final long userId, final String query, final List<String> alerts) {
     final XssTutorialResponseBuilder xssTutorialResponseBuilder = XssTutorialResponse.builder();
 
     if (alerts.isEmpty()) {
@@ -26,10 +26,14 @@ import reactor.core.publisher.Mono;
 public final class CorrectionService {
   private final CorrectionRepository correctionRepository;
 
+  private final ScoreboardEngine scoreboardEngine;
+
   private Clock clock;
 
-  public CorrectionService(final CorrectionRepository correctionRepository) {
+  public CorrectionService(
+      final CorrectionRepository correctionRepository, final ScoreboardEngine scoreboardEngine) {
     this.correctionRepository = correctionRepository;
+    this.scoreboardEngine = scoreboardEngine;
     resetClock();
   }
 
@@ -53,6 +57,8 @@ public final class CorrectionService {
     correctionBuilder.description(description);
     correctionBuilder.time(LocalDateTime.now(clock));
 
-    return correctionRepository.save(correctionBuilder.build());
+    return correctionRepository
+        .save(correctionBuilder.build())
+        .doOnNext(scoreboardEngine::addCorrection);
   }
 }
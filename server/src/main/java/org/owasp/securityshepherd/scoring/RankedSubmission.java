@@ -35,7 +35,7 @@ public class RankedSubmission implements Serializable {
 
   @NonNull Long userId;
 
-  @NonNull Long moduleName;
+  @NonNull String moduleName;
 
   Long rank;
 
@@ -15,6 +15,7 @@
  */
 package org.owasp.securityshepherd.scoring;
 
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
@@ -24,13 +25,66 @@ import reactor.core.publisher.Mono;
 
 @Repository
 public interface RankedSubmissionRepository extends ReactiveCrudRepository<RankedSubmission, Long> {
+  // Serializes the ranking of a module. Called first in every ranking transaction
+  @Query("SELECT name FROM module WHERE name = :module_name FOR UPDATE")
+  public Mono<String> lockModule(@Param("module_name") final String moduleName);
+
+  @Modifying
+  @Query("DELETE FROM ranked_submission WHERE module_name = :module_name")
+  public Mono<Integer> deleteAllByModuleName(@Param("module_name") final String moduleName);
+
+  // Ranks all valid submissions to a module. Submissions made at the same time share a rank.
+  // Modules without a base score are not ranked, just like the inner join of the old view
+  @Modifying
+  @Query(
+      "INSERT INTO ranked_submission "
+          + "(submission_id, user_id, module_name, `rank`, time, flag, "
+          + "base_score, bonus_score, score) "
+          + "SELECT ranks.id, ranks.user_id, ranks.module_name, ranks.`rank`, "
+          + "ranks.time, ranks.flag, "
+          + "base_score.points, COALESCE(bonus_score.points, 0), "
+          + "base_score.points + COALESCE(bonus_score.points, 0) "
+          + "FROM (SELECT id, user_id, module_name, time, flag, "
+          + "rank() OVER (ORDER BY time) AS `rank` "
+          + "FROM submission WHERE module_name = :module_name AND is_valid = true) AS ranks "
+          + "INNER JOIN module_point AS base_score ON (ranks.module_name = base_score.module_name "
+          + "AND base_score.submission_rank = 0) "
+          + "LEFT JOIN module_point AS bonus_score ON (ranks.module_name = bonus_score.module_name "
+          + "AND ranks.`rank` = bonus_score.submission_rank)")
+  public Mono<Integer> insertAllByModuleName(@Param("module_name") final String moduleName);
+
+  // Ranks a newly solved submission while its module is locked. The rank is one more than the
+  // number of earlier valid submissions to the same module, which gives the same ties as rank()
+  // over time. Like above, modules without a base score are not ranked
+  @Modifying
+  @Query(
+      "INSERT INTO ranked_submission "
+          + "(submission_id, user_id, module_name, `rank`, time, flag, "
+          + "base_score, bonus_score, score) "
+          + "SELECT ranks.id, ranks.user_id, ranks.module_name, ranks.`rank`, "
+          + "ranks.time, ranks.flag, "
+          + "base_score.points, COALESCE(bonus_score.points, 0), "
+          + "base_score.points + COALESCE(bonus_score.points, 0) "
+          + "FROM (SELECT submission.id, submission.user_id, submission.module_name, "
+          + "submission.time, submission.flag, "
+          + "(SELECT count(*) + 1 FROM submission AS earlier "
+          + "WHERE earlier.module_name = submission.module_name AND earlier.is_valid = true "
+          + "AND earlier.time < submission.time) AS `rank` "
+          + "FROM submission WHERE submission.id = :submission_id AND submission.is_valid = true) "
+          + "AS ranks "
+          + "INNER JOIN module_point AS base_score ON (ranks.module_name = base_score.module_name "
+          + "AND base_score.submission_rank = 0) "
+          + "LEFT JOIN module_point AS bonus_score ON (ranks.module_name = bonus_score.module_name "
+          + "AND ranks.`rank` = bonus_score.submission_rank)")
+  public Mono<Integer> insertBySubmissionId(@Param("submission_id") final long submissionId);
+
   @Query("SELECT * from ranked_submission WHERE module_name = :module_name")
-  public Flux<RankedSubmission> findAllByModuleName(@Param("module_name") final long moduleName);
+  public Flux<RankedSubmission> findAllByModuleName(@Param("module_name") final String moduleName);
 
   @Query("SELECT * from ranked_submission WHERE user_id = :user_id")
   public Flux<RankedSubmission> findAllByUserId(@Param("user_id") final long userId);
 
   @Query("SELECT * from ranked_submission WHERE user_id = :user_id AND module_name = :module_name")
   public Mono<RankedSubmission> findAllByUserIdAndModuleName(
-      @Param("user_id") final long userId, @Param("module_name") final long moduleName);
+      @Param("user_id") final long userId, @Param("module_name") final String moduleName);
 }
@@ -29,7 +29,9 @@ public final class ScoreService {
 
   private final ModulePointRepository modulePointRepository;
 
-  private final ScoreboardRepository scoreboardRepository;
+  private final ScoreboardEngine scoreboardEngine;
+
+  private final SubmissionRanker submissionRanker;
 
   public Mono<ModulePoint> setModuleScore(
       final String moduleName, final int rank, final int points) {
@@ -39,10 +41,17 @@ public final class ScoreService {
     }
     ModulePointBuilder builder =
         ModulePoint.builder().moduleName(moduleName).rank(rank).points(points);
-    return modulePointRepository.save(builder.build());
+    return submissionRanker
+        // Existing solves are scored again with the new points
+        .rankModuleAfter(moduleName, modulePointRepository.save(builder.build()))
+        .doOnNext(scoreboardEngine::setModulePoint);
   }
 
   public Flux<ScoreboardEntry> getScoreboard() {
-    return scoreboardRepository.findAll();
+    return scoreboardEngine.getScoreboard();
+  }
+
+  public Flux<ScoreboardUpdate> getScoreboardUpdates() {
+    return scoreboardEngine.getUpdates();
   }
 }
@@ -15,7 +15,10 @@
  */
 package org.owasp.securityshepherd.scoring;
 
+import java.time.Duration;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -27,6 +30,10 @@ import reactor.core.publisher.Flux;
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/")
 public class ScoreboardController {
+  private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+  private static final int UPDATE_BUFFER_SIZE = 256;
+
   private final ScoreService scoreService;
 
   private final SubmissionService submissionService;
@@ -37,6 +44,30 @@ public class ScoreboardController {
     return scoreService.getScoreboard();
   }
 
+  @GetMapping(path = "scoreboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @PreAuthorize("hasRole('ROLE_USER')")
+  public Flux<ServerSentEvent<ScoreboardUpdate>> scoreboardStream() {
+    final Flux<ServerSentEvent<ScoreboardUpdate>> updates =
+        scoreService
+            .getScoreboardUpdates()
+            // A client that falls too far behind is disconnected, and receives a fresh snapshot
+            // when it reconnects
+            .onBackpressureBuffer(UPDATE_BUFFER_SIZE)
+            .map(
+                update ->
+                    ServerSentEvent.builder(update)
+                        .event(update.isSnapshot() ? "snapshot" : "update")
+                        .build());
+
+    // Keep idle connections open through proxies
+    final Flux<ServerSentEvent<ScoreboardUpdate>> heartbeats =
+        Flux.interval(HEARTBEAT_INTERVAL)
+            .onBackpressureDrop()
+            .map(tick -> ServerSentEvent.<ScoreboardUpdate>builder().comment("heartbeat").build());
+
+    return Flux.merge(updates, heartbeats);
+  }
+
   @GetMapping(path = "scoreboard/{userId}")
   @PreAuthorize("hasRole('ROLE_USER')")
   public Flux<RankedSubmission> getById(@PathVariable final long userId) {
@@ -0,0 +1,414 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.scoring;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.owasp.securityshepherd.module.ModulePointRepository;
+import org.owasp.securityshepherd.scoring.ScoreboardUpdate.ScoreboardUpdateBuilder;
+import org.owasp.securityshepherd.user.User;
+import org.owasp.securityshepherd.user.UserRepository;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+// Keeps the scoreboard in memory. The state is loaded from the database once and then kept up to
+// date by the services that write submissions, corrections, module points and users. The computed
+// scoreboard is identical to the one produced by the scoreboard view in schema-mysql.sql
+@Slf4j
+@Component
+public final class ScoreboardEngine {
+
+  private enum State {
+    EMPTY,
+    LOADING,
+    LOADED
+  }
+
+  private static final Comparator<Submission> SOLVE_ORDER =
+      Comparator.comparing(Submission::getTime).thenComparing(Submission::getId);
+
+  private final UserRepository userRepository;
+
+  private final SubmissionRepository submissionRepository;
+
+  private final CorrectionRepository correctionRepository;
+
+  private final ModulePointRepository modulePointRepository;
+
+  // All fields below are guarded by this
+  private State state = State.EMPTY;
+
+  private long generation = 0;
+
+  private Mono<Void> loading;
+
+  private final List<Runnable> pendingDeltas = new ArrayList<>();
+
+  private final Set<Long> userIds = new HashSet<>();
+
+  private final Map<String, Map<Integer, Integer>> modulePoints = new HashMap<>();
+
+  private final Map<String, List<Submission>> solvesByModuleName = new HashMap<>();
+
+  private final Set<Long> submissionIds = new HashSet<>();
+
+  private final Set<Long> correctionIds = new HashSet<>();
+
+  private final Map<Long, Long> correctionsByUserId = new HashMap<>();
+
+  private final Map<String, Map<Long, UserTotal>> totalsByModuleName = new HashMap<>();
+
+  private final Map<Long, UserTotal> totalsByUserId = new HashMap<>();
+
+  // The scoreboard as last sent to update subscribers, which survives a reset
+  private List<ScoreboardEntry> published = Collections.emptyList();
+
+  private volatile List<ScoreboardEntry> scoreboard = Collections.emptyList();
+
+  private final DirectProcessor<ScoreboardUpdate> updates = DirectProcessor.create();
+
+  private final FluxSink<ScoreboardUpdate> updateSink = updates.sink();
+
+  public ScoreboardEngine(
+      final UserRepository userRepository,
+      final SubmissionRepository submissionRepository,
+      final CorrectionRepository correctionRepository,
+      final ModulePointRepository modulePointRepository) {
+    this.userRepository = userRepository;
+    this.submissionRepository = submissionRepository;
+    this.correctionRepository = correctionRepository;
+    this.modulePointRepository = modulePointRepository;
+  }
+
+  public Flux<ScoreboardEntry> getScoreboard() {
+    return load().thenMany(Flux.defer(() -> Flux.fromIterable(scoreboard)));
+  }
+
+  public Flux<ScoreboardUpdate> getUpdates() {
+    return load().thenMany(Flux.create(this::subscribeUpdates));
+  }
+
+  public synchronized Mono<Void> load() {
+    if (state == State.LOADED) {
+      return Mono.empty();
+    }
+    if (loading == null) {
+      state = State.LOADING;
+      final long currentGeneration = generation;
+      loading =
+          Mono.zip(
+                  userRepository.findAll().map(User::getId).collectList(),
+                  modulePointRepository.findAll().collectList(),
+                  submissionRepository.findAllValid().collectList(),
+                  correctionRepository.findAll().collectList())
+              .doOnNext(
+                  tuple ->
+                      initialize(
+                          currentGeneration,
+                          tuple.getT1(),
+                          tuple.getT2(),
+                          tuple.getT3(),
+                          tuple.getT4()))
+              .doOnError(e -> loadFailed(currentGeneration))
+              .then()
+              .cache();
+    }
+    return loading;
+  }
+
+  public synchronized void reset() {
+    generation++;
+    state = State.EMPTY;
+    loading = null;
+    pendingDeltas.clear();
+    clear();
+  }
+
+  public void addUser(final long userId) {
+    apply(() -> userIds.add(userId));
+  }
+
+  public void removeUser(final long userId) {
+    apply(() -> userIds.remove(userId));
+  }
+
+  public void addSubmission(final Submission submission) {
+    if (submission.isValid()) {
+      apply(() -> doAddSubmission(submission));
+    }
+  }
+
+  public void addCorrection(final Correction correction) {
+    apply(() -> doAddCorrection(correction));
+  }
+
+  public void setModulePoint(final ModulePoint modulePoint) {
+    apply(() -> doSetModulePoint(modulePoint));
+  }
+
+  private synchronized void apply(final Runnable delta) {
+    switch (state) {
+      case LOADED:
+        delta.run();
+        publish(rank());
+        break;
+      case LOADING:
+        // The load in progress might not see this change, replay it once the load is done
+        pendingDeltas.add(delta);
+        break;
+      default:
+        // Nothing is loaded yet, and the next load will read this change from the database
+        break;
+    }
+  }
+
+  private synchronized void initialize(
+      final long loadedGeneration,
+      final List<Long> loadedUserIds,
+      final List<ModulePoint> loadedModulePoints,
+      final List<Submission> loadedSubmissions,
+      final List<Correction> loadedCorrections) {
+    if (loadedGeneration != generation) {
+      // The engine was reset while loading, discard the stale result
+      return;
+    }
+
+    clear();
+    userIds.addAll(loadedUserIds);
+    loadedModulePoints.forEach(this::doSetModulePoint);
+    loadedSubmissions.forEach(this::doAddSubmission);
+    loadedCorrections.forEach(this::doAddCorrection);
+    // Deltas are idempotent, so replaying changes that the load already saw is harmless
+    pendingDeltas.forEach(Runnable::run);
+    pendingDeltas.clear();
+
+    publish(rank());
+    state = State.LOADED;
+    log.debug("Loaded scoreboard with " + scoreboard.size() + " entries");
+  }
+
+  private synchronized void loadFailed(final long failedGeneration) {
+    if (failedGeneration == generation) {
+      state = State.EMPTY;
+      loading = null;
+      pendingDeltas.clear();
+    }
+  }
+
+  private synchronized void subscribeUpdates(final FluxSink<ScoreboardUpdate> sink) {
+    // Sending the snapshot and subscribing under the same lock guarantees that no update is lost
+    sink.next(ScoreboardUpdate.builder().isSnapshot(true).entries(published).build());
+    final Disposable subscription = updates.subscribe(sink::next, sink::error, sink::complete);
+    sink.onDispose(subscription);
+  }
+
+  private void publish(final List<ScoreboardEntry> newScoreboard) {
+    scoreboard = newScoreboard;
+
+    final Map<Long, ScoreboardEntry> previousEntries = new HashMap<>();
+    published.forEach(entry -> previousEntries.put(entry.getUserId(), entry));
+    published = newScoreboard;
+
+    final ScoreboardUpdateBuilder updateBuilder = ScoreboardUpdate.builder();
+    boolean isChanged = false;
+    for (final ScoreboardEntry entry : newScoreboard) {
+      if (!entry.equals(previousEntries.remove(entry.getUserId()))) {
+        updateBuilder.entry(entry);
+        isChanged = true;
+      }
+    }
+    if (!previousEntries.isEmpty()) {
+      updateBuilder.removedUserIds(previousEntries.keySet());
+      isChanged = true;
+    }
+
+    if (isChanged) {
+      updateSink.next(updateBuilder.build());
+    }
+  }
+
+  private void clear() {
+    userIds.clear();
+    modulePoints.clear();
+    solvesByModuleName.clear();
+    submissionIds.clear();
+    correctionIds.clear();
+    correctionsByUserId.clear();
+    totalsByModuleName.clear();
+    totalsByUserId.clear();
+    scoreboard = Collections.emptyList();
+  }
+
+  private void doAddSubmission(final Submission submission) {
+    if (!submissionIds.add(submission.getId())) {
+      return;
+    }
+    // The submission table stores DATETIME, which MySQL rounds to whole seconds
+    final Submission storedSubmission = submission.withTime(roundToSeconds(submission.getTime()));
+    final List<Submission> solves =
+        solvesByModuleName.computeIfAbsent(
+            storedSubmission.getModuleName(), k -> new ArrayList<>());
+    int index = Collections.binarySearch(solves, storedSubmission, SOLVE_ORDER);
+    solves.add(index < 0 ? -index - 1 : index, storedSubmission);
+    rankModule(storedSubmission.getModuleName());
+  }
+
+  private void doAddCorrection(final Correction correction) {
+    if (correctionIds.add(correction.getId())) {
+      correctionsByUserId.merge(correction.getUserId(), correction.getAmount(), Long::sum);
+    }
+  }
+
+  private void doSetModulePoint(final ModulePoint modulePoint) {
+    modulePoints
+        .computeIfAbsent(modulePoint.getModuleName(), k -> new HashMap<>())
+        .put(modulePoint.getRank(), modulePoint.getPoints());
+    rankModule(modulePoint.getModuleName());
+  }
+
+  private void rankModule(final String moduleName) {
+    // Remove the previous contribution of this module from the user totals
+    final Map<Long, UserTotal> oldTotals = totalsByModuleName.remove(moduleName);
+    if (oldTotals != null) {
+      oldTotals.forEach((userId, total) -> totalsByUserId.get(userId).subtract(total));
+    }
+
+    final Map<Integer, Integer> points = modulePoints.get(moduleName);
+    final List<Submission> solves = solvesByModuleName.get(moduleName);
+    if (points == null || !points.containsKey(0) || solves == null) {
+      // Solves only give points (and medals) if the module has a base score
+      return;
+    }
+
+    final long baseScore = points.get(0);
+    final Map<Long, UserTotal> newTotals = new HashMap<>();
+    long rank = 0;
+    LocalDateTime previousTime = null;
+    for (int i = 0; i < solves.size(); i++) {
+      final Submission solve = solves.get(i);
+      // Solves at the same time share rank, and the next rank skips ahead like sql rank()
+      if (!solve.getTime().equals(previousTime)) {
+        rank = i + 1L;
+        previousTime = solve.getTime();
+      }
+      final long bonusScore = points.getOrDefault((int) rank, 0);
+      newTotals
+          .computeIfAbsent(solve.getUserId(), k -> new UserTotal())
+          .addSolve(baseScore + bonusScore, rank);
+    }
+
+    totalsByModuleName.put(moduleName, newTotals);
+    newTotals.forEach(
+        (userId, total) -> totalsByUserId.computeIfAbsent(userId, k -> new UserTotal()).add(total));
+  }
+
+  private List<ScoreboardEntry> rank() {
+    final Set<Long> allUserIds = new HashSet<>(userIds);
+    allUserIds.addAll(correctionsByUserId.keySet());
+    totalsByUserId.forEach(
+        (userId, total) -> {
+          if (total.solves > 0) {
+            allUserIds.add(userId);
+          }
+        });
+
+    final List<ScoreboardEntry> unranked = new ArrayList<>(allUserIds.size());
+    final UserTotal noScore = new UserTotal();
+    for (final Long userId : allUserIds) {
+      final UserTotal total = totalsByUserId.getOrDefault(userId, noScore);
+      unranked.add(
+          ScoreboardEntry.builder()
+              .rank(0L)
+              .userId(userId)
+              .score(total.score + correctionsByUserId.getOrDefault(userId, 0L))
+              .goldMedals(total.goldMedals)
+              .silverMedals(total.silverMedals)
+              .bronzeMedals(total.bronzeMedals)
+              .build());
+    }
+
+    unranked.sort(
+        Comparator.comparing(ScoreboardEntry::getScore)
+            .reversed()
+            .thenComparing(ScoreboardEntry::getUserId));
+
+    final List<ScoreboardEntry> ranked = new ArrayList<>(unranked.size());
+    long rank = 0;
+    Long previousScore = null;
+    for (int i = 0; i < unranked.size(); i++) {
+      final ScoreboardEntry entry = unranked.get(i);
+      if (!entry.getScore().equals(previousScore)) {
+        rank = i + 1L;
+        previousScore = entry.getScore();
+      }
+      ranked.add(entry.withRank(rank));
+    }
+    return Collections.unmodifiableList(ranked);
+  }
+
+  private static LocalDateTime roundToSeconds(final LocalDateTime time) {
+    return time.plusNanos(500_000_000L).truncatedTo(ChronoUnit.SECONDS);
+  }
+
+  private static final class UserTotal {
+    private long score;
+
+    private long goldMedals;
+
+    private long silverMedals;
+
+    private long bronzeMedals;
+
+    private long solves;
+
+    private void addSolve(final long points, final long rank) {
+      score += points;
+      goldMedals += rank == 1 ? 1 : 0;
+      silverMedals += rank == 2 ? 1 : 0;
+      bronzeMedals += rank == 3 ? 1 : 0;
+      solves++;
+    }
+
+    private void add(final UserTotal other) {
+      score += other.score;
+      goldMedals += other.goldMedals;
+      silverMedals += other.silverMedals;
+      bronzeMedals += other.bronzeMedals;
+      solves += other.solves;
+    }
+
+    private void subtract(final UserTotal other) {
+      score -= other.score;
+      goldMedals -= other.goldMedals;
+      silverMedals -= other.silverMedals;
+      bronzeMedals -= other.bronzeMedals;
+      solves -= other.solves;
+    }
+  }
+}
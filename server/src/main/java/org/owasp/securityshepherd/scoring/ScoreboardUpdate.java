@@ -0,0 +1,38 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.scoring;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.Serializable;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
+
+@Value
+@Builder
+public class ScoreboardUpdate implements Serializable {
+  private static final long serialVersionUID = -2176434245937432375L;
+
+  // A snapshot replaces the whole scoreboard, other updates only contain changed rows
+  @JsonProperty("isSnapshot")
+  private boolean isSnapshot;
+
+  @NonNull @Singular private List<ScoreboardEntry> entries;
+
+  @NonNull @Singular private List<Long> removedUserIds;
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.scoring;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+// Keeps the set of solved modules of every user as a bitset indexed by module ordinal, so that
+// module listings don't need to read the submissions of the user. SubmissionService loads the set
+// of a user on first use and keeps it up to date on every valid submission
+@Component
+public final class SolvedModuleIndex {
+
+  private static final long MAXIMUM_USERS = 100_000;
+
+  private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+
+  private final AtomicInteger nextOrdinal = new AtomicInteger();
+
+  // Bitsets are never changed after they have been stored, a new one is stored instead
+  private final Cache<Long, SolvedBits> solvedBits =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_USERS).build();
+
+  public SolvedModules getIfLoaded(final long userId) {
+    final SolvedBits bits = solvedBits.getIfPresent(userId);
+    if (bits == null || !bits.isLoaded) {
+      return null;
+    }
+    return new SolvedModules(bits.bits);
+  }
+
+  public SolvedModules load(final long userId, final Iterable<String> solvedModuleNames) {
+    final BitSet loadedBits = new BitSet();
+    solvedModuleNames.forEach(moduleName -> loadedBits.set(ordinalOf(moduleName)));
+    // Submissions made while we were loading are kept
+    final SolvedBits bits =
+        solvedBits.asMap().merge(userId, new SolvedBits(loadedBits, true), SolvedBits::union);
+    return new SolvedModules(bits.bits);
+  }
+
+  public void addSubmission(final Submission submission) {
+    if (!submission.isValid()) {
+      return;
+    }
+    final BitSet solvedBit = new BitSet();
+    solvedBit.set(ordinalOf(submission.getModuleName()));
+    solvedBits
+        .asMap()
+        .merge(submission.getUserId(), new SolvedBits(solvedBit, false), SolvedBits::union);
+  }
+
+  public void clear() {
+    solvedBits.invalidateAll();
+  }
+
+  private int ordinalOf(final String moduleName) {
+    return ordinals.computeIfAbsent(moduleName, name -> nextOrdinal.getAndIncrement());
+  }
+
+  private static final class SolvedBits {
+    private final BitSet bits;
+
+    // False until all submissions of the user have been read from the database
+    private final boolean isLoaded;
+
+    private SolvedBits(final BitSet bits, final boolean isLoaded) {
+      this.bits = bits;
+      this.isLoaded = isLoaded;
+    }
+
+    private static SolvedBits union(final SolvedBits first, final SolvedBits second) {
+      final BitSet union = (BitSet) first.bits.clone();
+      union.or(second.bits);
+      return new SolvedBits(union, first.isLoaded || second.isLoaded);
+    }
+  }
+
+  public final class SolvedModules {
+    private final BitSet bits;
+
+    private SolvedModules(final BitSet bits) {
+      this.bits = bits;
+    }
+
+    public boolean contains(final String moduleName) {
+      final Integer ordinal = ordinals.get(moduleName);
+      return ordinal != null && bits.get(ordinal);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.scoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+// Keeps the ranked submissions of a module in line with its submissions and module points. Both
+// lock the module row first, so solves and point changes of a module never interleave. A new solve
+// only adds its own rank, while changed points rebuild the ranks of the module as a whole
+@RequiredArgsConstructor
+@Service
+public final class SubmissionRanker {
+  private final RankedSubmissionRepository rankedSubmissionRepository;
+
+  private final TransactionalOperator transactionalOperator;
+
+  // Saves a valid submission and ranks it, in the same transaction
+  public Mono<Submission> saveRanked(final String moduleName, final Mono<Submission> save) {
+    return rankedSubmissionRepository
+        .lockModule(moduleName)
+        .then(save)
+        .delayUntil(
+            submission -> rankedSubmissionRepository.insertBySubmissionId(submission.getId()))
+        .as(transactionalOperator::transactional);
+  }
+
+  // Applies the change and ranks the module again, in the same transaction
+  public <T> Mono<T> rankModuleAfter(final String moduleName, final Mono<T> change) {
+    return rankedSubmissionRepository
+        .lockModule(moduleName)
+        .then(change)
+        .delayUntil(
+            result ->
+                rankedSubmissionRepository
+                    .deleteAllByModuleName(moduleName)
+                    .then(rankedSubmissionRepository.insertAllByModuleName(moduleName)))
+        .as(transactionalOperator::transactional);
+  }
+}
@@ -24,6 +24,9 @@ import reactor.core.publisher.Mono;
 
 @Repository
 public interface SubmissionRepository extends ReactiveCrudRepository<Submission, Long> {
+  @Query("SELECT * from submission WHERE is_valid = 1")
+  public Flux<Submission> findAllValid();
+
   @Query("SELECT * from submission WHERE module_name = :module_name")
   public Flux<Submission> findAllByModuleName(@Param("module_name") final String moduleName);
 
@@ -15,35 +15,63 @@
  */
 package org.owasp.securityshepherd.scoring;
 
+import io.r2dbc.spi.R2dbcException;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.List;
+import org.owasp.securityshepherd.database.ReplicaRouter;
 import org.owasp.securityshepherd.exception.InvalidUserIdException;
 import org.owasp.securityshepherd.exception.ModuleAlreadySolvedException;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex.SolvedModules;
 import org.owasp.securityshepherd.scoring.Submission.SubmissionBuilder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 public final class SubmissionService {
+  // ER_DUP_ENTRY
+  private static final int DUPLICATE_ENTRY_ERROR_CODE = 1062;
 
   private final SubmissionRepository submissionRepository;
 
   private final RankedSubmissionRepository rankedSubmissionRepository;
 
+  private final SubmissionRanker submissionRanker;
+
   private final FlagHandler flagHandler;
 
+  private final ScoreboardEngine scoreboardEngine;
+
+  private final SolvedModuleIndex solvedModuleIndex;
+
+  private final ReplicaRouter replicaRouter;
+
+  private final MetricsService metricsService;
+
   private Clock clock;
 
   public SubmissionService(
       SubmissionRepository submissionRepository,
       RankedSubmissionRepository rankedSubmissionRepository,
-      FlagHandler flagHandler) {
+      SubmissionRanker submissionRanker,
+      FlagHandler flagHandler,
+      ScoreboardEngine scoreboardEngine,
+      SolvedModuleIndex solvedModuleIndex,
+      ReplicaRouter replicaRouter,
+      MetricsService metricsService) {
     this.submissionRepository = submissionRepository;
     this.rankedSubmissionRepository = rankedSubmissionRepository;
+    this.submissionRanker = submissionRanker;
     this.flagHandler = flagHandler;
+    this.scoreboardEngine = scoreboardEngine;
+    this.solvedModuleIndex = solvedModuleIndex;
+    this.replicaRouter = replicaRouter;
+    this.metricsService = metricsService;
     resetClock();
   }
 
@@ -62,7 +90,8 @@ public final class SubmissionService {
     if (userId <= 0) {
       return Flux.error(new InvalidUserIdException());
     }
-    return rankedSubmissionRepository.findAllByUserId(userId);
+    return replicaRouter.readOnlyForUser(
+        userId, rankedSubmissionRepository.findAllByUserId(userId));
   }
 
   public Mono<Submission> findAllValidByUserIdAndModuleName(
@@ -83,6 +112,18 @@ public final class SubmissionService {
         .collectList();
   }
 
+  public Mono<SolvedModules> findSolvedModulesByUserId(final long userId) {
+    if (userId <= 0) {
+      return Mono.error(new InvalidUserIdException());
+    }
+    return Mono.fromSupplier(() -> solvedModuleIndex.getIfLoaded(userId))
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    findAllValidModuleNamesByUserId(userId)
+                        .map(moduleNames -> solvedModuleIndex.load(userId, moduleNames))));
+  }
+
   public void resetClock() {
     this.clock = Clock.systemDefaultZone();
   }
@@ -106,15 +147,17 @@ public final class SubmissionService {
         .verifyFlag(userId, moduleName, flag)
         // Get isValid field
         .map(submissionBuilder::isValid)
-        // Has this module been solved by this user? In that case, throw exception.
-        .filterWhen(u -> validSubmissionDoesNotExistByUserIdAndModuleName(userId, moduleName))
-        .switchIfEmpty(
-            Mono.error(
-                new ModuleAlreadySolvedException(
-                    String.format("User %d has already finished module %s", userId, moduleName))))
-        // Otherwise, build a submission and save it in db
+        // Build a submission and save it in db
         .map(SubmissionBuilder::build)
-        .flatMap(submissionRepository::save);
+        .flatMap(this::save)
+        // Read the submitting user's history from the primary until the replicas have caught up
+        .doOnNext(submission -> replicaRouter.recordWrite(submission.getUserId()))
+        // Keep the in-memory scoreboard and solved modules up to date
+        .doOnNext(scoreboardEngine::addSubmission)
+        .doOnNext(solvedModuleIndex::addSubmission)
+        .transform(submission -> metricsService.time("shepherd.submission", submission))
+        .doOnNext(submission -> countSubmission(submission.isValid() ? "valid" : "invalid"))
+        .doOnError(ModuleAlreadySolvedException.class, e -> countSubmission("already-solved"));
   }
 
   public Mono<Submission> submitValid(final Long userId, final String moduleName) {
@@ -130,21 +173,55 @@ public final class SubmissionService {
     submissionBuilder.time(LocalDateTime.now(clock));
 
     return Mono.just(submissionBuilder)
-        .filterWhen(u -> validSubmissionDoesNotExistByUserIdAndModuleName(userId, moduleName))
-        .switchIfEmpty(
-            Mono.error(
-                new ModuleAlreadySolvedException(
-                    String.format("User %d has already finished module %s", userId, moduleName))))
-        // Otherwise, build a submission and save it in db
+        // Build a submission and save it in db
         .map(SubmissionBuilder::build)
-        .flatMap(submissionRepository::save);
+        .flatMap(this::save)
+        // Read the submitting user's history from the primary until the replicas have caught up
+        .doOnNext(submission -> replicaRouter.recordWrite(submission.getUserId()))
+        // Keep the in-memory scoreboard and solved modules up to date
+        .doOnNext(scoreboardEngine::addSubmission)
+        .doOnNext(solvedModuleIndex::addSubmission);
   }
 
-  private Mono<Boolean> validSubmissionDoesNotExistByUserIdAndModuleName(
-      final long userId, final String moduleName) {
-    return submissionRepository
-        .findAllValidByUserIdAndModuleName(userId, moduleName)
-        .map(u -> false)
-        .defaultIfEmpty(true);
+  private void countSubmission(final String result) {
+    metricsService.increment("shepherd.submissions", "result", result);
+  }
+
+  private Mono<Submission> save(final Submission submission) {
+    if (!submission.isValid()) {
+      // Invalid submissions aren't constrained by the unique key, so the solved modules of the user
+      // tell whether the module was already solved
+      return findSolvedModulesByUserId(submission.getUserId())
+          .filter(solvedModules -> !solvedModules.contains(submission.getModuleName()))
+          .switchIfEmpty(Mono.error(() -> moduleAlreadySolved(submission)))
+          .flatMap(solvedModules -> submissionRepository.save(submission));
+    }
+    // Valid submissions are ranked right away instead of every time the scoreboard is read. The
+    // solve time is taken once the module is locked, so that solves are ranked in time order
+    final Mono<Submission> timedSubmission =
+        Mono.fromSupplier(() -> submission.withTime(LocalDateTime.now(clock)));
+    // The unique key on (user_id, module_name, valid_or_null) only allows one valid submission per
+    // user and module, so a duplicate insert means that the module was already solved
+    return submissionRanker
+        .saveRanked(submission.getModuleName(), timedSubmission.flatMap(submissionRepository::save))
+        .onErrorMap(SubmissionService::isDuplicateKey, e -> moduleAlreadySolved(submission));
+  }
+
+  private static ModuleAlreadySolvedException moduleAlreadySolved(final Submission submission) {
+    return new ModuleAlreadySolvedException(
+        String.format(
+            "User %d has already finished module %s",
+            submission.getUserId(), submission.getModuleName()));
+  }
+
+  // Spring Data R2DBC translates every integrity violation to DataIntegrityViolationException, so
+  // the MySQL error code tells a duplicate key apart from e.g. a missing user or module
+  private static boolean isDuplicateKey(final Throwable e) {
+    if (e instanceof DuplicateKeyException) {
+      return true;
+    }
+    return e instanceof DataIntegrityViolationException
+        && e.getCause() instanceof R2dbcException
+        && ((R2dbcException) e.getCause()).getErrorCode() == DUPLICATE_ENTRY_ERROR_CODE;
   }
 }
@@ -19,6 +19,7 @@ import java.util.Base64;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.owasp.securityshepherd.configuration.ConfigurationRepository;
+import org.owasp.securityshepherd.crypto.KeyRing;
 import org.owasp.securityshepherd.crypto.KeyService;
 import org.owasp.securityshepherd.exception.ConfigurationKeyNotFoundException;
 import org.owasp.securityshepherd.model.Configuration;
@@ -34,6 +35,8 @@ public final class ConfigurationService {
 
   private final KeyService keyService;
 
+  private final KeyRing keyRing;
+
   private Mono<Configuration> create(final String key, final String value) {
     log.debug("Creating configuration key " + key + " with value " + value);
     return configurationRepository.save(Configuration.builder().key(key).value(value).build());
@@ -53,9 +56,16 @@ public final class ConfigurationService {
   }
 
   public Mono<byte[]> getServerKey() {
-    return getByKey("serverKey")
-        .map(Base64.getDecoder()::decode)
-        .onErrorResume(ConfigurationKeyNotFoundException.class, notFound -> refreshServerKey());
+    return Mono.fromSupplier(keyRing::getServerKey)
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    getByKey("serverKey")
+                        .map(Base64.getDecoder()::decode)
+                        .doOnNext(keyRing::setServerKey)
+                        .onErrorResume(
+                            ConfigurationKeyNotFoundException.class,
+                            notFound -> refreshServerKey())));
   }
 
   public Mono<byte[]> refreshServerKey() {
@@ -73,7 +83,8 @@ public final class ConfigurationService {
               }
             })
         .map(Configuration::getValue)
-        .map(Base64.getDecoder()::decode);
+        .map(Base64.getDecoder()::decode)
+        .doOnNext(keyRing::setServerKey);
   }
 
   private Mono<Configuration> setValue(final String key, final String value) {
@@ -17,10 +17,12 @@ package org.owasp.securityshepherd.user;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
@@ -34,6 +36,8 @@ public class UserController {
 
   private final UserService userService;
 
+  private final UserImportService userImportService;
+
   @PostMapping(path = "user/delete/{id}")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   public Mono<Void> deleteById(@PathVariable final long id) {
@@ -48,6 +52,13 @@ public class UserController {
     return userService.findAll();
   }
 
+  @PostMapping(path = "users/import")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  public Flux<UserImportResult> importUsers(
+      @RequestBody final Flux<PasswordRegistrationDto> users) {
+    return userImportService.importUsers(users);
+  }
+
   @GetMapping(path = "user/{id}")
   @PreAuthorize("hasRole('ROLE_USER')")
   public Mono<User> findById(@PathVariable final long id) {
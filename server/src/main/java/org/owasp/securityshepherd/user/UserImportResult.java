@@ -0,0 +1,34 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.user;
+
+import java.io.Serializable;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class UserImportResult implements Serializable {
+  private static final long serialVersionUID = -6640361372095627104L;
+
+  private String userName;
+
+  // Only set if the user was created
+  private Long userId;
+
+  // Only set if the user was not created
+  private String error;
+}
@@ -0,0 +1,301 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.user;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.owasp.securityshepherd.authentication.PasswordAuth;
+import org.owasp.securityshepherd.authentication.PasswordAuthRepository;
+import org.owasp.securityshepherd.authentication.PasswordHasher;
+import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
+import org.owasp.securityshepherd.authentication.UserAuthRepository;
+import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Creates password users in bulk. Rows are handled in batches: every batch checks for existing
+// names with one query per table, hashes its passwords in parallel and inserts all its users in a
+// single transaction with one statement per table. Every row gets a result, in input order
+@Slf4j
+@Service
+public final class UserImportService {
+  private final UserRepository userRepository;
+
+  private final UserAuthRepository userAuthRepository;
+
+  private final PasswordAuthRepository passwordAuthRepository;
+
+  private final PasswordHasher passwordHasher;
+
+  private final KeyService keyService;
+
+  private final ScoreboardEngine scoreboardEngine;
+
+  private final TransactionalOperator transactionalOperator;
+
+  private final Validator validator;
+
+  private final int batchSize;
+
+  private final int hashingConcurrency;
+
+  public UserImportService(
+      final UserRepository userRepository,
+      final UserAuthRepository userAuthRepository,
+      final PasswordAuthRepository passwordAuthRepository,
+      final PasswordHasher passwordHasher,
+      final KeyService keyService,
+      final ScoreboardEngine scoreboardEngine,
+      final TransactionalOperator transactionalOperator,
+      final Validator validator,
+      @Value("${application.user-import.batch-size:100}") final int batchSize,
+      // Hashing more passwords at a time than there are hashing threads would only fill the queue
+      // that logins need
+      @Value("${application.user-import.hashing-concurrency:4}") final int hashingConcurrency) {
+    this.userRepository = userRepository;
+    this.userAuthRepository = userAuthRepository;
+    this.passwordAuthRepository = passwordAuthRepository;
+    this.passwordHasher = passwordHasher;
+    this.keyService = keyService;
+    this.scoreboardEngine = scoreboardEngine;
+    this.transactionalOperator = transactionalOperator;
+    this.validator = validator;
+    this.batchSize = batchSize;
+    this.hashingConcurrency = hashingConcurrency;
+  }
+
+  public Flux<UserImportResult> importUsers(final Flux<PasswordRegistrationDto> users) {
+    return Flux.defer(
+        () -> {
+          // Names used by earlier rows of this import. Batches run one after the other
+          final Set<String> displayNames = new HashSet<>();
+          final Set<String> loginNames = new HashSet<>();
+          return users
+              .buffer(batchSize)
+              .concatMap(batch -> importBatch(batch, displayNames, loginNames));
+        });
+  }
+
+  private Flux<UserImportResult> importBatch(
+      final List<PasswordRegistrationDto> batch,
+      final Set<String> displayNames,
+      final Set<String> loginNames) {
+    final List<ImportRow> rows = batch.stream().map(ImportRow::new).collect(Collectors.toList());
+
+    // A row only holds on to its names within the batch once both of them are free. The names are
+    // reserved for later batches once the row has been inserted
+    final Set<String> batchDisplayNames = new HashSet<>();
+    final Set<String> batchLoginNames = new HashSet<>();
+    for (final ImportRow row : rows) {
+      final Set<ConstraintViolation<PasswordRegistrationDto>> violations =
+          validator.validate(row.user);
+      final String displayName = normalize(row.user.getDisplayName());
+      final String loginName = normalize(row.user.getUserName());
+      if (!violations.isEmpty()) {
+        row.error =
+            violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+      } else if (displayNames.contains(displayName) || batchDisplayNames.contains(displayName)) {
+        row.error = "Display name is used by another row";
+      } else if (loginNames.contains(loginName) || batchLoginNames.contains(loginName)) {
+        row.error = "Login name is used by another row";
+      } else {
+        batchDisplayNames.add(displayName);
+        batchLoginNames.add(loginName);
+      }
+    }
+
+    return rejectExistingDisplayNames(rows)
+        .then(Mono.defer(() -> rejectExistingLoginNames(rows)))
+        .thenMany(Flux.defer(() -> Flux.fromIterable(pending(rows))))
+        .flatMap(this::hashPassword, hashingConcurrency)
+        .then(Mono.defer(() -> insert(pending(rows), displayNames, loginNames)))
+        .thenMany(Flux.fromIterable(rows))
+        .map(ImportRow::toResult);
+  }
+
+  private Mono<Void> rejectExistingDisplayNames(final List<ImportRow> rows) {
+    final Map<String, ImportRow> rowsByName = byName(rows, PasswordRegistrationDto::getDisplayName);
+    if (rowsByName.isEmpty()) {
+      return Mono.empty();
+    }
+    return userRepository
+        .findAllByDisplayNameIn(displayNamesOf(rowsByName.values()))
+        .map(User::getDisplayName)
+        .doOnNext(name -> reject(rowsByName, name, "Display name already exists"))
+        .then();
+  }
+
+  private Mono<Void> rejectExistingLoginNames(final List<ImportRow> rows) {
+    final Map<String, ImportRow> rowsByName = byName(rows, PasswordRegistrationDto::getUserName);
+    if (rowsByName.isEmpty()) {
+      return Mono.empty();
+    }
+    return passwordAuthRepository
+        .findAllByLoginNameIn(
+            rowsByName.values().stream()
+                .map(row -> row.user.getUserName())
+                .collect(Collectors.toList()))
+        .map(PasswordAuth::getLoginName)
+        .doOnNext(name -> reject(rowsByName, name, "Login name already exists"))
+        .then();
+  }
+
+  private Mono<String> hashPassword(final ImportRow row) {
+    return passwordHasher
+        .encode(row.user.getPassword())
+        .doOnNext(hashedPassword -> row.hashedPassword = hashedPassword)
+        .onErrorResume(
+            PasswordHashingRejectedException.class,
+            e -> {
+              row.error = "Server is busy, try again later";
+              return Mono.empty();
+            });
+  }
+
+  private Mono<Void> insert(
+      final List<ImportRow> rows, final Set<String> displayNames, final Set<String> loginNames) {
+    if (rows.isEmpty()) {
+      return Mono.empty();
+    }
+    final Map<String, ImportRow> rowsByName = byName(rows, PasswordRegistrationDto::getDisplayName);
+    final LocalDateTime accountCreated = LocalDateTime.now();
+
+    final List<Object[]> users = new ArrayList<>();
+    rows.forEach(
+        row ->
+            users.add(
+                new Object[] {
+                  row.user.getDisplayName(), accountCreated, keyService.generateRandomBytes(16)
+                }));
+
+    return userRepository
+        .insertAll(users)
+        // Read back the generated ids
+        .thenMany(userRepository.findAllByDisplayNameIn(displayNamesOf(rows)))
+        .doOnNext(user -> rowsByName.get(normalize(user.getDisplayName())).userId = user.getId())
+        .then(
+            Mono.defer(
+                () -> {
+                  final List<Object[]> userAuths = new ArrayList<>();
+                  final List<Object[]> passwordAuths = new ArrayList<>();
+                  for (final ImportRow row : rows) {
+                    if (row.userId == null) {
+                      return Mono.error(
+                          new IllegalStateException(
+                              "Did not find created user " + row.user.getDisplayName()));
+                    }
+                    userAuths.add(new Object[] {row.userId});
+                    passwordAuths.add(
+                        new Object[] {row.userId, row.user.getUserName(), row.hashedPassword});
+                  }
+                  return userAuthRepository
+                      .insertAll(userAuths)
+                      .then(passwordAuthRepository.insertAll(passwordAuths));
+                }))
+        .as(transactionalOperator::transactional)
+        .doOnSuccess(
+            count ->
+                rows.forEach(
+                    row -> {
+                      scoreboardEngine.addUser(row.userId);
+                      displayNames.add(normalize(row.user.getDisplayName()));
+                      loginNames.add(normalize(row.user.getUserName()));
+                    }))
+        .then()
+        // The whole batch was rolled back, for instance because a name was taken concurrently
+        .onErrorResume(
+            e -> {
+              log.error("Could not import batch of users", e);
+              rows.forEach(
+                  row -> {
+                    row.userId = null;
+                    row.error = "Could not create user";
+                  });
+              return Mono.empty();
+            });
+  }
+
+  // Names are unique regardless of case in the database
+  private static String normalize(final String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  private static List<ImportRow> pending(final List<ImportRow> rows) {
+    return rows.stream().filter(row -> row.error == null).collect(Collectors.toList());
+  }
+
+  private static Map<String, ImportRow> byName(
+      final List<ImportRow> rows, final Function<PasswordRegistrationDto, String> name) {
+    final Map<String, ImportRow> rowsByName = new HashMap<>();
+    pending(rows).forEach(row -> rowsByName.put(normalize(name.apply(row.user)), row));
+    return rowsByName;
+  }
+
+  private static List<String> displayNamesOf(final Iterable<ImportRow> rows) {
+    final List<String> names = new ArrayList<>();
+    rows.forEach(row -> names.add(row.user.getDisplayName()));
+    return names;
+  }
+
+  private static void reject(
+      final Map<String, ImportRow> rowsByName, final String name, final String error) {
+    final ImportRow row = rowsByName.get(normalize(name));
+    if (row != null) {
+      row.error = error;
+    }
+  }
+
+  private static final class ImportRow {
+    private final PasswordRegistrationDto user;
+
+    private String hashedPassword;
+
+    private Long userId;
+
+    private String error;
+
+    private ImportRow(final PasswordRegistrationDto user) {
+      this.user = user;
+    }
+
+    private UserImportResult toResult() {
+      return UserImportResult.builder()
+          .userName(user.getUserName())
+          .userId(error == null ? userId : null)
+          .error(error)
+          .build();
+    }
+  }
+}
@@ -15,14 +15,27 @@
  */
 package org.owasp.securityshepherd.user;
 
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
 public interface UserRepository extends ReactiveCrudRepository<User, Long> {
   @Query("SELECT * from user WHERE display_name = :display_name")
   public Mono<User> findByDisplayName(@Param("display_name") final String displayName);
+
+  @Query("SELECT * from user WHERE display_name IN (:display_names)")
+  public Flux<User> findAllByDisplayNameIn(
+      @Param("display_names") final Collection<String> displayNames);
+
+  // Each row holds a display name, a creation time and a user key
+  @Modifying
+  @Query("INSERT INTO user (display_name, account_created, user_key) VALUES :rows")
+  public Mono<Integer> insertAll(@Param("rows") final List<Object[]> rows);
 }
@@ -18,22 +18,28 @@ package org.owasp.securityshepherd.user;
 import java.time.LocalDateTime;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.owasp.securityshepherd.authentication.AuthorityCache;
 import org.owasp.securityshepherd.authentication.PasswordAuth;
 import org.owasp.securityshepherd.authentication.PasswordAuth.PasswordAuthBuilder;
 import org.owasp.securityshepherd.authentication.PasswordAuthRepository;
+import org.owasp.securityshepherd.authentication.PasswordHasher;
 import org.owasp.securityshepherd.authentication.UserAuth;
 import org.owasp.securityshepherd.authentication.UserAuthRepository;
+import org.owasp.securityshepherd.crypto.KeyRing;
 import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.database.ReplicaRouter;
 import org.owasp.securityshepherd.exception.ClassIdNotFoundException;
 import org.owasp.securityshepherd.exception.DuplicateUserDisplayNameException;
 import org.owasp.securityshepherd.exception.DuplicateUserLoginNameException;
 import org.owasp.securityshepherd.exception.InvalidClassIdException;
 import org.owasp.securityshepherd.exception.InvalidUserIdException;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
 import org.owasp.securityshepherd.exception.UserIdNotFoundException;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
 import org.owasp.securityshepherd.service.ClassService;
 import org.owasp.securityshepherd.user.User.UserBuilder;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -53,6 +59,18 @@ public final class UserService {
 
   private final KeyService keyService;
 
+  private final ScoreboardEngine scoreboardEngine;
+
+  private final KeyRing keyRing;
+
+  private final AuthorityCache authorityCache;
+
+  private final PasswordHasher passwordHasher;
+
+  private final ReplicaRouter replicaRouter;
+
+  private final MetricsService metricsService;
+
   public Mono<Long> count() {
     return userRepository.count();
   }
@@ -70,28 +88,51 @@ public final class UserService {
     if (password.isEmpty()) {
       return Mono.error(new IllegalArgumentException());
     }
-    // Initialize the encoder
-    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(16);
-
     return
     // Find the password auth
     findPasswordAuthByLoginName(username)
-        // Extract the password hash
-        .map(PasswordAuth::getHashedPassword)
-        // Check if hash matches
-        .map(hashedPassword -> encoder.matches(password, hashedPassword))
-        .defaultIfEmpty(false);
+        .filterWhen(
+            passwordAuth ->
+                // Check if hash matches
+                passwordHasher.matches(password, passwordAuth.getHashedPassword()))
+        // Rehash old passwords with the current cost while we know the password
+        .delayUntil(passwordAuth -> upgradePasswordHash(passwordAuth, password))
+        .map(passwordAuth -> true)
+        .defaultIfEmpty(false)
+        .transform(
+            authentication -> metricsService.time("shepherd.authentication", authentication));
+  }
+
+  private Mono<PasswordAuth> upgradePasswordHash(
+      final PasswordAuth passwordAuth, final String password) {
+    if (!passwordHasher.needsUpgrade(passwordAuth.getHashedPassword())) {
+      return Mono.empty();
+    }
+    return passwordHasher
+        .encode(password)
+        .map(passwordAuth::withHashedPassword)
+        .flatMap(passwordAuthRepository::save)
+        // The old hash is still valid, so a busy server can upgrade it at the next login
+        .onErrorResume(PasswordHashingRejectedException.class, e -> Mono.empty());
   }
 
   public Flux<SimpleGrantedAuthority> getAuthoritiesByUserId(final long userId) {
     if (userId <= 0) {
       return Flux.error(new InvalidUserIdException());
     }
-    return findUserAuthByUserId(userId)
-        .filter(UserAuth::isAdmin)
-        .map(userAuth -> new SimpleGrantedAuthority("ROLE_ADMIN"))
-        .flux()
-        .concatWithValues(new SimpleGrantedAuthority("ROLE_USER"));
+    return Mono.justOrEmpty(authorityCache.get(userId))
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    findUserAuthByUserId(userId)
+                        .filter(UserAuth::isAdmin)
+                        .map(userAuth -> new SimpleGrantedAuthority("ROLE_ADMIN"))
+                        .flux()
+                        .concatWithValues(new SimpleGrantedAuthority("ROLE_USER"))
+                        .collectList()
+                        // Authenticating the next request of this user won't need a query
+                        .doOnNext(authorities -> authorityCache.put(userId, authorities))))
+        .flatMapIterable(authorities -> authorities);
   }
 
   public Mono<Long> create(final String displayName) {
@@ -116,7 +157,8 @@ public final class UserService {
                         .key(keyService.generateRandomBytes(16))
                         .accountCreated(LocalDateTime.now())
                         .build()))
-        .map(User::getId);
+        .map(User::getId)
+        .doOnNext(scoreboardEngine::addUser);
   }
 
   public Mono<Long> createPasswordUser(
@@ -179,7 +221,8 @@ public final class UserService {
 
                     return Mono.when(userAuthMono, passwordAuthMono);
                   });
-            });
+            })
+        .doOnNext(scoreboardEngine::addUser);
   }
 
   public Mono<Void> deleteById(final long userId) {
@@ -189,7 +232,10 @@ public final class UserService {
     return passwordAuthRepository
         .deleteByUserId(userId)
         .then(userAuthRepository.deleteByUserId(userId))
-        .then(userRepository.deleteById(userId));
+        .then(userRepository.deleteById(userId))
+        .then(Mono.fromRunnable(() -> keyRing.evictUserKey(userId)))
+        .then(Mono.fromRunnable(() -> authorityCache.evict(userId)))
+        .then(Mono.fromRunnable(() -> scoreboardEngine.removeUser(userId)));
   }
 
   public Mono<Void> demote(final long userId) {
@@ -202,7 +248,8 @@ public final class UserService {
     return findUserAuthByUserId(userId)
         .map(userAuth -> userAuth.withAdmin(false))
         .flatMap(userAuthRepository::save)
-        .then();
+        // The new role applies to the next request of this user
+        .then(Mono.fromRunnable(() -> authorityCache.evict(userId)));
   }
 
   private Mono<String> displayNameAlreadyExists(final String displayName) {
@@ -219,7 +266,7 @@ public final class UserService {
   }
 
   public Flux<User> findAll() {
-    return userRepository.findAll();
+    return replicaRouter.readOnly(userRepository.findAll());
   }
 
   public Mono<User> findById(final long userId) {
@@ -242,10 +289,14 @@ public final class UserService {
       return Mono.error(new InvalidUserIdException());
     }
 
-    return Mono.just(userId)
-        .filterWhen(userRepository::existsById)
+    return Mono.fromSupplier(() -> keyRing.getUserKey(userId))
+        .switchIfEmpty(Mono.defer(() -> findAndCacheKeyById(userId)));
+  }
+
+  private Mono<byte[]> findAndCacheKeyById(final long userId) {
+    return userRepository
+        .findById(userId)
         .switchIfEmpty(Mono.error(new UserIdNotFoundException()))
-        .flatMap(userRepository::findById)
         .flatMap(
             user -> {
               final byte[] key = user.getKey();
@@ -255,7 +306,8 @@ public final class UserService {
                     .map(User::getKey);
               }
               return Mono.just(key);
-            });
+            })
+        .doOnNext(key -> keyRing.putUserKey(userId, key));
   }
 
   public Mono<PasswordAuth> findPasswordAuthByLoginName(final String loginName) {
@@ -310,7 +362,8 @@ public final class UserService {
     return findUserAuthByUserId(userId)
         .map(userAuth -> userAuth.withAdmin(true))
         .flatMap(userAuthRepository::save)
-        .then();
+        // The new role applies to the next request of this user
+        .then(Mono.fromRunnable(() -> authorityCache.evict(userId)));
   }
 
   public Mono<User> setClassId(final long userId, final long classId) {
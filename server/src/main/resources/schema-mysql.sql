@@ -113,6 +113,7 @@ CREATE TABLE submission (
     valid_or_null  boolean as (if(is_valid = true,true, null)) stored,
     PRIMARY KEY (id),
     UNIQUE KEY (user_id, module_name, valid_or_null),
+    INDEX module_name_time (module_name, is_valid, time),
     FOREIGN KEY (`user_id`) REFERENCES user(id),
     FOREIGN KEY (`module_name`) REFERENCES module(name))
 ENGINE = InnoDB
@@ -126,44 +127,24 @@ CREATE TABLE configuration (
 ENGINE = InnoDB
 DEFAULT CHARACTER SET = utf8mb4;
 
-CREATE VIEW ranked_submission AS
-WITH ranks as 
-(
-	SELECT 
-		rank() over (partition by module_name order by time) as 'rank',
-		id as submission_id,
-		user_id,
-		module_name,
-	 	time,
-	 	flag
-	FROM submission
-	where is_valid=true
-)
-SELECT 
-	submission_id,
-	user_id,
-	`rank`,
-	ranks.module_name,
- 	time,
- 	flag,
- 	base_score.points as base_score,
- 	COALESCE(bonus_score.points, 0) as bonus_score,
- 	base_score.points + COALESCE(bonus_score.points, 0) as score
-FROM ranks
-left join
-	module_point as bonus_score
-	on (
-		ranks.module_name = bonus_score.module_name
-	and
-		`rank` = bonus_score.submission_rank
-	) 
-inner join 
-	module_point as base_score
-	on (
-		ranks.module_name=base_score.module_name 
-	and 
-		base_score.submission_rank=0
-	);
+CREATE TABLE ranked_submission (
+	submission_id BIGINT NOT NULL,
+	user_id BIGINT NOT NULL,
+	module_name VARCHAR(191) NOT NULL,
+	`rank` BIGINT NOT NULL,
+	time DATETIME NULL DEFAULT NULL,
+	flag VARCHAR(191) NULL,
+	base_score BIGINT NOT NULL,
+	bonus_score BIGINT NOT NULL,
+	score BIGINT NOT NULL,
+  PRIMARY KEY (submission_id),
+  INDEX user_id (user_id),
+  INDEX module_name_rank (module_name, `rank`),
+  FOREIGN KEY (`submission_id`) REFERENCES submission(id),
+  FOREIGN KEY (`user_id`) REFERENCES user(id),
+  FOREIGN KEY (`module_name`) REFERENCES module(name))
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = utf8mb4;
 
 CREATE VIEW scoreboard AS
 SELECT
@@ -32,6 +32,7 @@ import org.owasp.securityshepherd.module.csrf.CsrfTutorial;
 import org.owasp.securityshepherd.module.flag.FlagTutorial;
 import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorial;
 import org.owasp.securityshepherd.module.xss.XssTutorial;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
 import org.owasp.securityshepherd.user.UserService;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
@@ -62,6 +63,8 @@ class StartupRunnerTest {
 
   @Mock private FlagHandler flagHandler;
 
+  @Mock private ScoreboardEngine scoreboardEngine;
+
   @Test
   void run_MockedServices_CallsMocks() {
 
@@ -73,6 +76,7 @@ class StartupRunnerTest {
     when(xssTutorial.getInit()).thenReturn(Mono.empty());
     when(flagTutorial.getInit()).thenReturn(Mono.empty());
     when(sqlInjectionTutorial.getInit()).thenReturn(Mono.empty());
+    when(scoreboardEngine.load()).thenReturn(Mono.empty());
 
     assertDoesNotThrow(() -> startupRunner.run(null));
   }
@@ -82,6 +86,11 @@ class StartupRunnerTest {
     // Set up the system under test
     startupRunner =
         new StartupRunner(
-            userService, xssTutorial, sqlInjectionTutorial, csrfTutorial, flagTutorial);
+            userService,
+            xssTutorial,
+            sqlInjectionTutorial,
+            csrfTutorial,
+            flagTutorial,
+            scoreboardEngine);
   }
 }
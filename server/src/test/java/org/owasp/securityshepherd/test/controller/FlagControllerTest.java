@@ -15,7 +15,6 @@
  */
 package org.owasp.securityshepherd.test.controller;
 
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,8 +31,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.authentication.ControllerAuthentication;
 import org.owasp.securityshepherd.exception.NotAuthenticatedException;
 import org.owasp.securityshepherd.module.FlagController;
-import org.owasp.securityshepherd.module.Module;
-import org.owasp.securityshepherd.module.ModuleService;
 import org.owasp.securityshepherd.scoring.Submission;
 import org.owasp.securityshepherd.scoring.SubmissionService;
 import reactor.core.publisher.Hooks;
@@ -54,27 +51,22 @@ class FlagControllerTest {
 
   @Mock private ControllerAuthentication controllerAuthentication;
 
-  @Mock private ModuleService moduleService;
-
   @Mock private SubmissionService submissionService;
 
   @BeforeEach
   private void setUp() throws Exception {
     // Set up the system under test
-    flagController = new FlagController(controllerAuthentication, moduleService, submissionService);
+    flagController = new FlagController(controllerAuthentication, submissionService);
   }
 
   @Test
   void submitFlag_UserNotAuthenticated_ReturnsException() throws Exception {
     final String mockModuleName = "test-module";
     final String flag = "validflag";
-    final Module mockModule = mock(Module.class);
 
     when(controllerAuthentication.getUserId())
         .thenReturn(Mono.error(new NotAuthenticatedException()));
 
-    when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
-
     StepVerifier.create(flagController.submitFlag(mockModuleName, flag))
         .expectError(NotAuthenticatedException.class)
         .verify();
@@ -86,7 +78,6 @@ class FlagControllerTest {
   void submitFlag_UserAuthenticatedAndValidFlagSubmitted_ReturnsValidSubmission() throws Exception {
     final long mockUserId = 417L;
     final String moduleName = "test-module";
-    final Module mockModule = mock(Module.class);
 
     final String flag = "validflag";
 
@@ -103,10 +94,6 @@ class FlagControllerTest {
 
     when(submissionService.submit(mockUserId, moduleName, flag)).thenReturn(Mono.just(submission));
 
-    when(mockModule.getName()).thenReturn(moduleName);
-
-    when(moduleService.findByName(moduleName)).thenReturn(Mono.just(mockModule));
-
     StepVerifier.create(flagController.submitFlag(moduleName, flag))
         .expectNext(submission)
         .expectComplete()
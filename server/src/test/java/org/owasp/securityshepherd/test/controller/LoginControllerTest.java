@@ -15,6 +15,9 @@
  */
 package org.owasp.securityshepherd.test.controller;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -26,13 +29,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.authentication.AuthResponse;
 import org.owasp.securityshepherd.authentication.LoginController;
+import org.owasp.securityshepherd.authentication.PasswordHasher;
 import org.owasp.securityshepherd.authentication.PasswordLoginDto;
 import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
 import org.owasp.securityshepherd.authentication.WebTokenService;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
 import org.owasp.securityshepherd.user.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -53,7 +57,7 @@ class LoginControllerTest {
 
   @Mock WebTokenService webTokenService;
 
-  @Mock PasswordEncoder passwordEncoder;
+  @Mock PasswordHasher passwordHasher;
 
   @Test
   void login_InvalidCredentials_ReturnsJWT() {
@@ -95,7 +99,7 @@ class LoginControllerTest {
     final PasswordRegistrationDto passwordRegistrationDto =
         new PasswordRegistrationDto(displayName, userName, password);
     final long mockUserId = 255L;
-    when(passwordEncoder.encode(password)).thenReturn(encodedPassword);
+    when(passwordHasher.encode(password)).thenReturn(Mono.just(encodedPassword));
     when(userService.createPasswordUser(displayName, userName, encodedPassword))
         .thenReturn(Mono.just(mockUserId));
     StepVerifier.create(loginController.register(passwordRegistrationDto))
@@ -104,9 +108,21 @@ class LoginControllerTest {
         .verify();
   }
 
+  @Test
+  void register_HashingRejected_ReturnsPasswordHashingRejectedException() {
+    final PasswordRegistrationDto passwordRegistrationDto =
+        new PasswordRegistrationDto("displayName", "user", "password");
+    when(passwordHasher.encode("password"))
+        .thenReturn(Mono.error(new PasswordHashingRejectedException()));
+    StepVerifier.create(loginController.register(passwordRegistrationDto))
+        .expectError(PasswordHashingRejectedException.class)
+        .verify();
+    verify(userService, never()).createPasswordUser(any(), any(), any());
+  }
+
   @BeforeEach
   private void setUp() throws Exception {
     // Set up the system under test
-    loginController = new LoginController(userService, webTokenService, passwordEncoder);
+    loginController = new LoginController(userService, webTokenService, passwordHasher);
   }
 }
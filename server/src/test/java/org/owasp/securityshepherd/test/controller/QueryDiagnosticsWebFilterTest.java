@@ -0,0 +1,78 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.database.QueryDiagnosticsWebFilter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+
+@DisplayName("QueryDiagnosticsWebFilter unit test")
+class QueryDiagnosticsWebFilterTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private final WebFilterChain completingChain = exchange -> exchange.getResponse().setComplete();
+
+  @Test
+  void filter_DiagnosticsDisabled_AddsNoHeaders() {
+    final MockServerWebExchange exchange =
+        MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/modules"));
+
+    StepVerifier.create(new QueryDiagnosticsWebFilter(false).filter(exchange, completingChain))
+        .expectComplete()
+        .verify();
+
+    assertThat(exchange.getResponse().getHeaders())
+        .doesNotContainKeys(
+            QueryDiagnosticsWebFilter.QUERY_COUNT_HEADER,
+            QueryDiagnosticsWebFilter.SERVER_TIMING_HEADER);
+  }
+
+  @Test
+  void filter_DiagnosticsEnabled_AddsQueryHeaders() {
+    final MockServerWebExchange exchange =
+        MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/modules"));
+
+    StepVerifier.create(new QueryDiagnosticsWebFilter(true).filter(exchange, completingChain))
+        .expectComplete()
+        .verify();
+
+    assertThat(
+            exchange
+                .getResponse()
+                .getHeaders()
+                .getFirst(QueryDiagnosticsWebFilter.QUERY_COUNT_HEADER))
+        .isEqualTo("0");
+    assertThat(
+            exchange
+                .getResponse()
+                .getHeaders()
+                .getFirst(QueryDiagnosticsWebFilter.SERVER_TIMING_HEADER))
+        .isEqualTo("db;dur=0.000");
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.scoring.ScoreService;
+import org.owasp.securityshepherd.scoring.ScoreboardController;
+import org.owasp.securityshepherd.scoring.ScoreboardUpdate;
+import org.owasp.securityshepherd.scoring.SubmissionService;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ScoreboardController unit test")
+class ScoreboardControllerTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  WebTestClient webTestClient;
+
+  @Mock ScoreService scoreService;
+
+  @Mock SubmissionService submissionService;
+
+  private Flux<ServerSentEvent<String>> scoreboardStream() {
+    return webTestClient
+        .get()
+        .uri("/api/v1/scoreboard/stream")
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+        .getResponseBody();
+  }
+
+  @Test
+  void scoreboardStream_Updates_NamesEventsBySnapshot() {
+    final ScoreboardUpdate snapshot = ScoreboardUpdate.builder().isSnapshot(true).build();
+    final ScoreboardUpdate update = ScoreboardUpdate.builder().removedUserId(3L).build();
+
+    when(scoreService.getScoreboardUpdates())
+        .thenReturn(Flux.just(snapshot, update).concatWith(Flux.never()));
+
+    StepVerifier.create(scoreboardStream())
+        .assertNext(
+            event -> {
+              assertThat(event.event()).isEqualTo("snapshot");
+              assertThat(event.data()).contains("\"isSnapshot\":true");
+            })
+        .assertNext(
+            event -> {
+              assertThat(event.event()).isEqualTo("update");
+              assertThat(event.data()).contains("\"removedUserIds\":[3]");
+            })
+        .thenCancel()
+        .verify();
+  }
+
+  @Test
+  void scoreboardStream_NoUpdates_SendsHeartbeatComment() {
+    final VirtualTimeScheduler virtualTimeScheduler = VirtualTimeScheduler.getOrSet();
+    final ScoreboardUpdate snapshot = ScoreboardUpdate.builder().isSnapshot(true).build();
+
+    // The response is only committed with its first event, which is always the snapshot
+    when(scoreService.getScoreboardUpdates())
+        .thenReturn(Flux.just(snapshot).concatWith(Flux.never()));
+
+    StepVerifier.create(scoreboardStream())
+        .assertNext(event -> assertThat(event.event()).isEqualTo("snapshot"))
+        .then(() -> virtualTimeScheduler.advanceTimeBy(Duration.ofSeconds(15)))
+        .assertNext(
+            event -> {
+              assertThat(event.comment()).isEqualTo("heartbeat");
+              assertThat(event.data()).isNull();
+            })
+        .thenCancel()
+        .verify(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void scoreboardStream_ClientFallsBehind_Disconnects() {
+    final ScoreboardUpdate update = ScoreboardUpdate.builder().removedUserId(3L).build();
+
+    // The updates are pushed regardless of demand, like the scoreboard engine does. The client
+    // hasn't read the stream yet, so they pile up until the buffer overflows
+    when(scoreService.getScoreboardUpdates()).thenReturn(Flux.range(0, 1000).map(i -> update));
+
+    StepVerifier.create(scoreboardStream())
+        .thenConsumeWhile(event -> "update".equals(event.event()))
+        .expectErrorMatches(Exceptions::isOverflow)
+        .verify(Duration.ofSeconds(10));
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    webTestClient =
+        WebTestClient.bindToController(new ScoreboardController(scoreService, submissionService))
+            .build();
+  }
+
+  @AfterEach
+  private void tearDown() {
+    VirtualTimeScheduler.reset();
+  }
+}
@@ -27,8 +27,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
 import org.owasp.securityshepherd.user.User;
 import org.owasp.securityshepherd.user.UserController;
+import org.owasp.securityshepherd.user.UserImportResult;
+import org.owasp.securityshepherd.user.UserImportService;
 import org.owasp.securityshepherd.user.UserService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
@@ -49,6 +52,8 @@ class UserControllerTest {
 
   @Mock private UserService userService;
 
+  @Mock private UserImportService userImportService;
+
   @Test
   void deleteById_ValidId_CallsUserService() {
     final long mockUserId = 317L;
@@ -103,9 +108,23 @@ class UserControllerTest {
     verify(userService, times(1)).findAll();
   }
 
+  @Test
+  void importUsers_ValidRows_CallsUserImportService() {
+    final Flux<PasswordRegistrationDto> users =
+        Flux.just(new PasswordRegistrationDto("Student", "student", "password"));
+    final UserImportResult result =
+        UserImportResult.builder().userName("student").userId(1L).build();
+    when(userImportService.importUsers(users)).thenReturn(Flux.just(result));
+    StepVerifier.create(userController.importUsers(users))
+        .expectNext(result)
+        .expectComplete()
+        .verify();
+    verify(userImportService, times(1)).importUsers(users);
+  }
+
   @BeforeEach
   private void setUp() throws Exception {
     // Set up the system under test
-    userController = new UserController(userService);
+    userController = new UserController(userService, userImportService);
   }
 }
@@ -47,6 +47,11 @@ class CryptoFactoryTest {
     assertThat(cryptoFactory.getPrng()).isInstanceOf(SecureRandom.class);
   }
 
+  @Test
+  void getPrng_ReturnsNonBlockingDrbg() throws NoSuchAlgorithmException {
+    assertThat(cryptoFactory.getPrng().getAlgorithm()).isEqualTo("DRBG");
+  }
+
   @Test
   void getHmac_ReturnsMacInstance() throws Exception {
     assertThat(cryptoFactory.getHmac()).isInstanceOf(Mac.class);
@@ -19,8 +19,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import javax.crypto.Mac;
@@ -35,6 +38,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.crypto.CryptoFactory;
 import org.owasp.securityshepherd.crypto.CryptoService;
 import org.owasp.securityshepherd.exception.CryptographicException;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import reactor.core.publisher.Hooks;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,6 +54,8 @@ class CryptoServiceTest {
 
   @Mock CryptoFactory cryptoFactory;
 
+  SimpleMeterRegistry meterRegistry;
+
   @Test
   void hmac_GetHmacThrowsNoSuchAlgorithmException_ThrowsCryptographicException() throws Exception {
     final byte[] key = {-91, -79, 67};
@@ -92,6 +98,107 @@ class CryptoServiceTest {
         .isThrownBy(() -> cryptoService.hmac(key, null));
   }
 
+  @Test
+  void hmac_DifferentKeys_ReinitializesSameMac() throws Exception {
+    final byte[] key1 = {-91};
+    final byte[] key2 = {-92};
+    final byte[] message = {120, 56, 111};
+
+    Mac mockMac = mock(Mac.class);
+    when(cryptoFactory.getHmac()).thenReturn(mockMac);
+
+    SecretKeySpec mockSecretKeySpec1 = mock(SecretKeySpec.class);
+    when(cryptoFactory.getSecretKeySpec(key1)).thenReturn(mockSecretKeySpec1);
+    SecretKeySpec mockSecretKeySpec2 = mock(SecretKeySpec.class);
+    when(cryptoFactory.getSecretKeySpec(key2)).thenReturn(mockSecretKeySpec2);
+
+    cryptoService.hmac(key1, message);
+    cryptoService.hmac(key2, message);
+    cryptoService.hmac(key1, message);
+
+    verify(cryptoFactory, times(1)).getHmac();
+    verify(mockMac, times(2)).init(mockSecretKeySpec1);
+    verify(mockMac, times(1)).init(mockSecretKeySpec2);
+  }
+
+  @Test
+  void hmac_InvalidKeyThenValidKey_ReinitializesMac() throws Exception {
+    final byte[] key = {-91};
+    final byte[] message = {120, 56, 111};
+    final byte[] expectedHash = {46};
+
+    Mac mockMac = mock(Mac.class);
+    when(cryptoFactory.getHmac()).thenReturn(mockMac);
+
+    SecretKeySpec mockSecretKeySpec = mock(SecretKeySpec.class);
+    when(cryptoFactory.getSecretKeySpec(key)).thenReturn(mockSecretKeySpec);
+
+    doThrow(new InvalidKeyException()).doNothing().when(mockMac).init(mockSecretKeySpec);
+    when(mockMac.doFinal(message)).thenReturn(expectedHash);
+
+    assertThatExceptionOfType(CryptographicException.class)
+        .isThrownBy(() -> cryptoService.hmac(key, message));
+    assertThat(cryptoService.hmac(key, message)).isEqualTo(expectedHash);
+
+    verify(mockMac, times(2)).init(mockSecretKeySpec);
+  }
+
+  @Test
+  void hmac_RealMac_MatchesFreshMac() throws Exception {
+    final CryptoFactory realCryptoFactory = new CryptoFactory();
+    final CryptoService realCryptoService =
+        new CryptoService(realCryptoFactory, new MetricsService(meterRegistry));
+
+    final byte[] key1 = {-91, -79, 67, -107, 9, 91, 62, -95, 80, 78};
+    final byte[] key2 = {120, 56, 111, -98, -118, 44, -65, -127, 39, 35};
+    final byte[] message = {1, 2, 3};
+
+    for (final byte[] key : new byte[][] {key1, key2, key2, key1}) {
+      final Mac freshMac = realCryptoFactory.getHmac();
+      freshMac.init(realCryptoFactory.getSecretKeySpec(key));
+      assertThat(realCryptoService.hmac(key, message)).isEqualTo(freshMac.doFinal(message));
+    }
+  }
+
+  @Test
+  void hmac_SameKeyTwice_InitializesMacOnce() throws Exception {
+    final byte[] key = {-91};
+    final byte[] message1 = {120, 56, 111};
+    final byte[] message2 = {121};
+    final byte[] expectedHash1 = {46};
+    final byte[] expectedHash2 = {47};
+
+    Mac mockMac = mock(Mac.class);
+    when(cryptoFactory.getHmac()).thenReturn(mockMac);
+
+    SecretKeySpec mockSecretKeySpec = mock(SecretKeySpec.class);
+    when(cryptoFactory.getSecretKeySpec(key)).thenReturn(mockSecretKeySpec);
+
+    when(mockMac.doFinal(message1)).thenReturn(expectedHash1);
+    when(mockMac.doFinal(message2)).thenReturn(expectedHash2);
+
+    assertThat(cryptoService.hmac(key, message1)).isEqualTo(expectedHash1);
+    assertThat(cryptoService.hmac(key.clone(), message2)).isEqualTo(expectedHash2);
+
+    verify(cryptoFactory, times(1)).getHmac();
+    verify(mockMac, times(1)).init(mockSecretKeySpec);
+  }
+
+  @Test
+  void hmac_ValidData_RecordsTimer() throws Exception {
+    final byte[] key = {-91};
+    final byte[] message = {120, 56, 111};
+
+    Mac mockMac = mock(Mac.class);
+    when(cryptoFactory.getHmac()).thenReturn(mockMac);
+    when(mockMac.doFinal(message)).thenReturn(new byte[] {46});
+
+    cryptoService.hmac(key, message);
+    cryptoService.hmac(key, message);
+
+    assertThat(meterRegistry.get("shepherd.crypto.hmac").timer().count()).isEqualTo(2);
+  }
+
   @Test
   void hmac_ValidData_ReturnsHash() throws Exception {
     final byte[] key = {-91};
@@ -111,6 +218,7 @@ class CryptoServiceTest {
 
   @BeforeEach
   private void setUp() {
-    cryptoService = new CryptoService(cryptoFactory);
+    meterRegistry = new SimpleMeterRegistry();
+    cryptoService = new CryptoService(cryptoFactory, new MetricsService(meterRegistry));
   }
 }
@@ -0,0 +1,58 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.crypto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.crypto.KeyRing;
+
+@DisplayName("KeyRing unit test")
+class KeyRingTest {
+
+  private KeyRing keyRing;
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    keyRing = new KeyRing();
+  }
+
+  @Test
+  void clear_KeysStored_ForgetsAllKeys() {
+    keyRing.putUserKey(1L, new byte[] {1});
+    keyRing.setServerKey(new byte[] {3});
+
+    keyRing.clear();
+
+    assertThat(keyRing.getUserKey(1L)).isNull();
+    assertThat(keyRing.getServerKey()).isNull();
+  }
+
+  @Test
+  void evictUserKey_KeyStored_ForgetsUserKey() {
+    final byte[] otherKey = {5};
+    keyRing.putUserKey(1L, new byte[] {4});
+    keyRing.putUserKey(2L, otherKey);
+
+    keyRing.evictUserKey(1L);
+
+    assertThat(keyRing.getUserKey(1L)).isNull();
+    assertThat(keyRing.getUserKey(2L)).isEqualTo(otherKey);
+  }
+}
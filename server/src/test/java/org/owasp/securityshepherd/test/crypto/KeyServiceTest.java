@@ -17,7 +17,10 @@ package org.owasp.securityshepherd.test.crypto;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.security.NoSuchAlgorithmException;
@@ -28,6 +31,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.crypto.CryptoFactory;
@@ -80,6 +84,45 @@ class KeyServiceTest {
     }
   }
 
+  @Test
+  void generateRandomBytes_LargerThanPrefetchBuffer_GeneratesBytesDirectly() throws Exception {
+    final SecureRandom mockPrng = mock(SecureRandom.class);
+
+    when(prngFactory.getPrng()).thenReturn(mockPrng);
+
+    assertThat(keyService.generateRandomBytes(8192)).hasSize(8192);
+
+    final ArgumentCaptor<byte[]> argument = ArgumentCaptor.forClass(byte[].class);
+    verify(mockPrng, times(1)).nextBytes(argument.capture());
+    assertThat(argument.getValue()).hasSize(8192);
+  }
+
+  @Test
+  void generateRandomBytes_RealPrng_ReturnsDifferentBytes() {
+    keyService = new KeyService(new CryptoFactory());
+
+    final byte[] randomBytes1 = keyService.generateRandomBytes(16);
+    final byte[] randomBytes2 = keyService.generateRandomBytes(16);
+    assertThat(randomBytes1).hasSize(16);
+    assertThat(randomBytes2).hasSize(16);
+    assertThat(randomBytes1).isNotEqualTo(randomBytes2);
+  }
+
+  @Test
+  void generateRandomBytes_SmallLengths_GeneratesBytesInBulk() throws Exception {
+    final SecureRandom mockPrng = mock(SecureRandom.class);
+
+    when(prngFactory.getPrng()).thenReturn(mockPrng);
+
+    // 256 keys of 16 bytes fit in one prefetch buffer, the next one needs a refill
+    for (int i = 0; i < 257; i++) {
+      assertThat(keyService.generateRandomBytes(16)).hasSize(16);
+    }
+
+    verify(prngFactory, times(1)).getPrng();
+    verify(mockPrng, times(2)).nextBytes(any(byte[].class));
+  }
+
   @Test
   void generateRandomBytes_ValidLength_ReturnsRandomBytes() throws Exception {
     final int[] testedLengths = {0, 1, 12, 16, 128, 4096};
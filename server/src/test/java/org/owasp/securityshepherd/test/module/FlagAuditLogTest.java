@@ -0,0 +1,98 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.module;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.owasp.securityshepherd.module.FlagAuditLog;
+
+@DisplayName("FlagAuditLog unit test")
+class FlagAuditLogTest {
+
+  private FlagAuditLog flagAuditLog;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    meterRegistry = new SimpleMeterRegistry();
+    flagAuditLog = new FlagAuditLog(new MetricsService(meterRegistry), 3, 2);
+    flagAuditLog.setClock(Clock.fixed(Instant.parse("2000-01-01T10:00:00.00Z"), ZoneId.of("Z")));
+  }
+
+  @Test
+  void flush_NoEvents_WritesNothing() {
+    assertThat(flagAuditLog.flush()).isZero();
+    assertThat(flagAuditLog.getWrittenCount()).isZero();
+  }
+
+  @Test
+  void flush_EventsRecorded_WritesAllBatches() {
+    flagAuditLog.record(1L, "id1", true);
+    flagAuditLog.record(2L, "id1", false);
+    flagAuditLog.record(1L, "id2", false);
+
+    assertThat(flagAuditLog.getPendingCount()).isEqualTo(3);
+    // Three events are written in two batches
+    assertThat(flagAuditLog.flush()).isEqualTo(3);
+    assertThat(flagAuditLog.getPendingCount()).isZero();
+    assertThat(flagAuditLog.getWrittenCount()).isEqualTo(3);
+    assertThat(flagAuditLog.getDroppedCount()).isZero();
+  }
+
+  @Test
+  void record_QueueFull_DropsEvent() {
+    for (int i = 0; i < 5; i++) {
+      flagAuditLog.record(1L, "id1", false);
+    }
+
+    assertThat(flagAuditLog.getPendingCount()).isEqualTo(3);
+    assertThat(flagAuditLog.getDroppedCount()).isEqualTo(2);
+    assertThat(flagAuditLog.flush()).isEqualTo(3);
+  }
+
+  @Test
+  void flush_QueueOverflowed_ExposesCountsAsMeters() {
+    for (int i = 0; i < 5; i++) {
+      flagAuditLog.record(1L, "id1", false);
+    }
+    flagAuditLog.flush();
+    flagAuditLog.record(1L, "id1", true);
+
+    assertThat(meterRegistry.get("shepherd.audit.pending").gauge().value()).isEqualTo(1);
+    assertThat(meterRegistry.get("shepherd.audit.written").functionCounter().count()).isEqualTo(3);
+    assertThat(meterRegistry.get("shepherd.audit.dropped").functionCounter().count()).isEqualTo(2);
+  }
+
+  @Test
+  void stopFlushing_EventsPending_WritesPendingEvents() {
+    flagAuditLog.startFlushing();
+    flagAuditLog.record(1L, "id1", true);
+    flagAuditLog.stopFlushing();
+
+    assertThat(flagAuditLog.getPendingCount()).isZero();
+    assertThat(flagAuditLog.getWrittenCount()).isEqualTo(1);
+  }
+}
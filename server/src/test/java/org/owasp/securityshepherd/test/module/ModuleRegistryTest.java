@@ -0,0 +1,92 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.module;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.module.Module;
+import org.owasp.securityshepherd.module.ModuleRegistry;
+
+@DisplayName("ModuleRegistry unit test")
+class ModuleRegistryTest {
+
+  private ModuleRegistry moduleRegistry;
+
+  private static Module module(final long id, final String name) {
+    return Module.builder().id(id).name(name).key(new byte[] {1}).build();
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    moduleRegistry = new ModuleRegistry();
+  }
+
+  @Test
+  void load_ModulesLoaded_FindsModulesInIdOrder() {
+    assertThat(moduleRegistry.isLoaded()).isFalse();
+
+    moduleRegistry.load(Arrays.asList(module(2L, "second"), module(1L, "first")));
+
+    assertThat(moduleRegistry.isLoaded()).isTrue();
+    assertThat(moduleRegistry.count()).isEqualTo(2);
+    assertThat(moduleRegistry.findByName("second")).isEqualTo(module(2L, "second"));
+    assertThat(moduleRegistry.findAll()).containsExactly(module(1L, "first"), module(2L, "second"));
+  }
+
+  @Test
+  void load_ModulePutWhileLoading_KeepsNewerModule() {
+    final Module updatedModule = module(1L, "id").withFlagStatic(true).withStaticFlag("flag");
+    moduleRegistry.put(updatedModule);
+
+    moduleRegistry.load(Arrays.asList(module(1L, "id")));
+
+    assertThat(moduleRegistry.findByName("id")).isEqualTo(updatedModule);
+  }
+
+  @Test
+  void put_ModuleReplaced_ReturnsLatestModule() {
+    final Module module = module(1L, "id");
+    moduleRegistry.put(module);
+    moduleRegistry.put(module.withFlagStatic(true).withStaticFlag("flag"));
+
+    assertThat(moduleRegistry.findByName("id").isFlagStatic()).isTrue();
+    assertThat(moduleRegistry.findByName("id").getStaticFlag()).isEqualTo("flag");
+  }
+
+  @Test
+  void findByName_NullOrUnknownName_ReturnsNull() {
+    moduleRegistry.put(module(1L, "id"));
+
+    assertThat(moduleRegistry.findByName(null)).isNull();
+    assertThat(moduleRegistry.findByName("unknown")).isNull();
+  }
+
+  @Test
+  void clear_ModulesLoaded_ForgetsModules() {
+    moduleRegistry.load(Arrays.asList(module(1L, "id")));
+
+    moduleRegistry.clear();
+
+    assertThat(moduleRegistry.isLoaded()).isFalse();
+    assertThat(moduleRegistry.count()).isZero();
+    assertThat(moduleRegistry.findByName("id")).isNull();
+  }
+}
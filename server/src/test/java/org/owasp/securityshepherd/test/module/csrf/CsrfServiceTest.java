@@ -21,6 +21,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.time.Clock;
 import java.time.Instant;
@@ -34,6 +35,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.csrf.CsrfAttack;
 import org.owasp.securityshepherd.module.csrf.CsrfAttackRepository;
@@ -57,10 +59,12 @@ class CsrfServiceTest {
 
   @Mock FlagHandler flagHandler;
 
+  private final MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    csrfService = new CsrfService(csrfAttackRepository, flagHandler);
+    csrfService = new CsrfService(csrfAttackRepository, flagHandler, metricsService);
   }
 
   @Test
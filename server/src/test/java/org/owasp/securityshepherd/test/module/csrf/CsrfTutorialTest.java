@@ -20,6 +20,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.NonNull;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.jupiter.api.BeforeAll;
@@ -29,6 +30,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.Module;
 import org.owasp.securityshepherd.module.ModuleService;
@@ -88,6 +91,14 @@ class CsrfTutorialTest {
         .withRedefinedSuperclass()
         .withRedefinedSubclass(CsrfTutorialChild.class)
         .withIgnoredAnnotations(NonNull.class)
+        // FlagHandler reaches the scoreboard engine, whose update processor EqualsVerifier can't
+        // build because it is a recursive structure
+        .withPrefabValues(FlagHandler.class, mock(FlagHandler.class), mock(FlagHandler.class))
+        .withPrefabValues(KeyService.class, mock(KeyService.class), mock(KeyService.class))
+        .withPrefabValues(
+            MetricsService.class,
+            new MetricsService(new SimpleMeterRegistry()),
+            new MetricsService(new SimpleMeterRegistry()))
         .verify();
   }
 
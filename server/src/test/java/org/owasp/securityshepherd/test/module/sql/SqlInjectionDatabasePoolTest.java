@@ -0,0 +1,267 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.module.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionDatabaseClientFactory;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionDatabasePool;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SqlInjectionDatabasePool unit test")
+class SqlInjectionDatabasePoolTest {
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private SqlInjectionDatabasePool sqlInjectionDatabasePool;
+
+  private SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory;
+
+  @Mock KeyService keyService;
+
+  private static Flux<String> findComments(final DatabaseClient databaseClient) {
+    return databaseClient
+        .execute("SELECT comment FROM sqlinjection.users")
+        .map(row -> row.get("comment", String.class))
+        .all();
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    sqlInjectionDatabaseClientFactory = spy(new SqlInjectionDatabaseClientFactory());
+    sqlInjectionDatabasePool =
+        new SqlInjectionDatabasePool(
+            sqlInjectionDatabaseClientFactory,
+            keyService,
+            new MetricsService(new SimpleMeterRegistry()),
+            100,
+            1000,
+            10,
+            200);
+    when(keyService.generateRandomBytes(16)).thenReturn(new byte[] {1, 2, 3});
+  }
+
+  @AfterEach
+  private void tearDown() {
+    sqlInjectionDatabasePool.clear();
+  }
+
+  @Test
+  void getDatabaseClient_SameFlag_ReusesDatabase() {
+    final Mono<DatabaseClient> clientMono = sqlInjectionDatabasePool.getDatabaseClient(1L, "flag");
+
+    StepVerifier.create(clientMono.flatMapMany(SqlInjectionDatabasePoolTest::findComments))
+        .expectNextCount(5)
+        .expectNext("Well done, flag is flag")
+        .expectComplete()
+        .verify();
+
+    StepVerifier.create(clientMono.flatMapMany(SqlInjectionDatabasePoolTest::findComments))
+        .expectNextCount(6)
+        .expectComplete()
+        .verify();
+
+    // One client for setting up the database and one for the queries
+    verify(sqlInjectionDatabaseClientFactory, times(2)).create(any(String.class));
+    verify(keyService, times(1)).generateRandomBytes(16);
+  }
+
+  @Test
+  void getDatabaseClient_FlagChanged_RebuildsDatabase() {
+    StepVerifier.create(
+            sqlInjectionDatabasePool
+                .getDatabaseClient(1L, "oldflag")
+                .flatMapMany(SqlInjectionDatabasePoolTest::findComments)
+                .last())
+        .expectNext("Well done, flag is oldflag")
+        .expectComplete()
+        .verify();
+
+    StepVerifier.create(
+            sqlInjectionDatabasePool
+                .getDatabaseClient(1L, "newflag")
+                .flatMapMany(SqlInjectionDatabasePoolTest::findComments)
+                .last())
+        .expectNext("Well done, flag is newflag")
+        .expectComplete()
+        .verify();
+
+    verify(sqlInjectionDatabaseClientFactory, times(4)).create(any(String.class));
+    assertThat(sqlInjectionDatabasePool.size()).isEqualTo(1);
+  }
+
+  @Test
+  void getDatabaseClient_InjectedDelete_DatabaseIsUnchanged() {
+    final DatabaseClient databaseClient =
+        sqlInjectionDatabasePool.getDatabaseClient(1L, "flag").block();
+
+    StepVerifier.create(databaseClient.execute("DELETE FROM sqlinjection.users").then())
+        .expectError()
+        .verify();
+
+    StepVerifier.create(findComments(databaseClient)).expectNextCount(6).expectComplete().verify();
+  }
+
+  @Test
+  void evict_ExistingDatabase_CreatesNewDatabaseOnNextCall() {
+    StepVerifier.create(sqlInjectionDatabasePool.getDatabaseClient(1L, "flag"))
+        .expectNextCount(1)
+        .expectComplete()
+        .verify();
+
+    sqlInjectionDatabasePool.evict(1L);
+    assertThat(sqlInjectionDatabasePool.size()).isZero();
+
+    StepVerifier.create(
+            sqlInjectionDatabasePool
+                .getDatabaseClient(1L, "flag")
+                .flatMapMany(SqlInjectionDatabasePoolTest::findComments))
+        .expectNextCount(6)
+        .expectComplete()
+        .verify();
+
+    verify(sqlInjectionDatabaseClientFactory, times(4)).create(any(String.class));
+  }
+
+  @Test
+  void getDatabaseClient_HeapBudgetExceeded_EvictsLeastRecentlyUsed() {
+    // Room for two databases
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final SqlInjectionDatabasePool smallPool =
+        new SqlInjectionDatabasePool(
+            sqlInjectionDatabaseClientFactory,
+            keyService,
+            new MetricsService(meterRegistry),
+            100,
+            200,
+            10,
+            200);
+
+    smallPool.getDatabaseClient(1L, "flag").block();
+    final DatabaseClient evictedClient = smallPool.getDatabaseClient(2L, "flag").block();
+    // User 1 is now more recently used than user 2
+    smallPool.getDatabaseClient(1L, "flag").block();
+    smallPool.getDatabaseClient(3L, "flag").block();
+
+    assertThat(smallPool.size()).isEqualTo(2);
+    assertThat(smallPool.getEstimatedBytes()).isEqualTo(200);
+    assertThat(smallPool.getCreatedCount()).isEqualTo(3);
+    assertThat(smallPool.getEvictedCount()).isEqualTo(1);
+    assertThat(meterRegistry.get("shepherd.sqlinjection.databases").gauge().value()).isEqualTo(2);
+    assertThat(meterRegistry.get("shepherd.sqlinjection.databases.bytes").gauge().value())
+        .isEqualTo(200);
+    assertThat(
+            meterRegistry.get("shepherd.sqlinjection.databases.created").functionCounter().count())
+        .isEqualTo(3);
+    assertThat(
+            meterRegistry.get("shepherd.sqlinjection.databases.evicted").functionCounter().count())
+        .isEqualTo(1);
+
+    // The evicted database has been shut down
+    StepVerifier.create(findComments(evictedClient)).expectError().verify();
+
+    // User 1 keeps the database, user 2 gets a new one
+    smallPool.getDatabaseClient(1L, "flag").block();
+    assertThat(smallPool.getCreatedCount()).isEqualTo(3);
+
+    StepVerifier.create(
+            smallPool
+                .getDatabaseClient(2L, "flag")
+                .flatMapMany(SqlInjectionDatabasePoolTest::findComments))
+        .expectNextCount(6)
+        .expectComplete()
+        .verify();
+    assertThat(smallPool.getCreatedCount()).isEqualTo(4);
+
+    smallPool.clear();
+  }
+
+  @Test
+  void getDatabaseClient_SecondPoolInSameJvm_CreatesOwnDatabase() {
+    final SqlInjectionDatabasePool otherPool =
+        new SqlInjectionDatabasePool(
+            sqlInjectionDatabaseClientFactory,
+            keyService,
+            new MetricsService(new SimpleMeterRegistry()),
+            100,
+            1000,
+            10,
+            200);
+
+    StepVerifier.create(
+            sqlInjectionDatabasePool
+                .getDatabaseClient(1L, "flag")
+                .flatMapMany(SqlInjectionDatabasePoolTest::findComments)
+                .last())
+        .expectNext("Well done, flag is flag")
+        .expectComplete()
+        .verify();
+
+    // In-memory databases are shared by the JVM, the other pool must not reopen ours
+    StepVerifier.create(
+            otherPool
+                .getDatabaseClient(1L, "otherflag")
+                .flatMapMany(SqlInjectionDatabasePoolTest::findComments))
+        .expectNextCount(5)
+        .expectNext("Well done, flag is otherflag")
+        .expectComplete()
+        .verify();
+
+    otherPool.clear();
+  }
+
+  @Test
+  void getDatabaseClient_SlowQuery_TimesOut() {
+    StepVerifier.create(
+            sqlInjectionDatabasePool
+                .getDatabaseClient(1L, "flag")
+                .flatMapMany(
+                    databaseClient ->
+                        databaseClient
+                            .execute("SELECT sum(X) FROM SYSTEM_RANGE(1, 100000000000)")
+                            .fetch()
+                            .all()))
+        .expectError(QueryTimeoutException.class)
+        .verify(Duration.ofSeconds(30));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.module.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.exception.TooManyQueriesException;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionQueryExecutor;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorialRow;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+
+@DisplayName("SqlInjectionQueryExecutor unit test")
+class SqlInjectionQueryExecutorTest {
+  private static final String QUERY = "SELECT * FROM sqlinjection.users WHERE name = ''";
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private SqlInjectionQueryExecutor sqlInjectionQueryExecutor;
+
+  private static DatabaseClient getClient(final Flux<SqlInjectionTutorialRow> rows) {
+    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class, RETURNS_DEEP_STUBS);
+    when(mockDatabaseClient.execute(QUERY).as(SqlInjectionTutorialRow.class).fetch().all())
+        .thenReturn(rows);
+    return mockDatabaseClient;
+  }
+
+  private static SqlInjectionTutorialRow row(final int index) {
+    return SqlInjectionTutorialRow.builder().name("name" + index).build();
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    // The queue leaves room for the task of a running query that hasn't started yet
+    sqlInjectionQueryExecutor = new SqlInjectionQueryExecutor(3, 1, 1, 2);
+  }
+
+  @AfterEach
+  private void tearDown() {
+    sqlInjectionQueryExecutor.dispose();
+  }
+
+  @Test
+  void execute_ManyRows_ReturnsAtMostMaxRowsAndCancelsQuery() {
+    final AtomicBoolean isCancelled = new AtomicBoolean();
+    final DatabaseClient databaseClient =
+        getClient(
+            Flux.range(0, 1_000_000)
+                .map(SqlInjectionQueryExecutorTest::row)
+                .doOnCancel(() -> isCancelled.set(true)));
+
+    StepVerifier.create(sqlInjectionQueryExecutor.execute(1L, databaseClient, QUERY))
+        .expectNext(row(0), row(1), row(2))
+        .expectComplete()
+        .verify();
+
+    assertThat(isCancelled).isTrue();
+  }
+
+  @Test
+  void execute_TooManyQueriesForUser_ReturnsTooManyQueriesException() {
+    final DatabaseClient runningClient = getClient(Flux.never());
+
+    final Disposable runningQuery =
+        sqlInjectionQueryExecutor.execute(1L, runningClient, QUERY).subscribe();
+
+    StepVerifier.create(sqlInjectionQueryExecutor.execute(1L, getClient(Flux.just(row(0))), QUERY))
+        .expectError(TooManyQueriesException.class)
+        .verify();
+
+    // Once the running query is cancelled, the user may query again
+    runningQuery.dispose();
+
+    StepVerifier.create(sqlInjectionQueryExecutor.execute(1L, getClient(Flux.just(row(0))), QUERY))
+        .expectNext(row(0))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void execute_OtherUserHasRunningQuery_ReturnsRows() {
+    final Disposable runningQuery =
+        sqlInjectionQueryExecutor.execute(1L, getClient(Flux.never()), QUERY).subscribe();
+
+    StepVerifier.create(sqlInjectionQueryExecutor.execute(2L, getClient(Flux.just(row(0))), QUERY))
+        .expectNext(row(0))
+        .expectComplete()
+        .verify();
+
+    runningQuery.dispose();
+  }
+}
@@ -17,11 +17,13 @@ package org.owasp.securityshepherd.test.module.sql;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.r2dbc.spi.R2dbcBadGrammarException;
+import io.r2dbc.spi.R2dbcTimeoutException;
 import lombok.NonNull;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.jupiter.api.BeforeAll;
@@ -31,12 +33,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.Module;
 import org.owasp.securityshepherd.module.ModuleService;
-import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionDatabaseClientFactory;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionDatabasePool;
+import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionQueryExecutor;
 import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorial;
 import org.owasp.securityshepherd.module.sqlinjection.SqlInjectionTutorialRow;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.r2dbc.BadSqlGrammarException;
 import org.springframework.data.r2dbc.core.DatabaseClient;
 import reactor.core.publisher.Flux;
@@ -58,24 +63,15 @@ class SqlInjectionTutorialTest {
 
   SqlInjectionTutorial sqlInjectionTutorial;
 
-  @Mock SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory;
+  @Mock SqlInjectionDatabasePool sqlInjectionDatabasePool;
+
+  @Mock SqlInjectionQueryExecutor sqlInjectionQueryExecutor;
 
   @Mock ModuleService moduleService;
 
   @Mock FlagHandler flagHandler;
 
-  @Mock KeyService keyService;
-
-  private DatabaseClient getClient(final String args, final Flux<SqlInjectionTutorialRow> rows) {
-    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class, RETURNS_DEEP_STUBS);
-    when(mockDatabaseClient
-            .execute(any(String.class))
-            .as(SqlInjectionTutorialRow.class)
-            .fetch()
-            .all())
-        .thenReturn(rows);
-    return mockDatabaseClient;
-  }
+  private final MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
 
   @Test
   void equals_EqualsVerifier_AsExpected() {
@@ -85,9 +81,15 @@ class SqlInjectionTutorialTest {
       public SqlInjectionTutorialChild(
           ModuleService moduleService,
           FlagHandler flagHandler,
-          SqlInjectionDatabaseClientFactory sqlInjectionDatabaseClientFactory,
-          KeyService keyService) {
-        super(moduleService, flagHandler, sqlInjectionDatabaseClientFactory, keyService);
+          SqlInjectionDatabasePool sqlInjectionDatabasePool,
+          SqlInjectionQueryExecutor sqlInjectionQueryExecutor,
+          MetricsService metricsService) {
+        super(
+            moduleService,
+            flagHandler,
+            sqlInjectionDatabasePool,
+            sqlInjectionQueryExecutor,
+            metricsService);
       }
 
       @Override
@@ -100,6 +102,22 @@ class SqlInjectionTutorialTest {
         .withRedefinedSuperclass()
         .withRedefinedSubclass(SqlInjectionTutorialChild.class)
         .withIgnoredAnnotations(NonNull.class)
+        // FlagHandler reaches the scoreboard engine, whose update processor EqualsVerifier can't
+        // build because it is a recursive structure
+        .withPrefabValues(FlagHandler.class, mock(FlagHandler.class), mock(FlagHandler.class))
+        .withPrefabValues(KeyService.class, mock(KeyService.class), mock(KeyService.class))
+        .withPrefabValues(
+            SqlInjectionDatabasePool.class,
+            mock(SqlInjectionDatabasePool.class),
+            mock(SqlInjectionDatabasePool.class))
+        .withPrefabValues(
+            SqlInjectionQueryExecutor.class,
+            mock(SqlInjectionQueryExecutor.class),
+            mock(SqlInjectionQueryExecutor.class))
+        .withPrefabValues(
+            MetricsService.class,
+            new MetricsService(new SimpleMeterRegistry()),
+            new MetricsService(new SimpleMeterRegistry()))
         .verify();
   }
 
@@ -114,21 +132,20 @@ class SqlInjectionTutorialTest {
 
     sqlInjectionTutorial =
         new SqlInjectionTutorial(
-            moduleService, flagHandler, sqlInjectionDatabaseClientFactory, keyService);
-
-    final byte[] randomBytes = {120, 56, 111};
-    when(keyService.generateRandomBytes(16)).thenReturn(randomBytes);
+            moduleService,
+            flagHandler,
+            sqlInjectionDatabasePool,
+            sqlInjectionQueryExecutor,
+            metricsService);
 
     when(flagHandler.getDynamicFlag(mockUserId, MODULE_NAME)).thenReturn(Mono.just(mockFlag));
 
-    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class, RETURNS_DEEP_STUBS);
-    when(sqlInjectionDatabaseClientFactory.create(any())).thenReturn(mockDatabaseClient);
+    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class);
+    when(sqlInjectionDatabasePool.getDatabaseClient(mockUserId, mockFlag))
+        .thenReturn(Mono.just(mockDatabaseClient));
 
-    when(mockDatabaseClient
-            .execute(any(String.class))
-            .as(SqlInjectionTutorialRow.class)
-            .fetch()
-            .all())
+    when(sqlInjectionQueryExecutor.execute(
+            eq(mockUserId), eq(mockDatabaseClient), any(String.class)))
         .thenReturn(
             Flux.error(
                 new BadSqlGrammarException(
@@ -158,24 +175,27 @@ class SqlInjectionTutorialTest {
 
     sqlInjectionTutorial =
         new SqlInjectionTutorial(
-            moduleService, flagHandler, sqlInjectionDatabaseClientFactory, keyService);
+            moduleService,
+            flagHandler,
+            sqlInjectionDatabasePool,
+            sqlInjectionQueryExecutor,
+            metricsService);
 
     sqlInjectionTutorial.getInit().block();
 
-    final byte[] randomBytes = {120, 56, 111, 95, 6, 3};
-    when(keyService.generateRandomBytes(16)).thenReturn(randomBytes);
-
     final SqlInjectionTutorialRow mockSqlInjectionTutorialRow1 =
         mock(SqlInjectionTutorialRow.class);
     final SqlInjectionTutorialRow mockSqlInjectionTutorialRow2 =
         mock(SqlInjectionTutorialRow.class);
 
-    when(sqlInjectionDatabaseClientFactory.create(any(String.class)))
-        .thenAnswer(
-            args ->
-                getClient(
-                    args.getArgument(0, String.class),
-                    Flux.just(mockSqlInjectionTutorialRow1, mockSqlInjectionTutorialRow2)));
+    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class);
+    when(sqlInjectionDatabasePool.getDatabaseClient(mockUserId, mockFlag))
+        .thenReturn(Mono.just(mockDatabaseClient));
+    when(sqlInjectionQueryExecutor.execute(
+            mockUserId,
+            mockDatabaseClient,
+            "SELECT * FROM sqlinjection.users WHERE name = 'username'"))
+        .thenReturn(Flux.just(mockSqlInjectionTutorialRow1, mockSqlInjectionTutorialRow2));
 
     StepVerifier.create(sqlInjectionTutorial.submitQuery(mockUserId, query))
         .expectNext(mockSqlInjectionTutorialRow1)
@@ -184,31 +204,73 @@ class SqlInjectionTutorialTest {
         .verify();
   }
 
+  @Test
+  void submitQuery_QueryTimeoutException_ReturnsErrorToUser() {
+    final long mockUserId = 318L;
+    final Module mockModule = mock(Module.class);
+    final String mockFlag = "mockedflag";
+    final String query = "' UNION SELECT X, X FROM SYSTEM_RANGE(1, 1000000000) --";
+
+    when(moduleService.create(MODULE_NAME)).thenReturn(Mono.just(mockModule));
+
+    sqlInjectionTutorial =
+        new SqlInjectionTutorial(
+            moduleService,
+            flagHandler,
+            sqlInjectionDatabasePool,
+            sqlInjectionQueryExecutor,
+            metricsService);
+
+    when(flagHandler.getDynamicFlag(mockUserId, MODULE_NAME)).thenReturn(Mono.just(mockFlag));
+
+    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class);
+    when(sqlInjectionDatabasePool.getDatabaseClient(mockUserId, mockFlag))
+        .thenReturn(Mono.just(mockDatabaseClient));
+
+    when(sqlInjectionQueryExecutor.execute(
+            eq(mockUserId), eq(mockDatabaseClient), any(String.class)))
+        .thenReturn(
+            Flux.error(
+                new QueryTimeoutException(
+                    "Error", new R2dbcTimeoutException("Statement was canceled"))));
+
+    StepVerifier.create(sqlInjectionTutorial.submitQuery(mockUserId, query))
+        .assertNext(
+            row ->
+                assertThat(row.getError())
+                    .isEqualTo("io.r2dbc.spi.R2dbcTimeoutException: Statement was canceled"))
+        .verifyComplete();
+  }
+
   @Test
   void submitQuery_OtherException_ThrowsException() {
     final long mockUserId = 810L;
     final Module mockModule = mock(Module.class);
+    final String mockFlag = "mockedflag";
     final String query = "username";
 
-    final byte[] randomBytes = {120, 56, 111};
-    when(keyService.generateRandomBytes(16)).thenReturn(randomBytes);
-
     when(moduleService.create(MODULE_NAME)).thenReturn(Mono.just(mockModule));
 
     sqlInjectionTutorial =
         new SqlInjectionTutorial(
-            moduleService, flagHandler, sqlInjectionDatabaseClientFactory, keyService);
+            moduleService,
+            flagHandler,
+            sqlInjectionDatabasePool,
+            sqlInjectionQueryExecutor,
+            metricsService);
 
-    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class, RETURNS_DEEP_STUBS);
+    when(flagHandler.getDynamicFlag(mockUserId, MODULE_NAME)).thenReturn(Mono.just(mockFlag));
+
+    final DatabaseClient mockDatabaseClient = mock(DatabaseClient.class);
+    when(sqlInjectionDatabasePool.getDatabaseClient(mockUserId, mockFlag))
+        .thenReturn(Mono.just(mockDatabaseClient));
 
-    when(mockDatabaseClient
-            .execute(any(String.class))
-            .as(SqlInjectionTutorialRow.class)
-            .fetch()
-            .all())
+    when(sqlInjectionQueryExecutor.execute(
+            eq(mockUserId), eq(mockDatabaseClient), any(String.class)))
         .thenReturn(Flux.error(new RuntimeException()));
 
     StepVerifier.create(sqlInjectionTutorial.submitQuery(mockUserId, query))
-        .expectError(RuntimeException.class);
+        .expectError(RuntimeException.class)
+        .verify();
   }
 }
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.module.xss;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.owasp.securityshepherd.module.xss.XssPayloadScanner;
+
+@DisplayName("XssPayloadScanner unit test")
+class XssPayloadScannerTest {
+  private XssPayloadScanner xssPayloadScanner;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    meterRegistry = new SimpleMeterRegistry();
+    xssPayloadScanner = new XssPayloadScanner(new MetricsService(meterRegistry));
+  }
+
+  @Test
+  void isInert_PlainPayload_ReturnsTrue() {
+    assertThat(xssPayloadScanner.isInert("username")).isTrue();
+    assertThat(xssPayloadScanner.isInert("")).isTrue();
+    assertThat(xssPayloadScanner.isInert("a > b")).isTrue();
+    assertThat(xssPayloadScanner.isInert("it's \"quoted\"")).isTrue();
+    // Without a tag, an event handler attribute is just text
+    assertThat(xssPayloadScanner.isInert("onerror=alert(1)")).isTrue();
+  }
+
+  @Test
+  void isInert_SuspiciousPayload_ReturnsFalse() {
+    assertThat(xssPayloadScanner.isInert("<script>alert(1)</script>")).isFalse();
+    assertThat(xssPayloadScanner.isInert("&lt;script&gt;")).isFalse();
+    assertThat(xssPayloadScanner.isInert("JavaScript:alert(1)")).isFalse();
+    assertThat(xssPayloadScanner.isInert("vbscript:msgbox(1)")).isFalse();
+    assertThat(xssPayloadScanner.isInert("null\0byte")).isFalse();
+  }
+
+  @Test
+  void isInert_MixedPayloads_CountsPathsInRegistry() {
+    xssPayloadScanner.isInert("username");
+    xssPayloadScanner.isInert("username");
+    xssPayloadScanner.isInert("<img>");
+
+    assertThat(
+            meterRegistry
+                .get("shepherd.xss.payloads")
+                .tag("path", "fast")
+                .functionCounter()
+                .count())
+        .isEqualTo(2);
+    assertThat(
+            meterRegistry
+                .get("shepherd.xss.payloads")
+                .tag("path", "browser")
+                .functionCounter()
+                .count())
+        .isEqualTo(1);
+  }
+}
@@ -37,6 +37,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
@@ -59,7 +60,7 @@ class AuthenticationManagerTest {
     final Authentication mockAuthentication = mock(Authentication.class);
     final String mockToken = "token";
     when(mockAuthentication.getCredentials()).thenReturn(mockToken);
-    when(webTokenService.validateToken(mockToken)).thenReturn(false);
+    when(webTokenService.findUserIdFromToken(mockToken)).thenReturn(Mono.empty());
 
     StepVerifier.create(authenticationManager.authenticate(mockAuthentication))
         .expectComplete()
@@ -72,8 +73,7 @@ class AuthenticationManagerTest {
     final String mockToken = "token";
     final long mockUserId = 548;
     when(mockAuthentication.getCredentials()).thenReturn(mockToken);
-    when(webTokenService.validateToken(mockToken)).thenReturn(true);
-    when(webTokenService.getUserIdFromToken(mockToken)).thenReturn(mockUserId);
+    when(webTokenService.findUserIdFromToken(mockToken)).thenReturn(Mono.just(mockUserId));
     final SimpleGrantedAuthority mockSimpleGrantedAuthority1 = mock(SimpleGrantedAuthority.class);
     final SimpleGrantedAuthority mockSimpleGrantedAuthority2 = mock(SimpleGrantedAuthority.class);
     final SimpleGrantedAuthority mockSimpleGrantedAuthority3 = mock(SimpleGrantedAuthority.class);
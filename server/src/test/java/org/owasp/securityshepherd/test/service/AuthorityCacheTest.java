@@ -0,0 +1,73 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.authentication.AuthorityCache;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+@DisplayName("AuthorityCache unit test")
+class AuthorityCacheTest {
+
+  private static final List<SimpleGrantedAuthority> USER_AUTHORITIES =
+      Arrays.asList(new SimpleGrantedAuthority("ROLE_USER"));
+
+  private AuthorityCache authorityCache;
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    authorityCache = new AuthorityCache(60);
+  }
+
+  @Test
+  void get_NotCached_ReturnsNull() {
+    assertThat(authorityCache.get(1L)).isNull();
+  }
+
+  @Test
+  void evict_AuthoritiesCached_ForgetsUser() {
+    authorityCache.put(1L, USER_AUTHORITIES);
+    authorityCache.put(2L, USER_AUTHORITIES);
+
+    authorityCache.evict(1L);
+
+    assertThat(authorityCache.get(1L)).isNull();
+    assertThat(authorityCache.get(2L)).isEqualTo(USER_AUTHORITIES);
+  }
+
+  @Test
+  void clear_AuthoritiesCached_ForgetsAllUsers() {
+    authorityCache.put(1L, USER_AUTHORITIES);
+
+    authorityCache.clear();
+
+    assertThat(authorityCache.get(1L)).isNull();
+  }
+
+  @Test
+  void get_ZeroTtl_ReturnsNull() {
+    authorityCache = new AuthorityCache(0);
+    authorityCache.put(1L, USER_AUTHORITIES);
+    assertThat(authorityCache.get(1L)).isNull();
+  }
+}
@@ -33,6 +33,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.configuration.ConfigurationRepository;
+import org.owasp.securityshepherd.crypto.KeyRing;
 import org.owasp.securityshepherd.crypto.KeyService;
 import org.owasp.securityshepherd.model.Configuration;
 import org.owasp.securityshepherd.service.ConfigurationService;
@@ -56,6 +57,8 @@ class ConfigurationServiceTest {
 
   @Mock private KeyService keyService;
 
+  @Mock private KeyRing keyRing;
+
   @Test
   void getServerKey_KeyExists_ReturnsExistingKey() throws Exception {
     final String serverKeyConfigurationKey = "serverKey";
@@ -82,6 +85,22 @@ class ConfigurationServiceTest {
         .verify();
   }
 
+  @Test
+  void getServerKey_KeyInKeyRing_ReturnsKeyWithoutQuery() throws Exception {
+    final byte[] mockedServerKey = {
+      -118, 9, -7, -35, 17, -116, -94, 0, -32, -117, 65, -127, 12, 82, 9, 29
+    };
+
+    when(keyRing.getServerKey()).thenReturn(mockedServerKey);
+
+    StepVerifier.create(configurationService.getServerKey())
+        .expectNext(mockedServerKey)
+        .expectComplete()
+        .verify();
+
+    verify(configurationRepository, never()).findByKey(any(String.class));
+  }
+
   @Test
   void getServerKey_NoKeyExists_ReturnsNewKey() throws Exception {
     final String serverKeyConfigurationKey = "serverKey";
@@ -178,11 +197,14 @@ class ConfigurationServiceTest {
             })
         .expectComplete()
         .verify();
+
+    // The new key replaces the old one in the key ring
+    verify(keyRing).setServerKey(newServerKey);
   }
 
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    configurationService = new ConfigurationService(configurationRepository, keyService);
+    configurationService = new ConfigurationService(configurationRepository, keyService, keyRing);
   }
 }
@@ -34,6 +34,7 @@ import org.owasp.securityshepherd.exception.InvalidUserIdException;
 import org.owasp.securityshepherd.scoring.Correction;
 import org.owasp.securityshepherd.scoring.CorrectionRepository;
 import org.owasp.securityshepherd.scoring.CorrectionService;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
 import org.owasp.securityshepherd.test.util.TestUtils;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
@@ -53,6 +54,8 @@ class CorrectionServiceTest {
 
   @Mock CorrectionRepository correctionRepository;
 
+  @Mock ScoreboardEngine scoreboardEngine;
+
   @Mock Clock clock;
 
   private void setClock(final Clock clock) {
@@ -62,7 +65,7 @@ class CorrectionServiceTest {
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    correctionService = new CorrectionService(correctionRepository);
+    correctionService = new CorrectionService(correctionRepository, scoreboardEngine);
   }
 
   @Test
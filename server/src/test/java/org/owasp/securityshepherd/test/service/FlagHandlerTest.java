@@ -15,12 +15,24 @@
  */
 package org.owasp.securityshepherd.test.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -31,6 +43,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.crypto.CryptoService;
 import org.owasp.securityshepherd.exception.InvalidFlagStateException;
 import org.owasp.securityshepherd.exception.InvalidUserIdException;
+import org.owasp.securityshepherd.exception.ModuleNameNotFoundException;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.owasp.securityshepherd.module.FlagAuditLog;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.module.Module;
 import org.owasp.securityshepherd.module.ModuleService;
@@ -60,6 +75,10 @@ class FlagHandlerTest {
 
   @Mock private CryptoService cryptoService;
 
+  @Mock private FlagAuditLog flagAuditLog;
+
+  private final MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+
   @Test
   void getDynamicFlag_FlagIsStatic_ReturnsInvalidFlagStateException() {
     final Module mockModule = mock(Module.class);
@@ -161,7 +180,14 @@ class FlagHandlerTest {
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    flagHandler = new FlagHandler(moduleService, userService, configurationService, cryptoService);
+    flagHandler =
+        new FlagHandler(
+            moduleService,
+            userService,
+            configurationService,
+            cryptoService,
+            flagAuditLog,
+            metricsService);
   }
 
   @Test
@@ -195,8 +221,6 @@ class FlagHandlerTest {
     when(mockModule.isFlagStatic()).thenReturn(false);
     when(mockModule.getKey()).thenReturn(mockedModuleKey);
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
     when(configurationService.getServerKey()).thenReturn(Mono.just(mockedServerKey));
@@ -212,7 +236,7 @@ class FlagHandlerTest {
 
     verify(moduleService, atLeast(1)).findByName(mockModuleName);
     verify(mockModule, atLeast(1)).isFlagStatic();
-    verify(mockModule, times(2)).getKey();
+    verify(mockModule, times(1)).getKey();
     verify(configurationService, atLeast(1)).getServerKey();
     verify(cryptoService, atLeast(1)).hmac(mockedServerKey, mockedTotalKey);
     verify(userService, atLeast(1)).findKeyById(mockUserId);
@@ -228,8 +252,6 @@ class FlagHandlerTest {
 
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     when(mockModule.isFlagStatic()).thenReturn(true);
     when(mockModule.getStaticFlag()).thenReturn(validStaticFlag);
 
@@ -240,8 +262,46 @@ class FlagHandlerTest {
 
     verify(moduleService, times(1)).findByName(mockModuleName);
 
-    verify(mockModule, times(2)).isFlagStatic();
-    verify(mockModule, times(2)).getStaticFlag();
+    verify(mockModule, times(1)).isFlagStatic();
+    verify(mockModule, times(1)).getStaticFlag();
+    verify(flagAuditLog, times(1)).record(mockUserId, mockModuleName, true);
+  }
+
+  @Test
+  void verifyFlag_FlightRecorderEnabled_RecordsVerificationEvent() throws Exception {
+    final long mockUserId = 225;
+    final String mockModuleName = "module-id";
+    final String validStaticFlag = "validFlag";
+
+    final Module mockModule = mock(Module.class);
+
+    when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
+
+    when(mockModule.isFlagStatic()).thenReturn(true);
+    when(mockModule.getStaticFlag()).thenReturn(validStaticFlag);
+
+    final Path recordingFile = Files.createTempFile("flag-verification", ".jfr");
+    try (final Recording recording = new Recording()) {
+      recording.enable("org.owasp.securityshepherd.FlagVerification").withoutThreshold();
+      recording.start();
+
+      StepVerifier.create(flagHandler.verifyFlag(mockUserId, mockModuleName, validStaticFlag))
+          .expectNext(true)
+          .expectComplete()
+          .verify();
+
+      recording.stop();
+      recording.dump(recordingFile);
+
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+      assertThat(events).hasSize(1);
+      assertThat(events.get(0).getLong("userId")).isEqualTo(mockUserId);
+      assertThat(events.get(0).getString("moduleName")).isEqualTo(mockModuleName);
+      assertThat(events.get(0).getBoolean("flagStatic")).isTrue();
+      assertThat(events.get(0).getBoolean("valid")).isTrue();
+    } finally {
+      Files.delete(recordingFile);
+    }
   }
 
   @Test
@@ -254,8 +314,6 @@ class FlagHandlerTest {
 
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     when(mockModule.isFlagStatic()).thenReturn(true);
     when(mockModule.getStaticFlag()).thenReturn(validStaticFlag);
 
@@ -267,8 +325,8 @@ class FlagHandlerTest {
 
     verify(moduleService, times(1)).findByName(mockModuleName);
 
-    verify(mockModule, times(2)).isFlagStatic();
-    verify(mockModule, times(2)).getStaticFlag();
+    verify(mockModule, times(1)).isFlagStatic();
+    verify(mockModule, times(1)).getStaticFlag();
   }
 
   @Test
@@ -281,8 +339,6 @@ class FlagHandlerTest {
 
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     when(mockModule.isFlagStatic()).thenReturn(true);
     when(mockModule.getStaticFlag()).thenReturn(validStaticFlag);
 
@@ -294,8 +350,8 @@ class FlagHandlerTest {
 
     verify(moduleService, times(1)).findByName(mockModuleName);
 
-    verify(mockModule, times(2)).isFlagStatic();
-    verify(mockModule, times(2)).getStaticFlag();
+    verify(mockModule, times(1)).isFlagStatic();
+    verify(mockModule, times(1)).getStaticFlag();
   }
 
   @Test
@@ -328,8 +384,6 @@ class FlagHandlerTest {
     when(mockModule.getKey()).thenReturn(mockedModuleKey);
     when(userService.findKeyById(mockUserId)).thenReturn(Mono.just(mockedUserKey));
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
     when(configurationService.getServerKey()).thenReturn(Mono.just(mockedServerKey));
@@ -344,12 +398,11 @@ class FlagHandlerTest {
 
     verify(moduleService, atLeast(1)).findByName(mockModuleName);
 
-    // TODO: this is too many interactions, why 4?
-    verify(mockModule, times(4)).isFlagStatic();
-    verify(mockModule, times(2)).getKey();
+    verify(mockModule, times(2)).isFlagStatic();
+    verify(mockModule, times(1)).getKey();
     verify(configurationService, atLeast(1)).getServerKey();
-    verify(cryptoService, times(2)).hmac(mockedServerKey, mockedTotalKey);
-    verify(userService, times(2)).findKeyById(mockUserId);
+    verify(cryptoService, times(1)).hmac(mockedServerKey, mockedTotalKey);
+    verify(userService, times(1)).findKeyById(mockUserId);
   }
 
   @Test
@@ -365,8 +418,6 @@ class FlagHandlerTest {
     when(mockModule.isFlagStatic()).thenReturn(true);
     when(mockModule.getStaticFlag()).thenReturn(validStaticFlag);
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     StepVerifier.create(flagHandler.verifyFlag(mockUserId, mockModuleName, ""))
         .expectNext(false)
         .expectComplete()
@@ -374,8 +425,22 @@ class FlagHandlerTest {
 
     verify(moduleService, times(1)).findByName(mockModuleName);
 
-    verify(mockModule, times(2)).isFlagStatic();
-    verify(mockModule, times(2)).getStaticFlag();
+    verify(mockModule, times(1)).isFlagStatic();
+    verify(mockModule, times(1)).getStaticFlag();
+  }
+
+  @Test
+  void verifyFlag_ModuleNotFound_ReturnsModuleNameNotFoundException() {
+    final long mockUserId = 709;
+    final String mockModuleName = "module-id";
+
+    when(moduleService.findByName(mockModuleName)).thenReturn(Mono.empty());
+
+    StepVerifier.create(flagHandler.verifyFlag(mockUserId, mockModuleName, "flag"))
+        .expectError(ModuleNameNotFoundException.class)
+        .verify();
+
+    verify(flagAuditLog, never()).record(anyLong(), any(String.class), anyBoolean());
   }
 
   @Test
@@ -427,8 +492,6 @@ class FlagHandlerTest {
     when(mockModule.isFlagStatic()).thenReturn(false);
     when(mockModule.getKey()).thenReturn(mockedModuleKey);
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
     when(configurationService.getServerKey()).thenReturn(Mono.just(mockedServerKey));
@@ -446,7 +509,7 @@ class FlagHandlerTest {
 
     verify(moduleService, atLeast(1)).findByName(mockModuleName);
     verify(mockModule, atLeast(1)).isFlagStatic();
-    verify(mockModule, times(2)).getKey();
+    verify(mockModule, times(1)).getKey();
     verify(configurationService, atLeast(1)).getServerKey();
     verify(cryptoService, atLeast(1)).hmac(mockedServerKey, mockedTotalKey);
     verify(userService, atLeast(1)).findKeyById(mockUserId);
@@ -465,8 +528,6 @@ class FlagHandlerTest {
     when(mockModule.isFlagStatic()).thenReturn(true);
     when(mockModule.getStaticFlag()).thenReturn(validStaticFlag);
 
-    when(userService.findDisplayNameById(mockUserId)).thenReturn(Mono.just("MockUser"));
-
     StepVerifier.create(flagHandler.verifyFlag(mockUserId, mockModuleName, "invalidFlag"))
         .expectNext(false)
         .expectComplete()
@@ -474,7 +535,8 @@ class FlagHandlerTest {
 
     verify(moduleService, times(1)).findByName(mockModuleName);
 
-    verify(mockModule, times(2)).isFlagStatic();
-    verify(mockModule, times(2)).getStaticFlag();
+    verify(mockModule, times(1)).isFlagStatic();
+    verify(mockModule, times(1)).getStaticFlag();
+    verify(flagAuditLog, times(1)).record(mockUserId, mockModuleName, false);
   }
 }
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@DisplayName("MetricsService unit test")
+class MetricsServiceTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private MetricsService metricsService;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private long timerCount(final String outcome, final String exception) {
+    return meterRegistry
+        .timer("test.timer", "tag", "value", "outcome", outcome, "exception", exception)
+        .count();
+  }
+
+  @Test
+  void time_MonoSucceeds_RecordsSuccess() {
+    StepVerifier.create(metricsService.time("test.timer", Mono.just(1), "tag", "value"))
+        .expectNext(1)
+        .expectComplete()
+        .verify();
+
+    assertThat(timerCount("success", "none")).isEqualTo(1);
+  }
+
+  @Test
+  void time_MonoFails_RecordsErrorAndException() {
+    StepVerifier.create(
+            metricsService.time(
+                "test.timer", Mono.error(new IllegalArgumentException()), "tag", "value"))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    assertThat(timerCount("error", "IllegalArgumentException")).isEqualTo(1);
+  }
+
+  @Test
+  void time_FluxCancelled_RecordsCancellation() {
+    StepVerifier.create(metricsService.time("test.timer", Flux.range(0, 10), "tag", "value"))
+        .expectNext(0)
+        .thenCancel()
+        .verify();
+
+    assertThat(timerCount("cancelled", "none")).isEqualTo(1);
+  }
+
+  @Test
+  void time_MonoSubscribedTwice_RecordsTwice() {
+    final Mono<Integer> timedMono = metricsService.time("test.timer", Mono.just(1), "tag", "value");
+
+    timedMono.block();
+    timedMono.block();
+
+    assertThat(timerCount("success", "none")).isEqualTo(2);
+  }
+
+  @Test
+  void increment_CalledTwice_CountsTwo() {
+    metricsService.increment("test.counter", "tag", "value");
+    metricsService.increment("test.counter", "tag", "value");
+
+    assertThat(meterRegistry.counter("test.counter", "tag", "value").count()).isEqualTo(2);
+  }
+
+  @Test
+  void gauge_ValueChanges_ReadsCurrentValue() {
+    final AtomicLong value = new AtomicLong(1);
+
+    metricsService.gauge("test.gauge", value, AtomicLong::get, "tag", "value");
+    value.set(3);
+
+    assertThat(meterRegistry.get("test.gauge").tag("tag", "value").gauge().value()).isEqualTo(3);
+  }
+
+  @Test
+  void count_CountIncreases_ReadsCurrentCount() {
+    final AtomicLong count = new AtomicLong();
+
+    metricsService.count("test.count", count, AtomicLong::get, "tag", "value");
+    count.addAndGet(2);
+
+    assertThat(meterRegistry.get("test.count").tag("tag", "value").functionCounter().count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  void timer_Recorded_CountsRecording() {
+    metricsService.timer("test.timer", "tag", "value").record(5, TimeUnit.MILLISECONDS);
+
+    final Timer timer = meterRegistry.get("test.timer").tag("tag", "value").timer();
+    assertThat(timer.count()).isEqualTo(1);
+    assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(5);
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    meterRegistry = new SimpleMeterRegistry();
+    metricsService = new MetricsService(meterRegistry);
+  }
+}
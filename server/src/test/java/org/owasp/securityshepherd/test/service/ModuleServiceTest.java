@@ -22,6 +22,7 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -33,6 +34,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.crypto.KeyService;
 import org.owasp.securityshepherd.exception.InvalidFlagException;
 import org.owasp.securityshepherd.module.Module;
+import org.owasp.securityshepherd.module.ModuleRegistry;
 import org.owasp.securityshepherd.module.ModuleRepository;
 import org.owasp.securityshepherd.module.ModuleService;
 import reactor.core.publisher.Flux;
@@ -56,30 +58,46 @@ class ModuleServiceTest {
 
   @Mock private KeyService keyService;
 
+  @Mock private ModuleRegistry moduleRegistry;
+
   @Test
   void count_NoArgument_ReturnsCount() {
     final long mockedModuleCount = 75L;
 
-    when(moduleRepository.count()).thenReturn(Mono.just(mockedModuleCount));
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.count()).thenReturn(mockedModuleCount);
 
     StepVerifier.create(moduleService.count())
         .expectNext(mockedModuleCount)
         .expectComplete()
         .verify();
-    verify(moduleRepository).count();
+    verify(moduleRepository, never()).count();
+  }
+
+  @Test
+  void count_RegistryNotLoaded_LoadsModulesFromRepository() {
+    final Module mockModule1 = mock(Module.class);
+    final Module mockModule2 = mock(Module.class);
+
+    when(moduleRegistry.isLoaded()).thenReturn(false);
+    when(moduleRepository.findAll()).thenReturn(Flux.just(mockModule1, mockModule2));
+    when(moduleRegistry.count()).thenReturn(2L);
+
+    StepVerifier.create(moduleService.count()).expectNext(2L).expectComplete().verify();
+    verify(moduleRegistry).load(Arrays.asList(mockModule1, mockModule2));
   }
 
   @Test
   void create_NullModuleName_ThrowsException() {
     final String moduleName = null;
 
-    when(moduleRepository.findByName(moduleName)).thenReturn(Mono.empty());
+    when(moduleRegistry.isLoaded()).thenReturn(true);
 
     StepVerifier.create(moduleService.create(moduleName))
         .expectError(NullPointerException.class)
         .verify();
 
-    verify(moduleRepository).findByName(null);
+    verify(moduleRegistry).findByName(null);
   }
 
   @Test
@@ -89,7 +107,7 @@ class ModuleServiceTest {
     final byte[] randomBytes = {120, 56, 111};
     when(keyService.generateRandomBytes(16)).thenReturn(randomBytes);
 
-    when(moduleRepository.findByName(moduleName)).thenReturn(Mono.empty());
+    when(moduleRegistry.isLoaded()).thenReturn(true);
 
     when(moduleRepository.save(any(Module.class)))
         .thenAnswer(user -> Mono.just(user.getArgument(0, Module.class)));
@@ -104,6 +122,7 @@ class ModuleServiceTest {
     verify(moduleRepository).save(argument.capture());
     verify(moduleRepository).save(any(Module.class));
     assertThat(argument.getValue().getName()).isEqualTo(moduleName);
+    verify(moduleRegistry).put(argument.getValue());
   }
 
   @Test
@@ -111,7 +130,8 @@ class ModuleServiceTest {
     final String moduleName = "test-module";
     final Module mockModule = mock(Module.class);
 
-    when(moduleRepository.findByName(moduleName)).thenReturn(Mono.just(mockModule));
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findByName(moduleName)).thenReturn(mockModule);
 
     StepVerifier.create(moduleService.create(moduleName))
         .assertNext(module -> assertThat(module).isEqualTo(mockModule))
@@ -125,7 +145,8 @@ class ModuleServiceTest {
     final Module mockModule2 = mock(Module.class);
     final Module mockModule3 = mock(Module.class);
 
-    when(moduleRepository.findAll()).thenReturn(Flux.just(mockModule1, mockModule2, mockModule3));
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findAll()).thenReturn(Arrays.asList(mockModule1, mockModule2, mockModule3));
 
     StepVerifier.create(moduleService.findAll())
         .expectNext(mockModule1)
@@ -134,21 +155,39 @@ class ModuleServiceTest {
         .expectComplete()
         .verify();
 
-    verify(moduleRepository).findAll();
+    verify(moduleRepository, never()).findAll();
+  }
+
+  @Test
+  void findAll_RegistryNotLoaded_LoadsModulesFromRepository() {
+    final Module mockModule1 = mock(Module.class);
+    final Module mockModule2 = mock(Module.class);
+
+    when(moduleRegistry.isLoaded()).thenReturn(false);
+    when(moduleRepository.findAll()).thenReturn(Flux.just(mockModule1, mockModule2));
+    when(moduleRegistry.findAll()).thenReturn(Arrays.asList(mockModule1, mockModule2));
+
+    StepVerifier.create(moduleService.findAll())
+        .expectNext(mockModule1)
+        .expectNext(mockModule2)
+        .expectComplete()
+        .verify();
+
+    verify(moduleRegistry).load(Arrays.asList(mockModule1, mockModule2));
   }
 
   @Test
   void findAll_NoModulesExist_ReturnsEmpty() {
-    when(moduleRepository.findAll()).thenReturn(Flux.empty());
+    when(moduleRegistry.isLoaded()).thenReturn(true);
     StepVerifier.create(moduleService.findAll()).expectComplete().verify();
-    verify(moduleRepository).findAll();
+    verify(moduleRegistry).findAll();
   }
 
   @Test
   void findAllOpen_NoModulesExist_ReturnsEmpty() {
-    when(moduleRepository.findAllOpen()).thenReturn(Flux.empty());
+    when(moduleRegistry.isLoaded()).thenReturn(true);
     StepVerifier.create(moduleService.findAllOpen()).expectComplete().verify();
-    verify(moduleRepository).findAllOpen();
+    verify(moduleRepository, never()).findAllOpen();
   }
 
   @Test
@@ -157,38 +196,59 @@ class ModuleServiceTest {
     final Module mockModule2 = mock(Module.class);
     final Module mockModule3 = mock(Module.class);
 
-    when(moduleRepository.findAllOpen())
-        .thenReturn(Flux.just(mockModule1, mockModule2, mockModule3));
+    when(mockModule1.isOpen()).thenReturn(true);
+    when(mockModule2.isOpen()).thenReturn(false);
+    when(mockModule3.isOpen()).thenReturn(true);
+
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findAll()).thenReturn(Arrays.asList(mockModule1, mockModule2, mockModule3));
 
     StepVerifier.create(moduleService.findAllOpen())
         .expectNext(mockModule1)
-        .expectNext(mockModule2)
         .expectNext(mockModule3)
         .expectComplete()
         .verify();
 
-    verify(moduleRepository).findAllOpen();
+    verify(moduleRepository, never()).findAllOpen();
+  }
+
+  @Test
+  void findByName_ModuleNameExists_ReturnsModuleWithoutQuery() {
+    final Module mockModule = mock(Module.class);
+    final String mockModuleName = "mock-module";
+
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findByName(mockModuleName)).thenReturn(mockModule);
+    StepVerifier.create(moduleService.findByName(mockModuleName))
+        .expectNext(mockModule)
+        .expectComplete()
+        .verify();
+    verify(moduleRepository, never()).findByName(any(String.class));
+    verify(moduleRepository, never()).findAll();
   }
 
   @Test
-  void findByName_ModuleNameExists_ReturnsInvalidModuleNameException() {
+  void findByName_RegistryNotLoaded_LoadsModulesFromRepository() {
     final Module mockModule = mock(Module.class);
     final String mockModuleName = "mock-module";
 
-    when(moduleRepository.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
+    when(moduleRegistry.isLoaded()).thenReturn(false);
+    when(moduleRepository.findAll()).thenReturn(Flux.just(mockModule));
+    when(moduleRegistry.findByName(mockModuleName)).thenReturn(mockModule);
     StepVerifier.create(moduleService.findByName(mockModuleName))
         .expectNext(mockModule)
         .expectComplete()
         .verify();
-    verify(moduleRepository).findByName(mockModuleName);
+    verify(moduleRegistry).load(Arrays.asList(mockModule));
   }
 
   @Test
   void findById_NonExistentModuleName_ReturnsEmpty() {
     final String mockModuleName = "mock-module";
-    when(moduleRepository.findByName(mockModuleName)).thenReturn(Mono.empty());
+    when(moduleRegistry.isLoaded()).thenReturn(true);
     StepVerifier.create(moduleService.findByName(mockModuleName)).expectComplete().verify();
-    verify(moduleRepository).findByName(mockModuleName);
+    verify(moduleRegistry).findByName(mockModuleName);
+    verify(moduleRepository, never()).findByName(any(String.class));
   }
 
   @Test
@@ -200,8 +260,8 @@ class ModuleServiceTest {
 
     final String mockModuleName = "id";
 
-    when(moduleRepository.findByName(mockModuleName))
-        .thenReturn(Mono.just(mockModuleWithStaticFlag));
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findByName(mockModuleName)).thenReturn(mockModuleWithStaticFlag);
 
     when(mockModuleWithStaticFlag.withFlagStatic(false)).thenReturn(mockModuleWithDynamicFlag);
 
@@ -233,8 +293,8 @@ class ModuleServiceTest {
 
     final String mockModuleName = "id";
 
-    when(moduleRepository.findByName(mockModuleName))
-        .thenReturn(Mono.just(mockModuleWithStaticFlag));
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findByName(mockModuleName)).thenReturn(mockModuleWithStaticFlag);
 
     when(mockModuleWithStaticFlag.withFlagStatic(false)).thenReturn(mockModuleWithDynamicFlag);
 
@@ -253,6 +313,7 @@ class ModuleServiceTest {
 
     verify(mockModuleWithStaticFlag).withFlagStatic(false);
     verify(moduleRepository).save(any(Module.class));
+    verify(moduleRegistry).put(mockModuleWithDynamicFlag);
   }
 
   @Test
@@ -282,7 +343,8 @@ class ModuleServiceTest {
 
     final String mockModuleName = "id";
 
-    when(moduleRepository.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
+    when(moduleRegistry.isLoaded()).thenReturn(true);
+    when(moduleRegistry.findByName(mockModuleName)).thenReturn(mockModule);
     when(mockModule.withFlagStatic(true)).thenReturn(mockModuleWithStaticFlag);
     when(mockModuleWithStaticFlag.withStaticFlag(staticFlag))
         .thenReturn(mockModuleWithStaticFlagEnabled);
@@ -303,17 +365,18 @@ class ModuleServiceTest {
         .verify();
 
     ArgumentCaptor<String> findArgument = ArgumentCaptor.forClass(String.class);
-    verify(moduleRepository).findByName(findArgument.capture());
+    verify(moduleRegistry).findByName(findArgument.capture());
     assertThat(findArgument.getValue()).isEqualTo(mockModuleName);
 
     ArgumentCaptor<Module> saveArgument = ArgumentCaptor.forClass(Module.class);
     verify(moduleRepository).save(saveArgument.capture());
     assertThat(saveArgument.getValue().getStaticFlag()).isEqualTo(staticFlag);
+    verify(moduleRegistry).put(saveArgument.getValue());
   }
 
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    moduleService = new ModuleService(moduleRepository, keyService);
+    moduleService = new ModuleService(moduleRepository, keyService, moduleRegistry);
   }
 }
@@ -21,9 +21,8 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -38,7 +37,8 @@ import org.owasp.securityshepherd.module.ModuleListItem;
 import org.owasp.securityshepherd.module.ModuleListItem.ModuleListItemBuilder;
 import org.owasp.securityshepherd.module.ModuleService;
 import org.owasp.securityshepherd.module.ModuleSolutions;
-import org.owasp.securityshepherd.scoring.Submission;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex.SolvedModules;
 import org.owasp.securityshepherd.scoring.SubmissionService;
 import org.owasp.securityshepherd.test.util.TestUtils;
 import reactor.core.publisher.Flux;
@@ -108,8 +108,7 @@ class ModuleSolutionsTest {
     verify(mockModule, never()).getId();
     verify(mockModule, times(2)).isOpen();
 
-    verify(submissionService, never())
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
+    verify(submissionService, never()).findSolvedModulesByUserId(mockUserId);
     verify(moduleService, times(1)).findByName(mockModuleName);
   }
 
@@ -123,10 +122,9 @@ class ModuleSolutionsTest {
     when(mockModule.getName()).thenReturn(mockModuleName);
     when(mockModule.isOpen()).thenReturn(true);
 
-    final Submission mockedSubmission = mock(Submission.class);
-
-    when(submissionService.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.just(mockedSubmission));
+    when(submissionService.findSolvedModulesByUserId(mockUserId))
+        .thenReturn(
+            Mono.just(new SolvedModuleIndex().load(mockUserId, Arrays.asList(mockModuleName))));
 
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
@@ -143,8 +141,7 @@ class ModuleSolutionsTest {
 
     verify(mockModule, times(2)).isOpen();
 
-    verify(submissionService, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
+    verify(submissionService, times(1)).findSolvedModulesByUserId(mockUserId);
     verify(moduleService, times(1)).findByName(mockModuleName);
   }
 
@@ -158,8 +155,8 @@ class ModuleSolutionsTest {
     when(mockModule.getName()).thenReturn(mockModuleName);
     when(mockModule.isOpen()).thenReturn(true);
 
-    when(submissionService.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.empty());
+    when(submissionService.findSolvedModulesByUserId(mockUserId))
+        .thenReturn(Mono.just(new SolvedModuleIndex().load(mockUserId, Collections.emptyList())));
 
     when(moduleService.findByName(mockModuleName)).thenReturn(Mono.just(mockModule));
 
@@ -177,8 +174,7 @@ class ModuleSolutionsTest {
     verify(mockModule, times(2)).getName();
     verify(mockModule, times(2)).isOpen();
 
-    verify(submissionService, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
+    verify(submissionService, times(1)).findSolvedModulesByUserId(mockUserId);
     verify(moduleService, times(1)).findByName(mockModuleName);
   }
 
@@ -206,13 +202,13 @@ class ModuleSolutionsTest {
   void findOpenModulesByUserIdWithSolutionStatus_NoModulesOrSubmissions_ReturnsEmpty() {
     final long mockUserId = 1000L;
 
-    when(submissionService.findAllValidModuleNamesByUserId(mockUserId)).thenReturn(Mono.empty());
+    when(submissionService.findSolvedModulesByUserId(mockUserId)).thenReturn(Mono.empty());
 
     StepVerifier.create(moduleSolutions.findOpenModulesByUserIdWithSolutionStatus(mockUserId))
         .expectComplete()
         .verify();
 
-    verify(submissionService, times(1)).findAllValidModuleNamesByUserId(mockUserId);
+    verify(submissionService, times(1)).findSolvedModulesByUserId(mockUserId);
     verify(moduleService, never()).findAllOpen();
   }
 
@@ -233,12 +229,12 @@ class ModuleSolutionsTest {
     when(mockModule1.getName()).thenReturn(mockModule1Name);
     when(mockModule2.getName()).thenReturn(mockModule2Name);
 
-    final Mono<List<String>> mockedValidSolutionsList =
-        Mono.just(
-            new ArrayList<String>(Arrays.asList(mockModule1Name, mockModule2Name, mockModule3Id)));
+    final SolvedModules solvedModules =
+        new SolvedModuleIndex()
+            .load(mockUserId, Arrays.asList(mockModule1Name, mockModule2Name, mockModule3Id));
 
-    when(submissionService.findAllValidModuleNamesByUserId(mockUserId))
-        .thenReturn(mockedValidSolutionsList);
+    when(submissionService.findSolvedModulesByUserId(mockUserId))
+        .thenReturn(Mono.just(solvedModules));
 
     when(moduleService.findAllOpen()).thenReturn(Flux.just(mockModule1, mockModule2));
 
@@ -272,7 +268,7 @@ class ModuleSolutionsTest {
 
     verify(mockModule4, never()).isOpen();
 
-    verify(submissionService, times(1)).findAllValidModuleNamesByUserId(mockUserId);
+    verify(submissionService, times(1)).findSolvedModulesByUserId(mockUserId);
     verify(moduleService, times(1)).findAllOpen();
   }
 
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.authentication.PasswordHasher;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+
+@DisplayName("PasswordHasher unit test")
+class PasswordHasherTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private PasswordHasher passwordHasher;
+
+  @AfterEach
+  private void tearDown() {
+    passwordHasher.dispose();
+  }
+
+  @Test
+  void matches_EncodedPassword_ReturnsTrue() {
+    passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), 1, 1);
+
+    final String hashedPassword = passwordHasher.encode("password").block();
+
+    StepVerifier.create(passwordHasher.matches("password", hashedPassword))
+        .expectNext(true)
+        .expectComplete()
+        .verify();
+    StepVerifier.create(passwordHasher.matches("wrong", hashedPassword))
+        .expectNext(false)
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void needsUpgrade_LowerCost_ReturnsTrue() {
+    passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), 1, 1);
+
+    assertThat(passwordHasher.needsUpgrade(new BCryptPasswordEncoder(4).encode("password")))
+        .isTrue();
+    assertThat(passwordHasher.needsUpgrade(new BCryptPasswordEncoder(5).encode("password")))
+        .isFalse();
+  }
+
+  @Test
+  void encode_QueueFull_ReturnsPasswordHashingRejectedException() throws Exception {
+    final CountDownLatch hashingStarted = new CountDownLatch(1);
+    final CountDownLatch releaseHashing = new CountDownLatch(1);
+    final PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+    when(slowEncoder.encode("password"))
+        .thenAnswer(
+            invocation -> {
+              hashingStarted.countDown();
+              releaseHashing.await();
+              return "hash";
+            });
+
+    // One running and one queued hash fill the scheduler
+    passwordHasher = new PasswordHasher(slowEncoder, 1, 1);
+    final Disposable running = passwordHasher.encode("password").subscribe();
+    hashingStarted.await();
+    final Disposable queued = passwordHasher.encode("password").subscribe();
+
+    StepVerifier.create(passwordHasher.encode("password"))
+        .expectError(PasswordHashingRejectedException.class)
+        .verify();
+
+    releaseHashing.countDown();
+    running.dispose();
+    queued.dispose();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.database.QueryCounter;
+import org.owasp.securityshepherd.database.QueryCountingConnectionFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("QueryCountingConnectionFactory unit test")
+class QueryCountingConnectionFactoryTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private static final String QUERY = "SELECT 1";
+
+  private QueryCountingConnectionFactory queryCountingConnectionFactory;
+
+  @Mock private ConnectionFactory connectionFactory;
+
+  @Mock private Connection connection;
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    queryCountingConnectionFactory = new QueryCountingConnectionFactory(connectionFactory);
+  }
+
+  private void setUpQuery() {
+    final Statement mockStatement = mock(Statement.class);
+
+    doReturn(Mono.just(connection)).when(connectionFactory).create();
+    when(connection.createStatement(QUERY)).thenReturn(mockStatement);
+    doReturn(Flux.just(mock(Result.class))).when(mockStatement).execute();
+  }
+
+  private Mono<Void> executeQuery() {
+    return Mono.from(queryCountingConnectionFactory.create())
+        .flatMapMany(proxyConnection -> proxyConnection.createStatement(QUERY).execute())
+        .then();
+  }
+
+  @Test
+  void create_QueryCounterInContext_CountsQueries() {
+    setUpQuery();
+    final QueryCounter queryCounter = new QueryCounter();
+
+    StepVerifier.create(queryCounter.countQueries(executeQuery().then(executeQuery())))
+        .expectComplete()
+        .verify();
+
+    assertThat(queryCounter.getQueryCount()).isEqualTo(2);
+    assertThat(queryCounter.getQueryTime().isNegative()).isFalse();
+  }
+
+  @Test
+  void create_QueryResultNotCompleted_CountsQuery() {
+    final Statement mockStatement = mock(Statement.class);
+    doReturn(Mono.just(connection)).when(connectionFactory).create();
+    when(connection.createStatement(QUERY)).thenReturn(mockStatement);
+    doReturn(Flux.never()).when(mockStatement).execute();
+    final QueryCounter queryCounter = new QueryCounter();
+
+    // The response can be committed before the result of a query completes
+    final Disposable query = queryCounter.countQueries(executeQuery()).subscribe();
+
+    assertThat(queryCounter.getQueryCount()).isEqualTo(1);
+    query.dispose();
+  }
+
+  @Test
+  void create_ConnectionReusedWithoutQueryCounter_DoesNotCount() {
+    setUpQuery();
+    final QueryCounter queryCounter = new QueryCounter();
+
+    StepVerifier.create(queryCounter.countQueries(executeQuery())).expectComplete().verify();
+
+    // The same connection comes back from the pool outside of an exchange
+    StepVerifier.create(executeQuery()).expectComplete().verify();
+
+    assertThat(queryCounter.getQueryCount()).isEqualTo(1);
+  }
+
+  @Test
+  void unwrap_ReturnsConnectionFactory() {
+    assertThat(queryCountingConnectionFactory.unwrap()).isSameAs(connectionFactory);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.database.ReplicaRouter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReplicaRouter unit test")
+class ReplicaRouterTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private static final String LAG_QUERY = "SHOW SLAVE STATUS";
+
+  private ReplicaRouter replicaRouter;
+
+  private ReplicaRouter createReplicaRouter(final List<ConnectionFactory> replicas) {
+    return new ReplicaRouter(
+        replicas, 10, Duration.ofSeconds(30), Duration.ofSeconds(5), LAG_QUERY);
+  }
+
+  private Flux<Object> selectReadOnlyReplica() {
+    return replicaRouter.readOnly(Flux.from(replicaRouter.selectReplica()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private ConnectionFactory replicaWithLag(final Long lag) {
+    final ConnectionFactory mockReplica = mock(ConnectionFactory.class);
+    final Connection mockConnection = mock(Connection.class);
+    final Statement mockStatement = mock(Statement.class);
+    final Result mockResult = mock(Result.class);
+    final Row mockRow = mock(Row.class);
+
+    doReturn(Mono.just(mockConnection)).when(mockReplica).create();
+    when(mockConnection.createStatement(LAG_QUERY)).thenReturn(mockStatement);
+    doReturn(Mono.just(mockResult)).when(mockStatement).execute();
+    when(mockResult.map(any()))
+        .thenAnswer(
+            args ->
+                Mono.just(
+                    args.getArgument(0, BiFunction.class).apply(mockRow, mock(RowMetadata.class))));
+    when(mockRow.get("Seconds_Behind_Master", Long.class)).thenReturn(lag);
+    doReturn(Mono.empty()).when(mockConnection).close();
+
+    return mockReplica;
+  }
+
+  @Test
+  void selectReplica_NotReadOnly_ReturnsEmpty() {
+    replicaRouter = createReplicaRouter(Arrays.asList(replicaWithLag(0L)));
+    StepVerifier.create(replicaRouter.checkReplicas()).expectComplete().verify();
+
+    StepVerifier.create(replicaRouter.selectReplica()).expectComplete().verify();
+  }
+
+  @Test
+  void selectReplica_NoReplicas_ReturnsEmpty() {
+    replicaRouter = createReplicaRouter(Collections.emptyList());
+
+    StepVerifier.create(selectReadOnlyReplica()).expectComplete().verify();
+  }
+
+  @Test
+  void selectReplica_ReplicaNotChecked_ReturnsEmpty() {
+    replicaRouter = createReplicaRouter(Arrays.asList(mock(ConnectionFactory.class)));
+
+    StepVerifier.create(selectReadOnlyReplica()).expectComplete().verify();
+  }
+
+  @Test
+  void selectReplica_ReplicasWithinLag_ReturnsReplicasInTurn() {
+    replicaRouter = createReplicaRouter(Arrays.asList(replicaWithLag(2L), replicaWithLag(10L)));
+    StepVerifier.create(replicaRouter.checkReplicas()).expectComplete().verify();
+
+    StepVerifier.create(selectReadOnlyReplica()).expectNext(0).expectComplete().verify();
+    StepVerifier.create(selectReadOnlyReplica()).expectNext(1).expectComplete().verify();
+    StepVerifier.create(selectReadOnlyReplica()).expectNext(0).expectComplete().verify();
+  }
+
+  @Test
+  void selectReplica_ReplicaLagging_SkipsReplica() {
+    replicaRouter = createReplicaRouter(Arrays.asList(replicaWithLag(11L), replicaWithLag(0L)));
+    StepVerifier.create(replicaRouter.checkReplicas()).expectComplete().verify();
+
+    StepVerifier.create(selectReadOnlyReplica()).expectNext(1).expectComplete().verify();
+    StepVerifier.create(selectReadOnlyReplica()).expectNext(1).expectComplete().verify();
+  }
+
+  @Test
+  void selectReplica_ReplicationStopped_ReturnsEmpty() {
+    replicaRouter = createReplicaRouter(Arrays.asList(replicaWithLag(null)));
+    StepVerifier.create(replicaRouter.checkReplicas()).expectComplete().verify();
+
+    StepVerifier.create(selectReadOnlyReplica()).expectComplete().verify();
+  }
+
+  @Test
+  void selectReplica_ReplicaUnreachable_ReturnsEmpty() {
+    final ConnectionFactory mockReplica = mock(ConnectionFactory.class);
+    doReturn(Mono.error(new RuntimeException())).when(mockReplica).create();
+
+    replicaRouter = createReplicaRouter(Arrays.asList(mockReplica));
+    StepVerifier.create(replicaRouter.checkReplicas()).expectComplete().verify();
+
+    StepVerifier.create(selectReadOnlyReplica()).expectComplete().verify();
+  }
+
+  @Test
+  void readOnlyForUser_UserWroteRecently_ReadsFromPrimary() {
+    replicaRouter = createReplicaRouter(Arrays.asList(replicaWithLag(0L)));
+    StepVerifier.create(replicaRouter.checkReplicas()).expectComplete().verify();
+
+    final Flux<Object> replicaSelection = Flux.from(replicaRouter.selectReplica());
+
+    StepVerifier.create(replicaRouter.readOnlyForUser(25L, replicaSelection))
+        .expectNext(0)
+        .expectComplete()
+        .verify();
+
+    replicaRouter.recordWrite(25L);
+
+    StepVerifier.create(replicaRouter.readOnlyForUser(25L, replicaSelection))
+        .expectComplete()
+        .verify();
+    // Other users still read from the replica
+    StepVerifier.create(replicaRouter.readOnlyForUser(26L, replicaSelection))
+        .expectNext(0)
+        .expectComplete()
+        .verify();
+  }
+}
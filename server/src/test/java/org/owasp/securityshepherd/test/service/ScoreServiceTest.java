@@ -17,7 +17,9 @@ package org.owasp.securityshepherd.test.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -31,8 +33,10 @@ import org.owasp.securityshepherd.exception.InvalidRankException;
 import org.owasp.securityshepherd.module.ModulePointRepository;
 import org.owasp.securityshepherd.scoring.ModulePoint;
 import org.owasp.securityshepherd.scoring.ScoreService;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
 import org.owasp.securityshepherd.scoring.ScoreboardEntry;
-import org.owasp.securityshepherd.scoring.ScoreboardRepository;
+import org.owasp.securityshepherd.scoring.ScoreboardUpdate;
+import org.owasp.securityshepherd.scoring.SubmissionRanker;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
@@ -52,12 +56,14 @@ class ScoreServiceTest {
 
   @Mock ModulePointRepository modulePointRepository;
 
-  @Mock ScoreboardRepository scoreboardRepository;
+  @Mock ScoreboardEngine scoreboardEngine;
+
+  @Mock SubmissionRanker submissionRanker;
 
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    scoreService = new ScoreService(modulePointRepository, scoreboardRepository);
+    scoreService = new ScoreService(modulePointRepository, scoreboardEngine, submissionRanker);
   }
 
   @Test
@@ -68,6 +74,8 @@ class ScoreServiceTest {
 
     when(modulePointRepository.save(any(ModulePoint.class)))
         .thenAnswer(args -> Mono.just(args.getArgument(0, ModulePoint.class)));
+    when(submissionRanker.rankModuleAfter(eq(mockModuleName), any()))
+        .thenAnswer(args -> args.getArgument(1));
 
     StepVerifier.create(scoreService.setModuleScore(mockModuleName, rank, points))
         .assertNext(
@@ -78,6 +86,8 @@ class ScoreServiceTest {
             })
         .expectComplete()
         .verify();
+
+    verify(scoreboardEngine).setModulePoint(any(ModulePoint.class));
   }
 
   @Test
@@ -90,12 +100,12 @@ class ScoreServiceTest {
   }
 
   @Test
-  void getScoreboard_NoArguments_CallsRepository() throws Exception {
+  void getScoreboard_NoArguments_CallsScoreboardEngine() throws Exception {
     final ScoreboardEntry mockScoreboardEntry1 = mock(ScoreboardEntry.class);
     final ScoreboardEntry mockScoreboardEntry2 = mock(ScoreboardEntry.class);
     final ScoreboardEntry mockScoreboardEntry3 = mock(ScoreboardEntry.class);
 
-    when(scoreboardRepository.findAll())
+    when(scoreboardEngine.getScoreboard())
         .thenReturn(Flux.just(mockScoreboardEntry1, mockScoreboardEntry2, mockScoreboardEntry3));
 
     StepVerifier.create(scoreService.getScoreboard())
@@ -105,4 +115,19 @@ class ScoreServiceTest {
         .expectComplete()
         .verify();
   }
+
+  @Test
+  void getScoreboardUpdates_NoArguments_CallsScoreboardEngine() throws Exception {
+    final ScoreboardUpdate mockScoreboardUpdate1 = mock(ScoreboardUpdate.class);
+    final ScoreboardUpdate mockScoreboardUpdate2 = mock(ScoreboardUpdate.class);
+
+    when(scoreboardEngine.getUpdates())
+        .thenReturn(Flux.just(mockScoreboardUpdate1, mockScoreboardUpdate2));
+
+    StepVerifier.create(scoreService.getScoreboardUpdates())
+        .expectNext(mockScoreboardUpdate1)
+        .expectNext(mockScoreboardUpdate2)
+        .expectComplete()
+        .verify();
+  }
 }
@@ -0,0 +1,300 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.module.ModulePointRepository;
+import org.owasp.securityshepherd.scoring.Correction;
+import org.owasp.securityshepherd.scoring.CorrectionRepository;
+import org.owasp.securityshepherd.scoring.ModulePoint;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
+import org.owasp.securityshepherd.scoring.ScoreboardEntry;
+import org.owasp.securityshepherd.scoring.ScoreboardUpdate;
+import org.owasp.securityshepherd.scoring.Submission;
+import org.owasp.securityshepherd.scoring.SubmissionRepository;
+import org.owasp.securityshepherd.user.User;
+import org.owasp.securityshepherd.user.UserRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ScoreboardEngine unit test")
+class ScoreboardEngineTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2000, 1, 1, 10, 0);
+
+  private ScoreboardEngine scoreboardEngine;
+
+  @Mock UserRepository userRepository;
+
+  @Mock SubmissionRepository submissionRepository;
+
+  @Mock CorrectionRepository correctionRepository;
+
+  @Mock ModulePointRepository modulePointRepository;
+
+  private static User user(final long userId) {
+    return User.builder().id(userId).displayName("User" + userId).key(new byte[] {1}).build();
+  }
+
+  private static ModulePoint modulePoint(
+      final String moduleName, final int rank, final int points) {
+    return ModulePoint.builder().moduleName(moduleName).rank(rank).points(points).build();
+  }
+
+  private static Submission solve(
+      final long submissionId, final long userId, final String moduleName, final int day) {
+    return Submission.builder()
+        .id(submissionId)
+        .userId(userId)
+        .moduleName(moduleName)
+        .time(START_TIME.plusDays(day))
+        .isValid(true)
+        .build();
+  }
+
+  private static ScoreboardEntry entry(
+      final long rank,
+      final long userId,
+      final long score,
+      final long gold,
+      final long silver,
+      final long bronze) {
+    return ScoreboardEntry.builder()
+        .rank(rank)
+        .userId(userId)
+        .score(score)
+        .goldMedals(gold)
+        .silverMedals(silver)
+        .bronzeMedals(bronze)
+        .build();
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    scoreboardEngine =
+        new ScoreboardEngine(
+            userRepository, submissionRepository, correctionRepository, modulePointRepository);
+  }
+
+  @Test
+  void getScoreboard_SubmissionsAndCorrections_ReturnsRankedScoreboard() {
+    when(userRepository.findAll())
+        .thenReturn(
+            Flux.just(user(1), user(2), user(3), user(4), user(5), user(6), user(7), user(8)));
+
+    when(modulePointRepository.findAll())
+        .thenReturn(
+            Flux.just(
+                modulePoint("id1", 0, 100),
+                modulePoint("id1", 1, 50),
+                modulePoint("id1", 2, 40),
+                modulePoint("id1", 3, 30),
+                modulePoint("id1", 4, 20),
+                modulePoint("id2", 0, 50),
+                modulePoint("id2", 1, 30),
+                modulePoint("id2", 2, 10),
+                modulePoint("id3", 0, 1)));
+
+    // Users 4 and 8 submitted wrong flags, users 1 and 5 solved at the same time
+    final int[] days = {3, 4, 1, -1, 3, 1, 0, -1};
+    final Flux<Submission> submissions =
+        Flux.range(0, days.length)
+            .filter(i -> days[i] >= 0)
+            .flatMapIterable(
+                i ->
+                    Arrays.asList(
+                        solve(3L * i + 1, i + 1L, "id1", days[i]),
+                        solve(3L * i + 2, i + 1L, "id2", days[i]),
+                        solve(3L * i + 3, i + 1L, "id3", days[i])));
+
+    when(submissionRepository.findAllValid()).thenReturn(submissions);
+
+    when(correctionRepository.findAll())
+        .thenReturn(
+            Flux.just(
+                Correction.builder().id(1L).userId(3L).amount(-1000L).time(START_TIME).build(),
+                Correction.builder().id(2L).userId(2L).amount(100L).time(START_TIME).build()));
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 2, 251, 0, 0, 0))
+        .expectNext(entry(2, 7, 231, 3, 0, 0))
+        .expectNext(entry(3, 6, 201, 0, 3, 0))
+        .expectNext(entry(4, 1, 171, 0, 0, 0))
+        .expectNext(entry(4, 5, 171, 0, 0, 0))
+        .expectNext(entry(6, 4, 0, 0, 0, 0))
+        .expectNext(entry(6, 8, 0, 0, 0, 0))
+        .expectNext(entry(8, 3, -799, 0, 3, 0))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void getScoreboard_CalledTwice_LoadsOnce() {
+    when(userRepository.findAll()).thenReturn(Flux.just(user(1)));
+    when(modulePointRepository.findAll()).thenReturn(Flux.empty());
+    when(submissionRepository.findAllValid()).thenReturn(Flux.empty());
+    when(correctionRepository.findAll()).thenReturn(Flux.empty());
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 1, 0, 0, 0, 0))
+        .expectComplete()
+        .verify();
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 1, 0, 0, 0, 0))
+        .expectComplete()
+        .verify();
+
+    verify(userRepository, times(1)).findAll();
+    verify(submissionRepository, times(1)).findAllValid();
+  }
+
+  @Test
+  void addSubmission_AfterLoad_UpdatesScoreboard() {
+    when(userRepository.findAll()).thenReturn(Flux.just(user(1), user(2)));
+    when(modulePointRepository.findAll())
+        .thenReturn(Flux.just(modulePoint("id1", 0, 100), modulePoint("id1", 1, 10)));
+    when(submissionRepository.findAllValid()).thenReturn(Flux.just(solve(1L, 1L, "id1", 2)));
+    when(correctionRepository.findAll()).thenReturn(Flux.empty());
+
+    StepVerifier.create(scoreboardEngine.load()).expectComplete().verify();
+
+    // An earlier solve takes over the first place of the module
+    scoreboardEngine.addSubmission(solve(2L, 2L, "id1", 1));
+    // Adding the same submission twice has no effect
+    scoreboardEngine.addSubmission(solve(2L, 2L, "id1", 1));
+    // Invalid submissions do not count
+    scoreboardEngine.addSubmission(solve(3L, 1L, "id1", 0).withValid(false));
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 2, 110, 1, 0, 0))
+        .expectNext(entry(2, 1, 100, 0, 1, 0))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void addCorrection_AfterLoad_UpdatesScoreboard() {
+    when(userRepository.findAll()).thenReturn(Flux.just(user(1), user(2)));
+    when(modulePointRepository.findAll()).thenReturn(Flux.empty());
+    when(submissionRepository.findAllValid()).thenReturn(Flux.empty());
+    when(correctionRepository.findAll()).thenReturn(Flux.empty());
+
+    StepVerifier.create(scoreboardEngine.load()).expectComplete().verify();
+
+    scoreboardEngine.addCorrection(
+        Correction.builder().id(1L).userId(2L).amount(5L).time(START_TIME).build());
+    scoreboardEngine.addUser(3L);
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 2, 5, 0, 0, 0))
+        .expectNext(entry(2, 1, 0, 0, 0, 0))
+        .expectNext(entry(2, 3, 0, 0, 0, 0))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void setModulePoint_AfterLoad_RescoresExistingSolves() {
+    when(userRepository.findAll()).thenReturn(Flux.just(user(1)));
+    when(modulePointRepository.findAll()).thenReturn(Flux.empty());
+    when(submissionRepository.findAllValid()).thenReturn(Flux.just(solve(1L, 1L, "id1", 0)));
+    when(correctionRepository.findAll()).thenReturn(Flux.empty());
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 1, 0, 0, 0, 0))
+        .expectComplete()
+        .verify();
+
+    // Solves only count once the module has a base score
+    scoreboardEngine.setModulePoint(modulePoint("id1", 0, 10));
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 1, 10, 1, 0, 0))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void reset_AfterLoad_ReloadsFromRepositories() {
+    when(userRepository.findAll()).thenReturn(Flux.just(user(1))).thenReturn(Flux.just(user(2)));
+    when(modulePointRepository.findAll()).thenReturn(Flux.empty());
+    when(submissionRepository.findAllValid()).thenReturn(Flux.empty());
+    when(correctionRepository.findAll()).thenReturn(Flux.empty());
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 1, 0, 0, 0, 0))
+        .expectComplete()
+        .verify();
+
+    scoreboardEngine.reset();
+
+    StepVerifier.create(scoreboardEngine.getScoreboard())
+        .expectNext(entry(1, 2, 0, 0, 0, 0))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void getUpdates_ScoreChanges_ReturnsSnapshotAndChangedRows() {
+    when(userRepository.findAll()).thenReturn(Flux.just(user(1), user(2)));
+    when(modulePointRepository.findAll()).thenReturn(Flux.just(modulePoint("id1", 0, 100)));
+    when(submissionRepository.findAllValid()).thenReturn(Flux.empty());
+    when(correctionRepository.findAll()).thenReturn(Flux.empty());
+
+    StepVerifier.create(scoreboardEngine.getUpdates())
+        .expectNext(
+            ScoreboardUpdate.builder()
+                .isSnapshot(true)
+                .entry(entry(1, 1, 0, 0, 0, 0))
+                .entry(entry(1, 2, 0, 0, 0, 0))
+                .build())
+        .then(() -> scoreboardEngine.addSubmission(solve(1L, 2L, "id1", 0)))
+        .expectNext(
+            ScoreboardUpdate.builder()
+                .entry(entry(1, 2, 100, 1, 0, 0))
+                .entry(entry(2, 1, 0, 0, 0, 0))
+                .build())
+        .then(() -> scoreboardEngine.addUser(3L))
+        // User 1 is unchanged, sharing second place with the new user
+        .expectNext(ScoreboardUpdate.builder().entry(entry(2, 3, 0, 0, 0, 0)).build())
+        .then(() -> scoreboardEngine.removeUser(3L))
+        .expectNext(ScoreboardUpdate.builder().removedUserId(3L).build())
+        .thenCancel()
+        .verify();
+  }
+}
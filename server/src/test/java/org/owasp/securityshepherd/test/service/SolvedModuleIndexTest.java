@@ -0,0 +1,104 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex.SolvedModules;
+import org.owasp.securityshepherd.scoring.Submission;
+
+@DisplayName("SolvedModuleIndex unit test")
+class SolvedModuleIndexTest {
+
+  private SolvedModuleIndex solvedModuleIndex;
+
+  private static Submission submission(
+      final long userId, final String moduleName, final boolean isValid) {
+    return Submission.builder()
+        .userId(userId)
+        .moduleName(moduleName)
+        .time(LocalDateTime.of(2000, 1, 1, 10, 0))
+        .isValid(isValid)
+        .build();
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    solvedModuleIndex = new SolvedModuleIndex();
+  }
+
+  @Test
+  void getIfLoaded_NotLoaded_ReturnsNull() {
+    assertThat(solvedModuleIndex.getIfLoaded(1L)).isNull();
+  }
+
+  @Test
+  void getIfLoaded_OnlySubmissionsAdded_ReturnsNull() {
+    solvedModuleIndex.addSubmission(submission(1L, "id1", true));
+    assertThat(solvedModuleIndex.getIfLoaded(1L)).isNull();
+  }
+
+  @Test
+  void load_ModuleNames_ReturnsSolvedModules() {
+    final SolvedModules solvedModules = solvedModuleIndex.load(1L, Arrays.asList("id1", "id2"));
+
+    assertThat(solvedModules.contains("id1")).isTrue();
+    assertThat(solvedModules.contains("id2")).isTrue();
+    assertThat(solvedModules.contains("id3")).isFalse();
+    assertThat(solvedModuleIndex.getIfLoaded(1L).contains("id1")).isTrue();
+    // Other users are unaffected
+    assertThat(solvedModuleIndex.getIfLoaded(2L)).isNull();
+  }
+
+  @Test
+  void load_SubmissionAddedWhileLoading_KeepsSubmission() {
+    solvedModuleIndex.addSubmission(submission(1L, "id2", true));
+
+    final SolvedModules solvedModules = solvedModuleIndex.load(1L, Arrays.asList("id1"));
+
+    assertThat(solvedModules.contains("id1")).isTrue();
+    assertThat(solvedModules.contains("id2")).isTrue();
+  }
+
+  @Test
+  void addSubmission_AfterLoad_AddsSolvedModule() {
+    final SolvedModules solvedModules = solvedModuleIndex.load(1L, Collections.emptyList());
+
+    solvedModuleIndex.addSubmission(submission(1L, "id1", true));
+    // Invalid submissions do not count
+    solvedModuleIndex.addSubmission(submission(1L, "id2", false));
+
+    assertThat(solvedModuleIndex.getIfLoaded(1L).contains("id1")).isTrue();
+    assertThat(solvedModuleIndex.getIfLoaded(1L).contains("id2")).isFalse();
+    // Previously returned sets are not changed
+    assertThat(solvedModules.contains("id1")).isFalse();
+  }
+
+  @Test
+  void clear_AfterLoad_ForgetsAllUsers() {
+    solvedModuleIndex.load(1L, Arrays.asList("id1"));
+    solvedModuleIndex.clear();
+    assertThat(solvedModuleIndex.getIfLoaded(1L)).isNull();
+  }
+}
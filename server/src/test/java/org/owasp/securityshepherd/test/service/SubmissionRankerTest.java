@@ -0,0 +1,142 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.scoring.RankedSubmissionRepository;
+import org.owasp.securityshepherd.scoring.Submission;
+import org.owasp.securityshepherd.scoring.SubmissionRanker;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SubmissionRanker unit test")
+class SubmissionRankerTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private static final String MODULE_NAME = "id";
+
+  private static final long SUBMISSION_ID = 353L;
+
+  private SubmissionRanker submissionRanker;
+
+  @Mock private RankedSubmissionRepository rankedSubmissionRepository;
+
+  @Mock private TransactionalOperator transactionalOperator;
+
+  private static Submission submission() {
+    return Submission.builder()
+        .id(SUBMISSION_ID)
+        .userId(293L)
+        .moduleName(MODULE_NAME)
+        .time(LocalDateTime.of(2000, 1, 1, 10, 0))
+        .isValid(true)
+        .build();
+  }
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  private void setUp() {
+    // Set up the system under test
+    submissionRanker = new SubmissionRanker(rankedSubmissionRepository, transactionalOperator);
+    when(transactionalOperator.transactional(any(Mono.class)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void saveRanked_SaveSucceeds_RanksSavedSubmissionWhileLocked() {
+    final Submission submission = submission();
+    when(rankedSubmissionRepository.lockModule(MODULE_NAME)).thenReturn(Mono.just(MODULE_NAME));
+    when(rankedSubmissionRepository.insertBySubmissionId(SUBMISSION_ID)).thenReturn(Mono.just(1));
+
+    StepVerifier.create(submissionRanker.saveRanked(MODULE_NAME, Mono.just(submission)))
+        .expectNext(submission)
+        .expectComplete()
+        .verify();
+
+    final InOrder rankingOrder = inOrder(rankedSubmissionRepository);
+    rankingOrder.verify(rankedSubmissionRepository).lockModule(MODULE_NAME);
+    rankingOrder.verify(rankedSubmissionRepository).insertBySubmissionId(SUBMISSION_ID);
+    verify(rankedSubmissionRepository, never()).deleteAllByModuleName(MODULE_NAME);
+    verify(transactionalOperator).transactional(any(Mono.class));
+  }
+
+  @Test
+  void saveRanked_SaveFails_DoesNotRank() {
+    when(rankedSubmissionRepository.lockModule(MODULE_NAME)).thenReturn(Mono.just(MODULE_NAME));
+
+    StepVerifier.create(
+            submissionRanker.saveRanked(
+                MODULE_NAME, Mono.error(new IllegalStateException("Failed"))))
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    verify(rankedSubmissionRepository, never()).insertBySubmissionId(SUBMISSION_ID);
+  }
+
+  @Test
+  void rankModuleAfter_ChangeSucceeds_RebuildsRanksWhileLocked() {
+    when(rankedSubmissionRepository.lockModule(MODULE_NAME)).thenReturn(Mono.just(MODULE_NAME));
+    when(rankedSubmissionRepository.deleteAllByModuleName(MODULE_NAME)).thenReturn(Mono.just(2));
+    when(rankedSubmissionRepository.insertAllByModuleName(MODULE_NAME)).thenReturn(Mono.just(3));
+
+    StepVerifier.create(submissionRanker.rankModuleAfter(MODULE_NAME, Mono.just("change")))
+        .expectNext("change")
+        .expectComplete()
+        .verify();
+
+    final InOrder rankingOrder = inOrder(rankedSubmissionRepository);
+    rankingOrder.verify(rankedSubmissionRepository).lockModule(MODULE_NAME);
+    rankingOrder.verify(rankedSubmissionRepository).deleteAllByModuleName(MODULE_NAME);
+    rankingOrder.verify(rankedSubmissionRepository).insertAllByModuleName(MODULE_NAME);
+  }
+
+  @Test
+  void rankModuleAfter_ChangeFails_DoesNotRank() {
+    when(rankedSubmissionRepository.lockModule(MODULE_NAME)).thenReturn(Mono.just(MODULE_NAME));
+
+    StepVerifier.create(
+            submissionRanker.rankModuleAfter(
+                MODULE_NAME, Mono.error(new IllegalStateException("Failed"))))
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    verify(rankedSubmissionRepository, never()).deleteAllByModuleName(MODULE_NAME);
+    verify(rankedSubmissionRepository, never()).insertAllByModuleName(MODULE_NAME);
+  }
+}
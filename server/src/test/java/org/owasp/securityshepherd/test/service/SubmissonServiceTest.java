@@ -17,11 +17,16 @@ package org.owasp.securityshepherd.test.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -36,15 +41,23 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.database.ReplicaRouter;
 import org.owasp.securityshepherd.exception.InvalidUserIdException;
 import org.owasp.securityshepherd.exception.ModuleAlreadySolvedException;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.FlagHandler;
 import org.owasp.securityshepherd.scoring.CorrectionRepository;
+import org.owasp.securityshepherd.scoring.RankedSubmission;
 import org.owasp.securityshepherd.scoring.RankedSubmissionRepository;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex;
 import org.owasp.securityshepherd.scoring.Submission;
+import org.owasp.securityshepherd.scoring.SubmissionRanker;
 import org.owasp.securityshepherd.scoring.SubmissionRepository;
 import org.owasp.securityshepherd.scoring.SubmissionService;
 import org.owasp.securityshepherd.test.util.TestUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
@@ -65,10 +78,22 @@ class SubmissonServiceTest {
 
   @Mock private RankedSubmissionRepository rankedSubmissionRepository;
 
+  @Mock private SubmissionRanker submissionRanker;
+
   @Mock private CorrectionRepository correctionRepository;
 
   @Mock private FlagHandler flagHandler;
 
+  @Mock private ScoreboardEngine scoreboardEngine;
+
+  @Mock private ReplicaRouter replicaRouter;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final MetricsService metricsService = new MetricsService(meterRegistry);
+
+  private SolvedModuleIndex solvedModuleIndex;
+
   @Test
   void findAllByModuleName_NoSubmissionsExist_ReturnsEmpty() {
     final String mockModuleName = "id";
@@ -140,6 +165,35 @@ class SubmissonServiceTest {
     verify(submissionRepository, times(1)).findAllValidByUserId(mockUserId);
   }
 
+  @Test
+  void findAllRankedByUserId_InvalidUserId_ReturnsInvalidUserIdException() {
+    StepVerifier.create(submissionService.findAllRankedByUserId(-1L))
+        .expectError(InvalidUserIdException.class)
+        .verify();
+  }
+
+  @Test
+  void findAllRankedByUserId_SubmissionsExist_ReadsThroughReplicaRouter() {
+    final long mockUserId = 37L;
+    final RankedSubmission mockRankedSubmission1 = mock(RankedSubmission.class);
+    final RankedSubmission mockRankedSubmission2 = mock(RankedSubmission.class);
+
+    final Flux<RankedSubmission> rankedSubmissions =
+        Flux.just(mockRankedSubmission1, mockRankedSubmission2);
+
+    when(rankedSubmissionRepository.findAllByUserId(mockUserId)).thenReturn(rankedSubmissions);
+    when(replicaRouter.readOnlyForUser(mockUserId, rankedSubmissions))
+        .thenReturn(rankedSubmissions);
+
+    StepVerifier.create(submissionService.findAllRankedByUserId(mockUserId))
+        .expectNext(mockRankedSubmission1)
+        .expectNext(mockRankedSubmission2)
+        .expectComplete()
+        .verify();
+
+    verify(replicaRouter, times(1)).readOnlyForUser(mockUserId, rankedSubmissions);
+  }
+
   @Test
   void findAllValidByUserIdAndModuleName_InvalidUserId_ReturnsInvalidUserIdException() {
     final String mockModuleName = "id";
@@ -236,15 +290,94 @@ class SubmissonServiceTest {
     verify(submissionRepository, times(1)).findAllValidByUserId(mockUserId);
   }
 
+  @Test
+  void findSolvedModulesByUserId_InvalidUserId_ReturnsInvalidUserIdException() {
+    for (final long userId : TestUtils.INVALID_IDS) {
+      StepVerifier.create(submissionService.findSolvedModulesByUserId(userId))
+          .expectError(InvalidUserIdException.class)
+          .verify();
+    }
+  }
+
+  @Test
+  void findSolvedModulesByUserId_CalledTwice_ReadsSubmissionsOnce() {
+    final long mockUserId = 237L;
+    final Submission mockSubmission = mock(Submission.class);
+
+    when(mockSubmission.getModuleName()).thenReturn("id1");
+    when(submissionRepository.findAllValidByUserId(mockUserId))
+        .thenReturn(Flux.just(mockSubmission));
+
+    for (int i = 0; i < 2; i++) {
+      StepVerifier.create(submissionService.findSolvedModulesByUserId(mockUserId))
+          .assertNext(
+              solvedModules -> {
+                assertThat(solvedModules.contains("id1")).isTrue();
+                assertThat(solvedModules.contains("id2")).isFalse();
+              })
+          .expectComplete()
+          .verify();
+    }
+
+    verify(submissionRepository, times(1)).findAllValidByUserId(mockUserId);
+  }
+
+  @Test
+  void findSolvedModulesByUserId_ValidSubmissionAfterLoad_ReturnsSolvedModule() {
+    final long mockUserId = 237L;
+    final long mockSubmissionId = 353L;
+    final String mockModuleName = "id";
+
+    when(submissionRepository.findAllValidByUserId(mockUserId)).thenReturn(Flux.empty());
+    StepVerifier.create(submissionService.findSolvedModulesByUserId(mockUserId))
+        .assertNext(solvedModules -> assertThat(solvedModules.contains(mockModuleName)).isFalse())
+        .expectComplete()
+        .verify();
+
+    when(submissionRepository.save(any(Submission.class)))
+        .thenAnswer(
+            user -> Mono.just(user.getArgument(0, Submission.class).withId(mockSubmissionId)));
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+
+    StepVerifier.create(submissionService.submitValid(mockUserId, mockModuleName))
+        .expectNextCount(1)
+        .expectComplete()
+        .verify();
+
+    StepVerifier.create(submissionService.findSolvedModulesByUserId(mockUserId))
+        .assertNext(solvedModules -> assertThat(solvedModules.contains(mockModuleName)).isTrue())
+        .expectComplete()
+        .verify();
+
+    verify(submissionRepository, times(1)).findAllValidByUserId(mockUserId);
+  }
+
   private void setClock(final Clock clock) {
     submissionService.setClock(clock);
   }
 
+  // What Spring Data R2DBC makes of a MySQL duplicate key error
+  private static DataIntegrityViolationException duplicateEntry() {
+    return new DataIntegrityViolationException(
+        "Duplicate entry",
+        new R2dbcDataIntegrityViolationException("Duplicate entry", "23000", 1062));
+  }
+
   @BeforeEach
   private void setUp() {
     // Set up the system under test
+    solvedModuleIndex = new SolvedModuleIndex();
     submissionService =
-        new SubmissionService(submissionRepository, rankedSubmissionRepository, flagHandler);
+        new SubmissionService(
+            submissionRepository,
+            rankedSubmissionRepository,
+            submissionRanker,
+            flagHandler,
+            scoreboardEngine,
+            solvedModuleIndex,
+            replicaRouter,
+            metricsService);
   }
 
   @Test
@@ -261,8 +394,7 @@ class SubmissonServiceTest {
 
     when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(false));
 
-    when(submissionRepository.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.empty());
+    when(submissionRepository.findAllValidByUserId(mockUserId)).thenReturn(Flux.empty());
 
     when(submissionRepository.save(any(Submission.class)))
         .thenAnswer(
@@ -282,9 +414,10 @@ class SubmissonServiceTest {
         .verify();
 
     verify(flagHandler, times(1)).verifyFlag(mockUserId, mockModuleName, flag);
-    verify(submissionRepository, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
     verify(submissionRepository, times(1)).save(any(Submission.class));
+    verify(submissionRanker, never()).saveRanked(anyString(), any());
+    assertThat(meterRegistry.counter("shepherd.submissions", "result", "invalid").count())
+        .isEqualTo(1);
   }
 
   @Test
@@ -309,16 +442,105 @@ class SubmissonServiceTest {
 
     when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(true));
 
-    when(submissionRepository.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.just(mock(Submission.class)));
+    when(submissionRepository.save(any(Submission.class))).thenReturn(Mono.error(duplicateEntry()));
+
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
 
     StepVerifier.create(submissionService.submit(mockUserId, mockModuleName, flag))
         .expectError(ModuleAlreadySolvedException.class)
         .verify();
 
     verify(flagHandler, times(1)).verifyFlag(mockUserId, mockModuleName, flag);
-    verify(submissionRepository, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
+    verify(submissionRepository, times(1)).save(any(Submission.class));
+    assertThat(meterRegistry.counter("shepherd.submissions", "result", "already-solved").count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void submit_InvalidFlagForSolvedModule_ReturnsModuleAlreadySolvedException() {
+    final long mockUserId = 293L;
+    final String mockModuleName = "id";
+    final String flag = "invalidFlag";
+
+    when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(false));
+
+    final Submission mockSubmission = mock(Submission.class);
+
+    when(mockSubmission.getModuleName()).thenReturn(mockModuleName);
+    when(submissionRepository.findAllValidByUserId(mockUserId))
+        .thenReturn(Flux.just(mockSubmission));
+
+    StepVerifier.create(submissionService.submit(mockUserId, mockModuleName, flag))
+        .expectError(ModuleAlreadySolvedException.class)
+        .verify();
+
+    verify(submissionRepository, never()).save(any(Submission.class));
+    assertThat(meterRegistry.counter("shepherd.submissions", "result", "already-solved").count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void submit_ValidFlagAndForeignKeyViolation_ReturnsDataIntegrityViolationException() {
+    final long mockUserId = 293L;
+    final String mockModuleName = "id";
+    final String flag = "validFlag";
+
+    when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(true));
+
+    // A missing module is no reason to tell the user that they already solved it
+    when(submissionRepository.save(any(Submission.class)))
+        .thenReturn(
+            Mono.error(
+                new DataIntegrityViolationException(
+                    "Foreign key violation",
+                    new R2dbcDataIntegrityViolationException(
+                        "Cannot add or update a child row", "23000", 1452))));
+
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+
+    StepVerifier.create(submissionService.submit(mockUserId, mockModuleName, flag))
+        .expectError(DataIntegrityViolationException.class)
+        .verify();
+  }
+
+  @Test
+  void submit_ValidFlagAndDuplicateKeyException_ReturnsModuleAlreadySolvedException() {
+    final long mockUserId = 293L;
+    final String mockModuleName = "id";
+    final String flag = "validFlag";
+
+    when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(true));
+
+    when(submissionRepository.save(any(Submission.class)))
+        .thenReturn(Mono.error(new DuplicateKeyException("Duplicate entry")));
+
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+
+    StepVerifier.create(submissionService.submit(mockUserId, mockModuleName, flag))
+        .expectError(ModuleAlreadySolvedException.class)
+        .verify();
+  }
+
+  @Test
+  void submit_InvalidFlagAndDataIntegrityViolation_ReturnsDataIntegrityViolationException() {
+    final long mockUserId = 293L;
+    final String mockModuleName = "id";
+    final String flag = "invalidFlag";
+
+    when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(false));
+
+    when(submissionRepository.findAllValidByUserId(mockUserId)).thenReturn(Flux.empty());
+
+    // Only valid submissions are constrained by the unique key, so other errors pass through
+    when(submissionRepository.save(any(Submission.class)))
+        .thenReturn(Mono.error(new DataIntegrityViolationException("Foreign key violation")));
+
+    StepVerifier.create(submissionService.submit(mockUserId, mockModuleName, flag))
+        .expectError(DataIntegrityViolationException.class)
+        .verify();
   }
 
   @Test
@@ -335,13 +557,13 @@ class SubmissonServiceTest {
 
     when(flagHandler.verifyFlag(mockUserId, mockModuleName, flag)).thenReturn(Mono.just(true));
 
-    when(submissionRepository.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.empty());
-
     when(submissionRepository.save(any(Submission.class)))
         .thenAnswer(
             user -> Mono.just(user.getArgument(0, Submission.class).withId(mockSubmissionId)));
 
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+
     StepVerifier.create(submissionService.submit(mockUserId, mockModuleName, flag))
         .assertNext(
             submission -> {
@@ -356,9 +578,17 @@ class SubmissonServiceTest {
         .verify();
 
     verify(flagHandler, times(1)).verifyFlag(mockUserId, mockModuleName, flag);
-    verify(submissionRepository, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
     verify(submissionRepository, times(1)).save(any(Submission.class));
+    verify(submissionRanker, times(1)).saveRanked(eq(mockModuleName), any());
+    verify(replicaRouter, times(1)).recordWrite(mockUserId);
+
+    assertThat(meterRegistry.counter("shepherd.submissions", "result", "valid").count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .timer("shepherd.submission", "outcome", "success", "exception", "none")
+                .count())
+        .isEqualTo(1);
   }
 
   @Test
@@ -380,15 +610,16 @@ class SubmissonServiceTest {
 
     setClock(fixedClock);
 
-    when(submissionRepository.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.just(mock(Submission.class)));
+    when(submissionRepository.save(any(Submission.class))).thenReturn(Mono.error(duplicateEntry()));
+
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
 
     StepVerifier.create(submissionService.submitValid(mockUserId, mockModuleName))
         .expectError(ModuleAlreadySolvedException.class)
         .verify();
 
-    verify(submissionRepository, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
+    verify(submissionRepository, times(1)).save(any(Submission.class));
   }
 
   @Test
@@ -401,13 +632,13 @@ class SubmissonServiceTest {
 
     setClock(fixedClock);
 
-    when(submissionRepository.findAllValidByUserIdAndModuleName(mockUserId, mockModuleName))
-        .thenReturn(Mono.empty());
-
     when(submissionRepository.save(any(Submission.class)))
         .thenAnswer(
             user -> Mono.just(user.getArgument(0, Submission.class).withId(mockSubmissionId)));
 
+    when(submissionRanker.saveRanked(eq(mockModuleName), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+
     StepVerifier.create(submissionService.submitValid(mockUserId, mockModuleName))
         .assertNext(
             submission -> {
@@ -421,8 +652,7 @@ class SubmissonServiceTest {
         .expectComplete()
         .verify();
 
-    verify(submissionRepository, times(1))
-        .findAllValidByUserIdAndModuleName(mockUserId, mockModuleName);
     verify(submissionRepository, times(1)).save(any(Submission.class));
+    verify(submissionRanker, times(1)).saveRanked(eq(mockModuleName), any());
   }
 }
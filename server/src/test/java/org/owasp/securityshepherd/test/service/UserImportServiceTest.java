@@ -0,0 +1,312 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.validation.Validator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.authentication.PasswordAuth;
+import org.owasp.securityshepherd.authentication.PasswordAuthRepository;
+import org.owasp.securityshepherd.authentication.PasswordHasher;
+import org.owasp.securityshepherd.authentication.PasswordRegistrationDto;
+import org.owasp.securityshepherd.authentication.UserAuthRepository;
+import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
+import org.owasp.securityshepherd.user.User;
+import org.owasp.securityshepherd.user.UserImportResult;
+import org.owasp.securityshepherd.user.UserImportService;
+import org.owasp.securityshepherd.user.UserRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserImportService unit test")
+class UserImportServiceTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private UserImportService userImportService;
+
+  @Mock private UserRepository userRepository;
+
+  @Mock private UserAuthRepository userAuthRepository;
+
+  @Mock private PasswordAuthRepository passwordAuthRepository;
+
+  @Mock private PasswordHasher passwordHasher;
+
+  @Mock private KeyService keyService;
+
+  @Mock private ScoreboardEngine scoreboardEngine;
+
+  @Mock private TransactionalOperator transactionalOperator;
+
+  @Mock private Validator validator;
+
+  private static PasswordRegistrationDto row(final String name) {
+    return new PasswordRegistrationDto(name, name + "-login", name + "-password");
+  }
+
+  private static User user(final long userId, final String displayName) {
+    return User.builder().id(userId).displayName(displayName).key(new byte[] {1}).build();
+  }
+
+  private static UserImportResult created(final String name, final long userId) {
+    return UserImportResult.builder().userName(name + "-login").userId(userId).build();
+  }
+
+  private static UserImportResult failed(final String name, final String error) {
+    return UserImportResult.builder().userName(name + "-login").error(error).build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void setUpInserts() {
+    when(transactionalOperator.transactional(any(Mono.class)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(userRepository.insertAll(anyList())).thenReturn(Mono.just(1));
+    when(userAuthRepository.insertAll(anyList())).thenReturn(Mono.just(1));
+    when(passwordAuthRepository.insertAll(anyList())).thenReturn(Mono.just(1));
+    when(keyService.generateRandomBytes(16)).thenReturn(new byte[16]);
+  }
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    userImportService =
+        new UserImportService(
+            userRepository,
+            userAuthRepository,
+            passwordAuthRepository,
+            passwordHasher,
+            keyService,
+            scoreboardEngine,
+            transactionalOperator,
+            validator,
+            2,
+            2);
+  }
+
+  @Test
+  void importUsers_NoRows_ReturnsEmpty() {
+    StepVerifier.create(userImportService.importUsers(Flux.empty())).expectComplete().verify();
+    verify(userRepository, never()).insertAll(anyList());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void importUsers_ValidRows_InsertsUsersInBatches() {
+    setUpInserts();
+    when(passwordHasher.encode(any(String.class)))
+        .thenAnswer(invocation -> Mono.just("hash-" + invocation.getArgument(0)));
+    // The second lookup of each batch reads back the created users
+    when(userRepository.findAllByDisplayNameIn(Arrays.asList("a", "b")))
+        .thenReturn(Flux.empty())
+        .thenReturn(Flux.just(user(1L, "a"), user(2L, "b")));
+    when(userRepository.findAllByDisplayNameIn(Arrays.asList("c")))
+        .thenReturn(Flux.empty())
+        .thenReturn(Flux.just(user(3L, "C")));
+    when(passwordAuthRepository.findAllByLoginNameIn(any())).thenReturn(Flux.empty());
+
+    StepVerifier.create(userImportService.importUsers(Flux.just(row("a"), row("b"), row("c"))))
+        .expectNext(created("a", 1L))
+        .expectNext(created("b", 2L))
+        .expectNext(created("c", 3L))
+        .expectComplete()
+        .verify();
+
+    // One insert per table and batch
+    verify(userRepository, times(2)).insertAll(anyList());
+    verify(userAuthRepository, times(2)).insertAll(anyList());
+
+    final ArgumentCaptor<List<Object[]>> passwordAuths = ArgumentCaptor.forClass(List.class);
+    verify(passwordAuthRepository, times(2)).insertAll(passwordAuths.capture());
+    final Object[] passwordAuth = passwordAuths.getAllValues().get(1).get(0);
+    assertThat(passwordAuth).containsExactly(3L, "c-login", "hash-c-password");
+
+    verify(scoreboardEngine, times(1)).addUser(1L);
+    verify(scoreboardEngine, times(1)).addUser(3L);
+  }
+
+  @Test
+  void importUsers_InvalidAndDuplicateRows_ReturnsErrors() {
+    setUpInserts();
+    when(passwordHasher.encode(any(String.class))).thenReturn(Mono.just("hash"));
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("a")))
+        .thenReturn(Flux.empty())
+        .thenReturn(Flux.just(user(1L, "a")));
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("taken")))
+        .thenReturn(Flux.just(user(9L, "Taken")));
+    when(passwordAuthRepository.findAllByLoginNameIn(any())).thenReturn(Flux.empty());
+
+    StepVerifier.create(
+            userImportService.importUsers(
+                Flux.just(
+                    row("a"),
+                    new PasswordRegistrationDto("A", "other-login", "password"),
+                    row("taken"))))
+        .expectNext(created("a", 1L))
+        .expectNext(
+            UserImportResult.builder()
+                .userName("other-login")
+                .error("Display name is used by another row")
+                .build())
+        .expectNext(failed("taken", "Display name already exists"))
+        .expectComplete()
+        .verify();
+
+    verify(passwordHasher, times(1)).encode(any(String.class));
+  }
+
+  @Test
+  void importUsers_RowRejectedForLoginName_DoesNotReserveDisplayName() {
+    setUpInserts();
+    when(passwordHasher.encode(any(String.class))).thenReturn(Mono.just("hash"));
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("a")))
+        .thenReturn(Flux.empty())
+        .thenReturn(Flux.just(user(1L, "a")));
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("b")))
+        .thenReturn(Flux.empty())
+        .thenReturn(Flux.just(user(2L, "b")));
+    when(passwordAuthRepository.findAllByLoginNameIn(any())).thenReturn(Flux.empty());
+
+    StepVerifier.create(
+            userImportService.importUsers(
+                Flux.just(
+                    row("a"), new PasswordRegistrationDto("b", "a-login", "password"), row("b"))))
+        .expectNext(created("a", 1L))
+        .expectNext(
+            UserImportResult.builder()
+                .userName("a-login")
+                .error("Login name is used by another row")
+                .build())
+        // The rejected row did not take the display name with it
+        .expectNext(created("b", 2L))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void importUsers_ExistingLoginName_ReturnsError() {
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("a")))
+        .thenReturn(Flux.empty());
+    when(passwordAuthRepository.findAllByLoginNameIn(Collections.singletonList("a-login")))
+        .thenReturn(
+            Flux.just(
+                PasswordAuth.builder()
+                    .userId(9L)
+                    .loginName("A-LOGIN")
+                    .hashedPassword("hash")
+                    .build()));
+
+    StepVerifier.create(userImportService.importUsers(Flux.just(row("a"))))
+        .expectNext(failed("a", "Login name already exists"))
+        .expectComplete()
+        .verify();
+
+    verify(passwordHasher, never()).encode(any(String.class));
+    verify(userRepository, never()).insertAll(anyList());
+  }
+
+  @Test
+  void importUsers_HashingRejected_ReturnsError() {
+    setUpInserts();
+    when(passwordHasher.encode("a-password")).thenReturn(Mono.just("hash"));
+    when(passwordHasher.encode("b-password"))
+        .thenReturn(Mono.error(new PasswordHashingRejectedException()));
+    when(userRepository.findAllByDisplayNameIn(Arrays.asList("a", "b"))).thenReturn(Flux.empty());
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("a")))
+        .thenReturn(Flux.just(user(1L, "a")));
+    when(passwordAuthRepository.findAllByLoginNameIn(any())).thenReturn(Flux.empty());
+
+    StepVerifier.create(userImportService.importUsers(Flux.just(row("a"), row("b"))))
+        .expectNext(created("a", 1L))
+        .expectNext(failed("b", "Server is busy, try again later"))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void importUsers_InsertFails_ReturnsErrorForBatch() {
+    when(transactionalOperator.transactional(any(Mono.class)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(keyService.generateRandomBytes(16)).thenReturn(new byte[16]);
+    when(passwordHasher.encode(any(String.class))).thenReturn(Mono.just("hash"));
+    when(userRepository.findAllByDisplayNameIn(Arrays.asList("a", "b"))).thenReturn(Flux.empty());
+    when(passwordAuthRepository.findAllByLoginNameIn(any())).thenReturn(Flux.empty());
+    when(userRepository.insertAll(anyList()))
+        .thenReturn(Mono.error(new DataIntegrityViolationException("Duplicate entry")));
+
+    StepVerifier.create(userImportService.importUsers(Flux.just(row("a"), row("b"))))
+        .expectNext(failed("a", "Could not create user"))
+        .expectNext(failed("b", "Could not create user"))
+        .expectComplete()
+        .verify();
+
+    verify(scoreboardEngine, never()).addUser(anyLong());
+  }
+
+  @Test
+  void importUsers_InsertFails_DoesNotReserveNames() {
+    setUpInserts();
+    when(passwordHasher.encode(any(String.class))).thenReturn(Mono.just("hash"));
+    when(userRepository.findAllByDisplayNameIn(Arrays.asList("a", "b"))).thenReturn(Flux.empty());
+    when(userRepository.findAllByDisplayNameIn(Collections.singletonList("a")))
+        .thenReturn(Flux.empty())
+        .thenReturn(Flux.just(user(1L, "a")));
+    when(passwordAuthRepository.findAllByLoginNameIn(any())).thenReturn(Flux.empty());
+    when(userRepository.insertAll(anyList()))
+        .thenReturn(Mono.error(new DataIntegrityViolationException("Duplicate entry")))
+        .thenReturn(Mono.just(1));
+
+    StepVerifier.create(userImportService.importUsers(Flux.just(row("a"), row("b"), row("a"))))
+        .expectNext(failed("a", "Could not create user"))
+        .expectNext(failed("b", "Could not create user"))
+        // The rolled back batch did not keep the names to itself
+        .expectNext(created("a", 1L))
+        .expectComplete()
+        .verify();
+
+    verify(scoreboardEngine, times(1)).addUser(1L);
+  }
+}
@@ -24,6 +24,8 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -33,24 +35,30 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.authentication.AuthorityCache;
 import org.owasp.securityshepherd.authentication.PasswordAuth;
 import org.owasp.securityshepherd.authentication.PasswordAuthRepository;
+import org.owasp.securityshepherd.authentication.PasswordHasher;
 import org.owasp.securityshepherd.authentication.UserAuth;
 import org.owasp.securityshepherd.authentication.UserAuthRepository;
+import org.owasp.securityshepherd.crypto.KeyRing;
 import org.owasp.securityshepherd.crypto.KeyService;
+import org.owasp.securityshepherd.database.ReplicaRouter;
 import org.owasp.securityshepherd.exception.ClassIdNotFoundException;
 import org.owasp.securityshepherd.exception.DuplicateUserDisplayNameException;
 import org.owasp.securityshepherd.exception.DuplicateUserLoginNameException;
 import org.owasp.securityshepherd.exception.InvalidClassIdException;
 import org.owasp.securityshepherd.exception.InvalidUserIdException;
+import org.owasp.securityshepherd.exception.PasswordHashingRejectedException;
 import org.owasp.securityshepherd.exception.UserIdNotFoundException;
+import org.owasp.securityshepherd.metrics.MetricsService;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
 import org.owasp.securityshepherd.service.ClassService;
 import org.owasp.securityshepherd.test.util.TestUtils;
 import org.owasp.securityshepherd.user.User;
 import org.owasp.securityshepherd.user.UserRepository;
 import org.owasp.securityshepherd.user.UserService;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Mono;
@@ -78,6 +86,18 @@ class UserServiceTest {
 
   @Mock private KeyService keyService;
 
+  @Mock private ScoreboardEngine scoreboardEngine;
+
+  @Mock private KeyRing keyRing;
+
+  @Mock private AuthorityCache authorityCache;
+
+  @Mock private PasswordHasher passwordHasher;
+
+  @Mock private ReplicaRouter replicaRouter;
+
+  private final MetricsService metricsService = new MetricsService(new SimpleMeterRegistry());
+
   @Test
   void authenticate_EmptyPassword_ReturnsIllegalArgumentException() {
     StepVerifier.create(userService.authenticate("username", ""))
@@ -121,39 +141,88 @@ class UserServiceTest {
 
   @Test
   void authenticate_ValidUsernameAndPassword_ReturnsTrue() {
-    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(16);
     final String mockedLoginName = "MockUser";
     final String mockedPassword = "MockPassword";
-    final String mockedPasswordHash = encoder.encode(mockedPassword);
+    final String mockedPasswordHash = "MockHash";
     final PasswordAuth mockedPasswordAuth = mock(PasswordAuth.class);
 
     when(passwordAuthRepository.findByLoginName(mockedLoginName))
         .thenReturn(Mono.just(mockedPasswordAuth));
     when(mockedPasswordAuth.getHashedPassword()).thenReturn(mockedPasswordHash);
+    when(passwordHasher.matches(mockedPassword, mockedPasswordHash)).thenReturn(Mono.just(true));
+    when(passwordHasher.needsUpgrade(mockedPasswordHash)).thenReturn(false);
     StepVerifier.create(userService.authenticate(mockedLoginName, mockedPassword))
         .expectNext(true)
         .expectComplete()
         .verify();
     verify(passwordAuthRepository, times(1)).findByLoginName(mockedLoginName);
+    verify(passwordAuthRepository, never()).save(any(PasswordAuth.class));
+  }
+
+  @Test
+  void authenticate_ValidPasswordWithOldHash_UpgradesHash() {
+    final String mockedLoginName = "MockUser";
+    final String mockedPassword = "MockPassword";
+    final String mockedPasswordHash = "MockHash";
+    final String mockedUpgradedHash = "MockUpgradedHash";
+    final PasswordAuth mockedPasswordAuth = mock(PasswordAuth.class);
+    final PasswordAuth mockedUpgradedPasswordAuth = mock(PasswordAuth.class);
+
+    when(passwordAuthRepository.findByLoginName(mockedLoginName))
+        .thenReturn(Mono.just(mockedPasswordAuth));
+    when(mockedPasswordAuth.getHashedPassword()).thenReturn(mockedPasswordHash);
+    when(passwordHasher.matches(mockedPassword, mockedPasswordHash)).thenReturn(Mono.just(true));
+    when(passwordHasher.needsUpgrade(mockedPasswordHash)).thenReturn(true);
+    when(passwordHasher.encode(mockedPassword)).thenReturn(Mono.just(mockedUpgradedHash));
+    when(mockedPasswordAuth.withHashedPassword(mockedUpgradedHash))
+        .thenReturn(mockedUpgradedPasswordAuth);
+    when(passwordAuthRepository.save(mockedUpgradedPasswordAuth))
+        .thenReturn(Mono.just(mockedUpgradedPasswordAuth));
+    StepVerifier.create(userService.authenticate(mockedLoginName, mockedPassword))
+        .expectNext(true)
+        .expectComplete()
+        .verify();
+    verify(passwordAuthRepository, times(1)).save(mockedUpgradedPasswordAuth);
+  }
+
+  @Test
+  void authenticate_UpgradeRejected_ReturnsTrue() {
+    final String mockedLoginName = "MockUser";
+    final String mockedPassword = "MockPassword";
+    final String mockedPasswordHash = "MockHash";
+    final PasswordAuth mockedPasswordAuth = mock(PasswordAuth.class);
+
+    when(passwordAuthRepository.findByLoginName(mockedLoginName))
+        .thenReturn(Mono.just(mockedPasswordAuth));
+    when(mockedPasswordAuth.getHashedPassword()).thenReturn(mockedPasswordHash);
+    when(passwordHasher.matches(mockedPassword, mockedPasswordHash)).thenReturn(Mono.just(true));
+    when(passwordHasher.needsUpgrade(mockedPasswordHash)).thenReturn(true);
+    when(passwordHasher.encode(mockedPassword))
+        .thenReturn(Mono.error(new PasswordHashingRejectedException()));
+    StepVerifier.create(userService.authenticate(mockedLoginName, mockedPassword))
+        .expectNext(true)
+        .expectComplete()
+        .verify();
+    verify(passwordAuthRepository, never()).save(any(PasswordAuth.class));
   }
 
   @Test
   void authenticate_ValidUsernameButInvalidPassword_ReturnsTrue() {
-    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(16);
     final String mockedLoginName = "MockUser";
     final String wrongPassword = "WrongPassword";
-    final String mockedPassword = "MockPassword";
-    final String mockedPasswordHash = encoder.encode(mockedPassword);
+    final String mockedPasswordHash = "MockHash";
     final PasswordAuth mockedPasswordAuth = mock(PasswordAuth.class);
 
     when(passwordAuthRepository.findByLoginName(mockedLoginName))
         .thenReturn(Mono.just(mockedPasswordAuth));
     when(mockedPasswordAuth.getHashedPassword()).thenReturn(mockedPasswordHash);
+    when(passwordHasher.matches(wrongPassword, mockedPasswordHash)).thenReturn(Mono.just(false));
     StepVerifier.create(userService.authenticate(mockedLoginName, wrongPassword))
         .expectNext(false)
         .expectComplete()
         .verify();
     verify(passwordAuthRepository, times(1)).findByLoginName(mockedLoginName);
+    verify(passwordHasher, never()).needsUpgrade(any(String.class));
   }
 
   @Test
@@ -382,6 +451,9 @@ class UserServiceTest {
     deletionOrder.verify(passwordAuthRepository, times(1)).deleteByUserId(mockUserId);
     deletionOrder.verify(userAuthRepository, times(1)).deleteByUserId(mockUserId);
     deletionOrder.verify(userRepository, times(1)).deleteById(mockUserId);
+
+    verify(keyRing, times(1)).evictUserKey(mockUserId);
+    verify(authorityCache, times(1)).evict(mockUserId);
   }
 
   @Test
@@ -428,6 +500,7 @@ class UserServiceTest {
     verify(mockAuth, times(1)).withAdmin(false);
     verify(userAuthRepository, never()).save(mockAuth);
     verify(userAuthRepository, times(1)).save(mockDemotedAuth);
+    verify(authorityCache, times(1)).evict(mockUserId);
   }
 
   @Test
@@ -471,8 +544,10 @@ class UserServiceTest {
   @Test
   void findAll_NoUsersExist_ReturnsEmpty() {
     when(userRepository.findAll()).thenReturn(Flux.empty());
+    when(replicaRouter.readOnly(any())).thenAnswer(args -> args.getArgument(0));
     StepVerifier.create(userService.findAll()).expectComplete().verify();
     verify(userRepository, times(1)).findAll();
+    verify(replicaRouter, times(1)).readOnly(any());
   }
 
   @Test
@@ -482,6 +557,7 @@ class UserServiceTest {
     final User mockUser3 = mock(User.class);
 
     when(userRepository.findAll()).thenReturn(Flux.just(mockUser1, mockUser2, mockUser3));
+    when(replicaRouter.readOnly(any())).thenAnswer(args -> args.getArgument(0));
 
     StepVerifier.create(userService.findAll())
         .expectNext(mockUser1)
@@ -491,6 +567,7 @@ class UserServiceTest {
         .verify();
 
     verify(userRepository, times(1)).findAll();
+    verify(replicaRouter, times(1)).readOnly(any());
   }
 
   @Test
@@ -722,10 +799,23 @@ class UserServiceTest {
     }
   }
 
+  @Test
+  void getAuthoritiesByUserId_AuthoritiesCached_ReturnsCachedAuthorities() {
+    final long mockedUserId = 158L;
+    when(authorityCache.get(mockedUserId))
+        .thenReturn(Arrays.asList(new SimpleGrantedAuthority("ROLE_USER")));
+    StepVerifier.create(userService.getAuthoritiesByUserId(mockedUserId))
+        .expectNext(new SimpleGrantedAuthority("ROLE_USER"))
+        .expectComplete()
+        .verify();
+    verify(userAuthRepository, never()).findByUserId(any(Long.class));
+  }
+
   @Test
   void getAuthoritiesByUserId_UserIsAdmin_ReturnsAdminAuthority() {
     final long mockedUserId = 158L;
     final UserAuth mockedUserAuth = mock(UserAuth.class);
+    when(authorityCache.get(mockedUserId)).thenReturn(null);
     when(userAuthRepository.findByUserId(mockedUserId)).thenReturn(Mono.just(mockedUserAuth));
     when(mockedUserAuth.isAdmin()).thenReturn(true);
     StepVerifier.create(userService.getAuthoritiesByUserId(mockedUserId))
@@ -734,12 +824,18 @@ class UserServiceTest {
         .expectComplete()
         .verify();
     verify(userAuthRepository, times(1)).findByUserId(mockedUserId);
+    verify(authorityCache, times(1))
+        .put(
+            mockedUserId,
+            Arrays.asList(
+                new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_USER")));
   }
 
   @Test
   void getAuthoritiesByUserId_UserIsNotAdmin_ReturnsUserAuthority() {
     final long mockedUserId = 158L;
     final UserAuth mockedUserAuth = mock(UserAuth.class);
+    when(authorityCache.get(mockedUserId)).thenReturn(null);
     when(userAuthRepository.findByUserId(mockedUserId)).thenReturn(Mono.just(mockedUserAuth));
     when(mockedUserAuth.isAdmin()).thenReturn(false);
     StepVerifier.create(userService.getAuthoritiesByUserId(mockedUserId))
@@ -770,7 +866,6 @@ class UserServiceTest {
     final User mockUserWithKey = mock(User.class);
     when(mockUserWithKey.getKey()).thenReturn(testRandomBytes);
 
-    when(userRepository.existsById(mockUserId)).thenReturn(Mono.just(true));
     when(userRepository.findById(mockUserId)).thenReturn(Mono.just(mockUserWithKey));
 
     StepVerifier.create(userService.findKeyById(mockUserId))
@@ -783,6 +878,38 @@ class UserServiceTest {
     order.verify(userRepository, times(1)).findById(mockUserId);
     // and then extract the key
     order.verify(mockUserWithKey, times(1)).getKey();
+    // The key is then kept in the key ring
+    verify(keyRing, times(1)).putUserKey(mockUserId, testRandomBytes);
+  }
+
+  @Test
+  void getKeyById_KeyInKeyRing_ReturnsKeyWithoutQuery() {
+    final byte[] testRandomBytes = {
+      -108, 101, -7, -36, 17, -26, -24, 0, -32, -117, 75, -127, 22, 62, 9, 19
+    };
+    final long mockUserId = 23;
+
+    when(keyRing.getUserKey(mockUserId)).thenReturn(testRandomBytes);
+
+    StepVerifier.create(userService.findKeyById(mockUserId))
+        .expectNext(testRandomBytes)
+        .expectComplete()
+        .verify();
+
+    verify(userRepository, never()).findById(any(Long.class));
+  }
+
+  @Test
+  void getKeyById_UserIdNotFound_ReturnsUserIdNotFoundException() {
+    final long mockUserId = 29;
+
+    when(userRepository.findById(mockUserId)).thenReturn(Mono.empty());
+
+    StepVerifier.create(userService.findKeyById(mockUserId))
+        .expectError(UserIdNotFoundException.class)
+        .verify();
+
+    verify(keyRing, never()).putUserKey(any(Long.class), any(byte[].class));
   }
 
   @Test
@@ -805,7 +932,6 @@ class UserServiceTest {
     when(mockUserWithoutKey.withKey(testRandomBytes)).thenReturn(mockUserWithKey);
 
     // Set up the mock repository
-    when(userRepository.existsById(mockUserId)).thenReturn(Mono.just(true));
     when(userRepository.save(mockUserWithKey)).thenReturn(Mono.just(mockUserWithKey));
 
     // Set up the mock key service
@@ -874,6 +1000,7 @@ class UserServiceTest {
 
     verify(mockAuth, times(1)).withAdmin(true);
     verify(userAuthRepository, times(1)).save(mockAuth);
+    verify(authorityCache, times(1)).evict(mockUserId);
   }
 
   @Test
@@ -1012,6 +1139,16 @@ class UserServiceTest {
     // Set up the system under test
     userService =
         new UserService(
-            userRepository, userAuthRepository, passwordAuthRepository, classService, keyService);
+            userRepository,
+            userAuthRepository,
+            passwordAuthRepository,
+            classService,
+            keyService,
+            scoreboardEngine,
+            keyRing,
+            authorityCache,
+            passwordHasher,
+            replicaRouter,
+            metricsService);
   }
 }
@@ -0,0 +1,113 @@
+/*
+ * This file is part of Security Shepherd.
+ * 
+ * Security Shepherd is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Security Shepherd is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Security Shepherd.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.owasp.securityshepherd.test.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.owasp.securityshepherd.authentication.WebTokenService;
+import reactor.core.publisher.Hooks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebTokenService unit test")
+class WebTokenServiceTest {
+
+  @BeforeAll
+  private static void reactorVerbose() {
+    // Tell Reactor to print verbose error messages
+    Hooks.onOperatorDebug();
+  }
+
+  private static final long START_MILLIS = 946720800000L;
+
+  private WebTokenService webTokenService;
+
+  @Mock private Clock clock;
+
+  @BeforeEach
+  private void setUp() {
+    // Set up the system under test
+    webTokenService = new WebTokenService(clock, 10);
+  }
+
+  @Test
+  void findUserIdFromToken_ValidToken_ReturnsUserId() {
+    final long mockUserId = 412L;
+    when(clock.millis()).thenReturn(START_MILLIS);
+
+    final String token = webTokenService.generateToken(mockUserId);
+
+    // The second lookup is served from the verified claims
+    for (int i = 0; i < 2; i++) {
+      StepVerifier.create(webTokenService.findUserIdFromToken(token))
+          .expectNext(mockUserId)
+          .expectComplete()
+          .verify();
+    }
+  }
+
+  @Test
+  void findUserIdFromToken_MalformedToken_ReturnsEmpty() {
+    StepVerifier.create(webTokenService.findUserIdFromToken("not.a.token"))
+        .expectComplete()
+        .verify();
+  }
+
+  @Test
+  void validateToken_EmptyToken_ReturnsFalse() {
+    assertThat(webTokenService.validateToken("")).isFalse();
+  }
+
+  @Test
+  void validateToken_TamperedToken_ReturnsFalse() {
+    when(clock.millis()).thenReturn(START_MILLIS);
+
+    final String token = webTokenService.generateToken(412L);
+    final String[] parts = token.split("\\.");
+    // Swap the signature for the signature of another token
+    final String otherSignature = webTokenService.generateToken(413L).split("\\.")[2];
+
+    assertThat(webTokenService.validateToken(parts[0] + "." + parts[1] + "." + otherSignature))
+        .isFalse();
+  }
+
+  @Test
+  void validateToken_ValidToken_ReturnsTrue() {
+    when(clock.millis()).thenReturn(START_MILLIS);
+    assertThat(webTokenService.validateToken(webTokenService.generateToken(412L))).isTrue();
+  }
+
+  @Test
+  void validateToken_TokenExpiredWhileCached_ReturnsFalse() {
+    when(clock.millis()).thenReturn(START_MILLIS);
+    final String token = webTokenService.generateToken(412L);
+    assertThat(webTokenService.validateToken(token)).isTrue();
+
+    when(clock.millis()).thenReturn(START_MILLIS + 900_000);
+    assertThat(webTokenService.validateToken(token)).isFalse();
+    // The token is also rejected when it is parsed again
+    assertThat(webTokenService.validateToken(token)).isFalse();
+  }
+}
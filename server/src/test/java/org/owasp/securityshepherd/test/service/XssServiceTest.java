@@ -16,32 +16,48 @@
 package org.owasp.securityshepherd.test.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
+import com.gargoylesoftware.htmlunit.CookieManager;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.owasp.securityshepherd.exception.XssEvaluationException;
+import org.owasp.securityshepherd.exception.XssEvaluationRejectedException;
+import org.owasp.securityshepherd.metrics.MetricsService;
 import org.owasp.securityshepherd.module.xss.XssService;
 import org.owasp.securityshepherd.module.xss.XssWebClientFactory;
+import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("XssService unit test")
@@ -51,6 +67,10 @@ class XssServiceTest {
 
   @Mock XssWebClientFactory xssWebClientFactory;
 
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final MetricsService metricsService = new MetricsService(meterRegistry);
+
   @Test
   void doXss_AlertHandlerFindsAlerts_ReturnsCollectedAlerts() throws Exception {
     final String htmlPage = "<html></html>";
@@ -75,9 +95,159 @@ class XssServiceTest {
     when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
     when(mockPage.getDomElementDescendants()).thenReturn(mockDomElements);
     when(mockAlertHandler.getCollectedAlerts()).thenReturn(alerts);
-    assertThat(xssService.doXss(htmlPage)).isEqualTo(alerts);
+    when(mockWebClient.getCookieManager()).thenReturn(mock(CookieManager.class));
+    StepVerifier.create(xssService.doXss(htmlPage)).expectNext(alerts).expectComplete().verify();
     verify(mockWebClient, times(1)).getPage(any(String.class));
     verify(mockAlertHandler, times(1)).getCollectedAlerts();
+    // Alerts were already collected, so there is no need to wait for JavaScript jobs
+    verify(mockWebClient, never()).waitForBackgroundJavaScript(anyLong());
+    // The client goes back to the pool instead of being closed
+    verify(mockWebClient, never()).close();
+  }
+
+  @Test
+  void doXss_AlertRaisedByBackgroundJob_StopsWaiting() throws Exception {
+    final String htmlPage = "<html></html>";
+    final HtmlPage mockPage = mock(HtmlPage.class);
+    final WebClient mockWebClient = mock(WebClient.class);
+    final CollectingAlertHandler mockAlertHandler = mock(CollectingAlertHandler.class);
+    final List<String> alerts = new ArrayList<>();
+
+    when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
+    when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
+    when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
+    when(mockWebClient.getCookieManager()).thenReturn(mock(CookieManager.class));
+    when(mockAlertHandler.getCollectedAlerts()).thenReturn(alerts);
+    // The first slice of jobs raises an alert, but a timer is still pending
+    when(mockWebClient.waitForBackgroundJavaScript(anyLong()))
+        .thenAnswer(
+            invocation -> {
+              alerts.add("XSS");
+              return 1;
+            });
+
+    StepVerifier.create(xssService.doXss(htmlPage))
+        .expectNext(Arrays.asList("XSS"))
+        .expectComplete()
+        .verify();
+
+    verify(mockWebClient, times(1)).waitForBackgroundJavaScript(anyLong());
+  }
+
+  @Test
+  void doXss_NoPendingJobs_StopsWaiting() throws Exception {
+    final String htmlPage = "<html></html>";
+    final HtmlPage mockPage = mock(HtmlPage.class);
+    final WebClient mockWebClient = mock(WebClient.class);
+    final CollectingAlertHandler mockAlertHandler = mock(CollectingAlertHandler.class);
+
+    when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
+    when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
+    when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
+    when(mockWebClient.getCookieManager()).thenReturn(mock(CookieManager.class));
+    when(mockAlertHandler.getCollectedAlerts()).thenReturn(new ArrayList<>());
+    when(mockWebClient.waitForBackgroundJavaScript(anyLong())).thenReturn(2, 1, 0);
+
+    StepVerifier.create(xssService.doXss(htmlPage))
+        .expectNext(new ArrayList<>())
+        .expectComplete()
+        .verify();
+
+    verify(mockWebClient, times(3)).waitForBackgroundJavaScript(anyLong());
+  }
+
+  @Test
+  void doXss_JobsNeverFinish_StopsAtMaxWait() throws Exception {
+    final String htmlPage = "<html></html>";
+    final HtmlPage mockPage = mock(HtmlPage.class);
+    final WebClient mockWebClient = mock(WebClient.class);
+    final CollectingAlertHandler mockAlertHandler = mock(CollectingAlertHandler.class);
+
+    when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
+    when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
+    when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
+    when(mockWebClient.getCookieManager()).thenReturn(mock(CookieManager.class));
+    when(mockAlertHandler.getCollectedAlerts()).thenReturn(new ArrayList<>());
+    // An endless timer keeps the job queue busy
+    when(mockWebClient.waitForBackgroundJavaScript(anyLong()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(invocation.getArgument(0));
+              return 1;
+            });
+
+    StepVerifier.create(xssService.doXss(htmlPage))
+        .expectNext(new ArrayList<>())
+        .expectComplete()
+        .verify(Duration.ofSeconds(10));
+
+    // The wait is split into short slices that add up to the maximum wait
+    final ArgumentCaptor<Long> sliceCaptor = ArgumentCaptor.forClass(Long.class);
+    verify(mockWebClient, atLeast(2)).waitForBackgroundJavaScript(sliceCaptor.capture());
+    assertThat(sliceCaptor.getAllValues()).allMatch(slice -> slice > 0 && slice <= 1000);
+  }
+
+  @Test
+  void doXss_CalledTwice_ReusesWebClient() throws Exception {
+    final String htmlPage = "<html></html>";
+    final HtmlPage mockPage = mock(HtmlPage.class);
+    final WebClient mockWebClient = mock(WebClient.class);
+    final CollectingAlertHandler mockAlertHandler = mock(CollectingAlertHandler.class);
+    final TopLevelWindow mockWindow = mock(TopLevelWindow.class);
+    final CookieManager mockCookieManager = mock(CookieManager.class);
+
+    when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
+    when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
+    when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
+    when(mockWebClient.getTopLevelWindows()).thenReturn(Arrays.asList(mockWindow));
+    when(mockWebClient.getCookieManager()).thenReturn(mockCookieManager);
+    when(mockAlertHandler.getCollectedAlerts()).thenReturn(new ArrayList<>());
+
+    StepVerifier.create(xssService.doXss(htmlPage).then(xssService.doXss(htmlPage)))
+        .expectNext(new ArrayList<>())
+        .expectComplete()
+        .verify();
+
+    verify(xssWebClientFactory, times(1)).createWebClient();
+    verify(mockWebClient, times(2)).getPage(any(String.class));
+    // Windows and cookies of the previous evaluation are cleared between uses
+    verify(mockWindow, times(2)).close();
+    verify(mockCookieManager, times(2)).clearCookies();
+  }
+
+  @Test
+  void doXss_TooManyEvaluationsQueued_ReturnsXssEvaluationRejectedException() throws Exception {
+    final String htmlPage = "<html></html>";
+    final HtmlPage mockPage = mock(HtmlPage.class);
+    final WebClient mockWebClient = mock(WebClient.class);
+    final CollectingAlertHandler mockAlertHandler = mock(CollectingAlertHandler.class);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch finish = new CountDownLatch(1);
+
+    when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
+    when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
+    when(mockWebClient.getCookieManager()).thenReturn(mock(CookieManager.class));
+    when(mockAlertHandler.getCollectedAlerts()).thenReturn(new ArrayList<>());
+    when(mockWebClient.getPage(any(String.class)))
+        .thenAnswer(
+            invocation -> {
+              started.countDown();
+              finish.await();
+              return mockPage;
+            });
+
+    // The first evaluation occupies the only client, the second one waits in the queue
+    final CompletableFuture<List<String>> running = xssService.doXss(htmlPage).toFuture();
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    final CompletableFuture<List<String>> queued = xssService.doXss(htmlPage).toFuture();
+
+    StepVerifier.create(xssService.doXss(htmlPage))
+        .expectError(XssEvaluationRejectedException.class)
+        .verify();
+
+    finish.countDown();
+    assertThat(running.get(10, TimeUnit.SECONDS)).isEmpty();
+    assertThat(queued.get(10, TimeUnit.SECONDS)).isEmpty();
   }
 
   @Test
@@ -89,8 +259,12 @@ class XssServiceTest {
     when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
     when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
     when(mockWebClient.getPage(any(String.class))).thenThrow(new IOException());
-    assertThrows(XssEvaluationException.class, () -> xssService.doXss(htmlPage));
+    StepVerifier.create(xssService.doXss(htmlPage))
+        .expectError(XssEvaluationException.class)
+        .verify();
     verify(mockWebClient, times(1)).getPage(any(String.class));
+    // A failed client is not reused
+    verify(mockWebClient, times(1)).close();
   }
 
   @Test
@@ -104,14 +278,55 @@ class XssServiceTest {
 
     when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
     doThrow(new IOException()).when(mockPage).initialize();
-    assertThrows(XssEvaluationException.class, () -> xssService.doXss(htmlPage));
+    StepVerifier.create(xssService.doXss(htmlPage))
+        .expectError(XssEvaluationException.class)
+        .verify();
     verify(mockWebClient, times(1)).getPage(any(String.class));
     verify(mockPage, times(1)).initialize();
   }
 
+  @Test
+  void warmUp_PoolNotFilled_FillsPoolWithoutRecordingEvaluations() throws Exception {
+    final String htmlPage = "<html></html>";
+    final HtmlPage mockPage = mock(HtmlPage.class);
+    final WebClient mockWebClient = mock(WebClient.class);
+    final CollectingAlertHandler mockAlertHandler = mock(CollectingAlertHandler.class);
+
+    when(xssWebClientFactory.createWebClient()).thenReturn(mockWebClient);
+    when(xssWebClientFactory.createAlertHandler()).thenReturn(mockAlertHandler);
+    when(mockWebClient.getPage(any(String.class))).thenReturn(mockPage);
+    when(mockWebClient.getCookieManager()).thenReturn(mock(CookieManager.class));
+    when(mockAlertHandler.getCollectedAlerts()).thenReturn(new ArrayList<>());
+
+    // The only evaluation thread runs the warm-up first, so the student gets the warm client
+    final XssService warmedXssService =
+        new XssService(xssWebClientFactory, metricsService, 1, 4, 1000);
+    try {
+      warmedXssService.warmUp();
+
+      StepVerifier.create(warmedXssService.doXss(htmlPage))
+          .expectNext(new ArrayList<>())
+          .expectComplete()
+          .verify();
+    } finally {
+      warmedXssService.dispose();
+    }
+
+    verify(xssWebClientFactory, times(1)).createWebClient();
+    verify(mockWebClient, times(2)).getPage(any(String.class));
+    assertThat(meterRegistry.find("shepherd.xss.evaluation").timers())
+        .extracting(Timer::count)
+        .containsExactly(1L);
+  }
+
   @BeforeEach
   private void setUp() {
     // Set up the system under test
-    xssService = new XssService(xssWebClientFactory);
+    xssService = new XssService(xssWebClientFactory, metricsService, 1, 1, 1000);
+  }
+
+  @AfterEach
+  private void tearDown() {
+    xssService.dispose();
   }
 }
@@ -18,13 +18,19 @@ package org.owasp.securityshepherd.test.util;
 import java.time.LocalDateTime;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.ArrayUtils;
+import org.owasp.securityshepherd.authentication.AuthorityCache;
 import org.owasp.securityshepherd.authentication.PasswordAuthRepository;
 import org.owasp.securityshepherd.authentication.UserAuthRepository;
 import org.owasp.securityshepherd.configuration.ConfigurationRepository;
+import org.owasp.securityshepherd.crypto.KeyRing;
 import org.owasp.securityshepherd.module.ModulePointRepository;
+import org.owasp.securityshepherd.module.ModuleRegistry;
 import org.owasp.securityshepherd.module.ModuleRepository;
 import org.owasp.securityshepherd.module.csrf.CsrfAttackRepository;
 import org.owasp.securityshepherd.scoring.CorrectionRepository;
+import org.owasp.securityshepherd.scoring.RankedSubmissionRepository;
+import org.owasp.securityshepherd.scoring.ScoreboardEngine;
+import org.owasp.securityshepherd.scoring.SolvedModuleIndex;
 import org.owasp.securityshepherd.scoring.SubmissionRepository;
 import org.owasp.securityshepherd.user.ClassRepository;
 import org.owasp.securityshepherd.user.UserRepository;
@@ -149,12 +155,24 @@ public final class TestUtils {
 
   private final SubmissionRepository submissionRepository;
 
+  private final RankedSubmissionRepository rankedSubmissionRepository;
+
   private final CorrectionRepository correctionRepository;
 
   private final ModulePointRepository modulePointRepository;
 
   private final UserAuthRepository userAuthRepository;
 
+  private final ScoreboardEngine scoreboardEngine;
+
+  private final KeyRing keyRing;
+
+  private final ModuleRegistry moduleRegistry;
+
+  private final SolvedModuleIndex solvedModuleIndex;
+
+  private final AuthorityCache authorityCache;
+
   public Mono<Void> deleteAll() {
     // Deleting data must be done in the right order due to db constraints
     return
@@ -165,6 +183,8 @@ public final class TestUtils {
         .then(csrfAttackRepository.deleteAll())
         // Delete all module scoring rules
         .then(modulePointRepository.deleteAll())
+        // Delete all submission ranks
+        .then(rankedSubmissionRepository.deleteAll())
         // Delete all submissions
         .then(submissionRepository.deleteAll())
         // Delete all classes
@@ -178,6 +198,16 @@ public final class TestUtils {
         // Delete all user auth data
         .then(userAuthRepository.deleteAll())
         // Delete all users
-        .then(userRepository.deleteAll());
+        .then(userRepository.deleteAll())
+        // Forget the in-memory scoreboard
+        .then(Mono.fromRunnable(scoreboardEngine::reset))
+        // Forget all cached keys
+        .then(Mono.fromRunnable(keyRing::clear))
+        // Forget all modules
+        .then(Mono.fromRunnable(moduleRegistry::clear))
+        // Forget all solved modules
+        .then(Mono.fromRunnable(solvedModuleIndex::clear))
+        // Forget all cached authorities
+        .then(Mono.fromRunnable(authorityCache::clear));
   }
 }